@@ -0,0 +1,228 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import json.JsonWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one /api/movies page into UTF-8 bytes with each of the ways the servlets used to
+ * build JSON (a Gson tree, org.json, a StringBuilder with String.replace escaping) against
+ * {@link JsonWriter}. Run with {@code -prof gc} to see bytes allocated per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonWriterBenchmark {
+
+    @Param({"25", "100"})
+    private int pageSize;
+
+    private Movie[] page;
+    private byte[][] fragments;
+    private OutputStream sink;
+    private final Gson gson = new Gson();
+
+    /** The fields of one movie summary in the list response. */
+    private static final class Movie {
+        String id;
+        String title;
+        int year;
+        String director;
+        double rating;
+        String genres;
+        String stars;
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        page = new Movie[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            Movie movie = new Movie();
+            movie.id = "tt0" + (100000 + random.nextInt(900000));
+            movie.title = words(random, 1 + random.nextInt(4)) + (random.nextInt(10) == 0 ? " \"Director's Cut\"" : "");
+            movie.year = 1950 + random.nextInt(70);
+            movie.director = words(random, 2);
+            movie.rating = Math.round(random.nextDouble() * 100) / 10.0;
+            movie.genres = "Action, Drama, Sci-Fi";
+            movie.stars = "nm" + random.nextInt(9_999_999) + ":" + words(random, 2) + ", nm"
+                    + random.nextInt(9_999_999) + ":" + words(random, 2) + ", nm"
+                    + random.nextInt(9_999_999) + ":" + words(random, 2);
+            page[i] = movie;
+        }
+        fragments = new byte[pageSize][];
+        for (int i = 0; i < pageSize; i++) {
+            try (JsonWriter json = JsonWriter.inMemory()) {
+                writeMovie(json, page[i]);
+                fragments[i] = json.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    @Benchmark
+    public byte[] gsonTree() {
+        JsonArray movies = new JsonArray();
+        for (Movie movie : page) {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", movie.id);
+            json.addProperty("title", movie.title);
+            json.addProperty("year", movie.year);
+            json.addProperty("director", movie.director);
+            json.addProperty("rating", movie.rating);
+            json.addProperty("genres", movie.genres);
+            json.addProperty("stars", movie.stars);
+            movies.add(json);
+        }
+        JsonObject response = new JsonObject();
+        response.add("movies", movies);
+        response.addProperty("currentPage", 1);
+        response.addProperty("limit", pageSize);
+        response.addProperty("hasMoreResults", true);
+        return gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] orgJson() {
+        JSONArray movies = new JSONArray();
+        for (Movie movie : page) {
+            JSONObject json = new JSONObject();
+            json.put("id", movie.id);
+            json.put("title", movie.title);
+            json.put("year", movie.year);
+            json.put("director", movie.director);
+            json.put("rating", movie.rating);
+            json.put("genres", movie.genres);
+            json.put("stars", movie.stars);
+            movies.put(json);
+        }
+        JSONObject response = new JSONObject();
+        response.put("movies", movies);
+        response.put("currentPage", 1);
+        response.put("limit", pageSize);
+        response.put("hasMoreResults", true);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] stringBuilder() {
+        StringBuilder json = new StringBuilder("{\"movies\":[");
+        for (int i = 0; i < page.length; i++) {
+            Movie movie = page[i];
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"").append(escape(movie.id))
+                    .append("\",\"title\":\"").append(escape(movie.title))
+                    .append("\",\"year\":").append(movie.year)
+                    .append(",\"director\":\"").append(escape(movie.director))
+                    .append("\",\"rating\":").append(movie.rating)
+                    .append(",\"genres\":\"").append(escape(movie.genres))
+                    .append("\",\"stars\":\"").append(escape(movie.stars))
+                    .append("\"}");
+        }
+        json.append("],\"currentPage\":1,\"limit\":").append(pageSize).append(",\"hasMoreResults\":true}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void jsonWriter(Blackhole blackhole) throws IOException {
+        try (JsonWriter json = JsonWriter.to(sink)) {
+            json.beginObject().name("movies").beginArray();
+            for (Movie movie : page) {
+                writeMovie(json, movie);
+            }
+            endPage(json);
+            blackhole.consume(json);
+        }
+    }
+
+    /** What /api/movies does with a catalog snapshot: copy each movie's cached fragment. */
+    @Benchmark
+    public void jsonWriterFragments(Blackhole blackhole) throws IOException {
+        try (JsonWriter json = JsonWriter.to(sink)) {
+            json.beginObject().name("movies").beginArray();
+            for (byte[] fragment : fragments) {
+                json.rawValue(fragment);
+            }
+            endPage(json);
+            blackhole.consume(json);
+        }
+    }
+
+    private static void writeMovie(JsonWriter json, Movie movie) throws IOException {
+        json.beginObject()
+                .name("id").value(movie.id)
+                .name("title").value(movie.title)
+                .name("year").value(movie.year)
+                .name("director").value(movie.director)
+                .name("rating").value(movie.rating)
+                .name("genres").value(movie.genres)
+                .name("stars").value(movie.stars)
+                .endObject();
+    }
+
+    private void endPage(JsonWriter json) throws IOException {
+        json.endArray()
+                .name("currentPage").value(1)
+                .name("limit").value(pageSize)
+                .name("hasMoreResults").value(true)
+                .endObject();
+    }
+
+    /** The escaping the hand-built responses used. */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\b", "\\b")
+                .replace("\f", "\\f")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) words.append(' ');
+            words.append((char) ('A' + random.nextInt(26)));
+            int length = 3 + random.nextInt(7);
+            for (int c = 0; c < length; c++) {
+                words.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return words.toString();
+    }
+}
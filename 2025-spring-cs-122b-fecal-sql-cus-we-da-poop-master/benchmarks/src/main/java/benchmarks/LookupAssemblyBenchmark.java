@@ -0,0 +1,131 @@
+package benchmarks;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import servlets.MovieBatchServlet;
+import servlets.StarBatchServlet;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /api/star and /api/movie documents for a batch of ids, assembled in Java from rows
+ * ({@code loadRows}) against assembled by MySQL ({@code loadAssembled}). The Java movie path runs
+ * its lookups side by side, so it reads through a small pool rather than the one connection.
+ * Needs a loaded Fabflix database: BENCH_DB_URL (e.g. jdbc:mysql://localhost:3306/moviedb),
+ * BENCH_DB_USER and BENCH_DB_PASSWORD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupAssemblyBenchmark {
+
+    private static final int SAMPLE = 1_000;
+
+    @Param({"1", "25"})
+    private int batchSize;
+
+    private Connection connection;
+    private BasicDataSource pool;
+    private List<String> starIds;
+    private List<String> movieIds;
+    private int next;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String url = System.getenv("BENCH_DB_URL");
+        if (url == null) {
+            throw new IllegalStateException("Set BENCH_DB_URL, BENCH_DB_USER and BENCH_DB_PASSWORD to a loaded Fabflix database");
+        }
+        connection = DriverManager.getConnection(url + (url.contains("?") ? "&" : "?") + "useServerPrepStmts=true",
+                System.getenv("BENCH_DB_USER"), System.getenv("BENCH_DB_PASSWORD"));
+        pool = new BasicDataSource();
+        pool.setUrl(url);
+        pool.setUsername(System.getenv("BENCH_DB_USER"));
+        pool.setPassword(System.getenv("BENCH_DB_PASSWORD"));
+        pool.setConnectionProperties("useServerPrepStmts=true");
+        pool.setMinIdle(4);
+        starIds = ids("SELECT id FROM stars ORDER BY RAND(42) LIMIT " + SAMPLE);
+        movieIds = ids("SELECT id FROM movies ORDER BY RAND(42) LIMIT " + SAMPLE);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        pool.close();
+    }
+
+    @Benchmark
+    public Map<String, byte[]> starsJava() throws SQLException, IOException {
+        Map<String, byte[]> stars = new HashMap<>();
+        StarBatchServlet.loadRows(connection, batch(starIds), stars);
+        return stars;
+    }
+
+    @Benchmark
+    public Map<String, byte[]> starsMysql() throws SQLException {
+        Map<String, byte[]> stars = new HashMap<>();
+        StarBatchServlet.loadAssembled(connection, batch(starIds), stars);
+        return stars;
+    }
+
+    @Benchmark
+    public Map<String, byte[]> moviesJava() throws Exception {
+        Map<String, byte[]> movies = new HashMap<>();
+        MovieBatchServlet.loadRows(pool, batch(movieIds), movies);
+        return movies;
+    }
+
+    @Benchmark
+    public Map<String, byte[]> moviesMysql() throws SQLException {
+        Map<String, byte[]> movies = new HashMap<>();
+        MovieBatchServlet.loadAssembled(connection, batch(movieIds), movies);
+        return movies;
+    }
+
+    /** The next {@code batchSize} ids of the sample, wrapping around. */
+    private List<String> batch(List<String> ids) {
+        List<String> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(ids.get(next++ % ids.size()));
+        }
+        return batch;
+    }
+
+    private List<String> ids(String query) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getString(1));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No rows for " + query);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,175 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import search.CompletionIndex;
+import search.SearchIndex;
+import search.TrigramIndex;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the per-request search structures on a synthetic catalog the size of the XML-loaded
+ * Fabflix data (20k titles, 40k stars). SampleTime mode reports percentiles; the budget for every
+ * operation here is p99 under 1 ms, since each runs on every search or keystroke.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int MOVIES = 20_000;
+    private static final int STARS = 40_000;
+    private static final int QUERIES = 512;
+
+    private SearchIndex titleIndex;
+    private SearchIndex starIndex;
+    private CompletionIndex completionIndex;
+    private TrigramIndex starNameTrigrams;
+
+    private String[][] exactQueries;
+    private String[][] typoQueries;
+    private String[][] typoStarQueries;
+    private String[] prefixes;
+    private String[] substrings;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[6_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random);
+        }
+
+        String[] titles = new String[MOVIES];
+        String[][] titleWords = new String[MOVIES][];
+        int[] popularity = new int[MOVIES];
+        for (int m = 0; m < MOVIES; m++) {
+            titleWords[m] = new String[1 + random.nextInt(5)];
+            for (int w = 0; w < titleWords[m].length; w++) {
+                titleWords[m][w] = vocabulary[zipf(random, vocabulary.length)];
+            }
+            titles[m] = String.join(" ", titleWords[m]);
+            popularity[m] = m;
+        }
+        String[][] starWords = new String[STARS][];
+        String[] starNames = new String[STARS];
+        for (int s = 0; s < STARS; s++) {
+            starWords[s] = new String[] {word(random), word(random)};
+            starNames[s] = starWords[s][0] + " " + starWords[s][1];
+        }
+
+        titleIndex = SearchIndex.build(titleWords);
+        starIndex = SearchIndex.build(starWords);
+        completionIndex = CompletionIndex.build(titles, popularity, 10);
+        starNameTrigrams = TrigramIndex.build(starNames);
+
+        exactQueries = new String[QUERIES][];
+        typoQueries = new String[QUERIES][];
+        typoStarQueries = new String[QUERIES][];
+        prefixes = new String[QUERIES];
+        substrings = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            String[] words = titleWords[random.nextInt(MOVIES)];
+            exactQueries[q] = words;
+            typoQueries[q] = new String[words.length];
+            for (int w = 0; w < words.length; w++) {
+                typoQueries[q][w] = typo(random, words[w]);
+            }
+            String[] star = starWords[random.nextInt(STARS)];
+            typoStarQueries[q] = new String[] {typo(random, star[0]), typo(random, star[1])};
+            String title = titles[random.nextInt(MOVIES)];
+            prefixes[q] = title.substring(0, Math.min(title.length(), 3 + random.nextInt(6)));
+            String name = starNames[random.nextInt(STARS)];
+            int from = random.nextInt(name.length() - 2);
+            substrings[q] = name.substring(from, Math.min(name.length(), from + 3 + random.nextInt(5)));
+        }
+    }
+
+    @Benchmark
+    public int[] exactTitleSearch() {
+        return titleIndex.search(exactQueries[next()], 10);
+    }
+
+    @Benchmark
+    public int[] fuzzyTitleSearch() {
+        return titleIndex.searchFuzzy(typoQueries[next()], 10);
+    }
+
+    @Benchmark
+    public BitSet fuzzyStarMatch() {
+        return starIndex.matchAllFuzzy(typoStarQueries[next()]);
+    }
+
+    @Benchmark
+    public String didYouMean() {
+        return titleIndex.correct(typoQueries[next()]);
+    }
+
+    @Benchmark
+    public int[] completion() {
+        return completionIndex.complete(prefixes[next()]);
+    }
+
+    @Benchmark
+    public BitSet starNameSubstring() {
+        return starNameTrigrams.containing(substrings[next()]);
+    }
+
+    private int next() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    private static final String CONSONANTS = "bcdfghjklmnprstvwyz";
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u", "ee", "ou", "ai"};
+    private static final String[] CODAS = {"", "", "", "n", "r", "s", "t", "l", "ck", "nd", "rs", "th"};
+
+    /** Two or three consonant-vowel-coda syllables, which gives English-like letter pairs. */
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 1 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+            word.append(VOWELS[random.nextInt(VOWELS.length)]);
+            word.append(CODAS[random.nextInt(CODAS.length)]);
+        }
+        return word.toString();
+    }
+
+    /** One random substitution, deletion or insertion, for words long enough to be corrected. */
+    private static String typo(Random random, String word) {
+        if (word.length() < 4) {
+            return word;
+        }
+        int at = 1 + random.nextInt(word.length() - 1);
+        char letter = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(3)) {
+            case 0:
+                return word.substring(0, at) + letter + word.substring(Math.min(word.length(), at + 1));
+            case 1:
+                return word.substring(0, at) + word.substring(at + 1 > word.length() ? word.length() : at + 1);
+            default:
+                return word.substring(0, at) + letter + word.substring(at);
+        }
+    }
+
+    /** Roughly Zipf-distributed index, so a few title words are very common, like "the" and "of". */
+    private static int zipf(Random random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, random.nextDouble())) - 1);
+    }
+}
@@ -0,0 +1,110 @@
+package db;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded JDBC connection pool for a single MySQL host.
+ * Wraps commons-dbcp2 so that idle eviction, abandoned-connection (leak) detection and
+ * pool statistics are configured the same way in every service.
+ */
+public class ConnectionPool extends BasicDataSource {
+
+    private final String name;
+
+    ConnectionPool(String name, String jdbcUrl, String user, String password) {
+        this.name = name;
+
+        setDriverClassName("com.mysql.cj.jdbc.Driver");
+        setUrl(jdbcUrl);
+        setUsername(user);
+        setPassword(password);
+
+        int maxTotal = intEnv("DB_POOL_MAX_TOTAL", 20);
+        int minIdle = Math.min(intEnv("DB_POOL_MIN_IDLE", 5), maxTotal);
+
+        setMaxTotal(maxTotal);
+        setMaxIdle(maxTotal);
+        setMinIdle(minIdle);
+        setInitialSize(minIdle);
+        setMaxWaitMillis(intEnv("DB_POOL_MAX_WAIT_MILLIS", 5000));
+
+        // Idle eviction: trim back to minIdle and replace connections the server may have timed out.
+        setTestOnBorrow(true);
+        setTestWhileIdle(true);
+        setValidationQueryTimeout(2);
+        setTimeBetweenEvictionRunsMillis(30_000L);
+        setMinEvictableIdleTimeMillis(5 * 60_000L);
+        setNumTestsPerEvictionRun(3);
+        setMaxConnLifetimeMillis(30 * 60_000L);
+
+        // Leak detection: reclaim connections checked out longer than the timeout and log who borrowed them.
+        setRemoveAbandonedOnBorrow(true);
+        setRemoveAbandonedOnMaintenance(true);
+        setRemoveAbandonedTimeout(intEnv("DB_POOL_LEAK_TIMEOUT_SECONDS", 60));
+        setLogAbandoned(Boolean.parseBoolean(envOrDefault("DB_POOL_LOG_ABANDONED", "true")));
+
+        setJmxName("org.apache.commons.dbcp2:DataSource=fabflix-" + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Opens minIdle connections up front so the first requests after startup do not pay the handshake.
+     */
+    public void warmUp() {
+        try {
+            start();
+            System.out.println("Connection pool '" + name + "' warmed up with " + getNumIdle() + " idle connections.");
+        } catch (SQLException e) {
+            System.err.println("Connection pool '" + name + "' could not be pre-warmed, connections will be opened lazily: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Point-in-time pool statistics for the metrics endpoint.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", getNumActive());
+        stats.put("idle", getNumIdle());
+        stats.put("maxTotal", getMaxTotal());
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        if (pool != null) {
+            stats.put("waiters", pool.getNumWaiters());
+            stats.put("borrowed", pool.getBorrowedCount());
+            stats.put("created", pool.getCreatedCount());
+            stats.put("destroyed", pool.getDestroyedCount());
+            stats.put("destroyedByEvictor", pool.getDestroyedByEvictorCount());
+            stats.put("destroyedByBorrowValidation", pool.getDestroyedByBorrowValidationCount());
+            stats.put("meanBorrowWaitMillis", pool.getMeanBorrowWaitTimeMillis());
+            stats.put("maxBorrowWaitMillis", pool.getMaxBorrowWaitTimeMillis());
+        }
+        return stats;
+    }
+
+    static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.isEmpty()) ? defaultValue : value;
+    }
+}
@@ -0,0 +1,170 @@
+package db;
+
+import metrics.MetricsRegistry;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out the shared, pooled DataSources of a web application.
+ * Every servlet gets its connections from one pool per host instead of building its own
+ * MysqlDataSource and paying a TCP + auth handshake per request.
+ * <p>
+ * Writes go to DB_MASTER_HOST. Reads go to the replicas listed (comma separated) in
+ * DB_SLAVE_HOST, or to the master when no replica is configured.
+ */
+public final class DataSourceFactory {
+
+    private static final String JNDI_NAME = "java:comp/env/jdbc/moviedb";
+
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private static volatile RoutingDataSource routingDataSource;
+
+    private DataSourceFactory() {
+    }
+
+    /**
+     * DataSource for read-only queries; connections come from the least-loaded replica.
+     */
+    public static DataSource getReadDataSource() {
+        return getRoutingDataSource().readOnly();
+    }
+
+    /**
+     * DataSource for inserts, updates, stored procedures and any transactional work.
+     */
+    public static DataSource getWriteDataSource() {
+        return getRoutingDataSource();
+    }
+
+    public static RoutingDataSource getRoutingDataSource() {
+        RoutingDataSource result = routingDataSource;
+        if (result == null) {
+            synchronized (DataSourceFactory.class) {
+                result = routingDataSource;
+                if (result == null) {
+                    result = createRoutingDataSource();
+                    routingDataSource = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Opens the idle connections of the read and/or write pools ahead of the first request.
+     */
+    public static void warmUp(boolean reads, boolean writes) {
+        RoutingDataSource routing = getRoutingDataSource();
+        boolean readsFromMaster = routing.getReplicas().isEmpty();
+        if ((writes || (reads && readsFromMaster)) && routing.getMaster() instanceof ConnectionPool) {
+            ((ConnectionPool) routing.getMaster()).warmUp();
+        }
+        if (reads) {
+            for (RoutingDataSource.Replica replica : routing.getReplicas()) {
+                if (replica.dataSource instanceof ConnectionPool) {
+                    ((ConnectionPool) replica.dataSource).warmUp();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every pool created by this factory. Called when the web application shuts down.
+     */
+    public static synchronized void closeAll() {
+        for (ConnectionPool pool : POOLS.values()) {
+            try {
+                pool.close();
+                MetricsRegistry.unregister("pool." + pool.getName());
+                System.out.println("Closed connection pool '" + pool.getName() + "'.");
+            } catch (SQLException e) {
+                System.err.println("Error closing connection pool '" + pool.getName() + "': " + e.getMessage());
+            }
+        }
+        POOLS.clear();
+        MetricsRegistry.unregister("routing");
+        if (routingDataSource != null) {
+            routingDataSource.close();
+            routingDataSource = null;
+        }
+    }
+
+    private static RoutingDataSource createRoutingDataSource() {
+        String masterHost = blankToNull(System.getenv("DB_MASTER_HOST"));
+        String slaveHosts = blankToNull(System.getenv("DB_SLAVE_HOST"));
+        String dbName = System.getenv("DB_NAME");
+        String dbUser = System.getenv("DB_USER");
+        String dbPassword = System.getenv("DB_PASSWORD");
+
+        RoutingDataSource routing;
+        if ((masterHost == null && slaveHosts == null) || dbName == null || dbUser == null || dbPassword == null) {
+            System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
+            routing = new RoutingDataSource(lookupJndi(), new LinkedHashMap<>());
+        } else {
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            if (slaveHosts != null) {
+                for (String host : slaveHosts.split(",")) {
+                    host = host.trim();
+                    if (!host.isEmpty() && !host.equals(masterHost)) {
+                        replicas.put(host, getPool(host));
+                    }
+                }
+            }
+            if (masterHost == null) {
+                if (replicas.isEmpty()) {
+                    throw new IllegalStateException("DB_MASTER_HOST is not set and DB_SLAVE_HOST ('" + slaveHosts
+                            + "') names no host; set DB_MASTER_HOST to the database that takes writes.");
+                }
+                System.out.println("WARNING: DB_MASTER_HOST not set, writes will use the first replica host.");
+                masterHost = replicas.keySet().iterator().next();
+                replicas.remove(masterHost);
+            }
+            routing = new RoutingDataSource(getPool(masterHost), replicas);
+            System.out.println("Routing writes to " + masterHost + " and reads to " + (replicas.isEmpty() ? masterHost : replicas.keySet()));
+        }
+        MetricsRegistry.register("routing", routing::stats);
+        return routing;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static DataSource lookupJndi() {
+        try {
+            DataSource dataSource = (DataSource) new InitialContext().lookup(JNDI_NAME);
+            System.out.println("Successfully looked up DataSource via JNDI.");
+            return dataSource;
+        } catch (NamingException e) {
+            System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
+            throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
+        }
+    }
+
+    private static ConnectionPool getPool(String host) {
+        return POOLS.computeIfAbsent(host, h -> createPool(h, h, System.getenv("DB_PORT"), System.getenv("DB_NAME"),
+                System.getenv("DB_USER"), System.getenv("DB_PASSWORD")));
+    }
+
+    static ConnectionPool createPool(String name, String dbHost, String dbPort, String dbName, String dbUser, String dbPassword) {
+        if (dbPort == null || dbPort.isEmpty()) {
+            dbPort = "3306";
+        }
+
+        String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&useSSL=false&serverTimezone=UTC&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=256&prepStmtCacheSqlLimit=8192",
+                dbHost, dbPort, dbName);
+
+        System.out.println("Initializing connection pool '" + name + "' with JDBC URL: " + jdbcUrl);
+
+        ConnectionPool pool = new ConnectionPool(name, jdbcUrl, dbUser, dbPassword);
+        MetricsRegistry.register("pool." + name, pool::stats);
+        return pool;
+    }
+}
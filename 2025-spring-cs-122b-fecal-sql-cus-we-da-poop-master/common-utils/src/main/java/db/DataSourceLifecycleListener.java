@@ -0,0 +1,32 @@
+package db;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Pre-warms the read and/or write pools named in the "dbPrewarm" context parameter at startup and closes
+ * every shared pool when the web application is undeployed, so a redeploy does not leave the
+ * old pool's connections open against MySQL.
+ */
+@WebListener
+public class DataSourceLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        String prewarm = sce.getServletContext().getInitParameter("dbPrewarm");
+        if (prewarm == null || prewarm.trim().isEmpty()) {
+            return;
+        }
+        try {
+            DataSourceFactory.warmUp(prewarm.contains("read"), prewarm.contains("write"));
+        } catch (RuntimeException e) {
+            System.err.println("Could not pre-warm database pools: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        DataSourceFactory.closeAll();
+    }
+}
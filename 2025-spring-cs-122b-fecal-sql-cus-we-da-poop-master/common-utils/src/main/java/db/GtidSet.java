@@ -0,0 +1,126 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed form of a MySQL GTID set such as "3E11FA47-71CA-11E1-9E33-C80AA9429562:1-5:11-18,...".
+ * Only supports what the read router needs: checking whether one set contains another.
+ */
+public final class GtidSet {
+
+    public static final GtidSet EMPTY = new GtidSet(Collections.emptyMap(), "");
+
+    /** Source id (uuid, or uuid:tag) to sorted, non-overlapping [start, end] pairs. */
+    private final Map<String, long[]> intervals;
+    private final String text;
+
+    private GtidSet(Map<String, long[]> intervals, String text) {
+        this.intervals = intervals;
+        this.text = text;
+    }
+
+    public static GtidSet parse(String text) {
+        if (text == null) {
+            return EMPTY;
+        }
+        String normalized = text.replaceAll("\\s+", "");
+        if (normalized.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, List<long[]>> ranges = new HashMap<>();
+        String source = null;
+        for (String entry : normalized.split(",")) {
+            String[] parts = entry.split(":");
+            source = parts[0].toLowerCase();
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.isEmpty()) {
+                    continue;
+                }
+                if (!Character.isDigit(part.charAt(0))) {
+                    // MySQL 8.3+ tagged GTIDs: uuid:tag:1-5
+                    source = parts[0].toLowerCase() + ":" + part.toLowerCase();
+                    continue;
+                }
+                int dash = part.indexOf('-');
+                long start = Long.parseLong(dash < 0 ? part : part.substring(0, dash));
+                long end = dash < 0 ? start : Long.parseLong(part.substring(dash + 1));
+                ranges.computeIfAbsent(source, k -> new ArrayList<>()).add(new long[]{start, end});
+            }
+        }
+        Map<String, long[]> merged = new HashMap<>();
+        for (Map.Entry<String, List<long[]>> entry : ranges.entrySet()) {
+            merged.put(entry.getKey(), merge(entry.getValue()));
+        }
+        return new GtidSet(merged, normalized);
+    }
+
+    private static long[] merge(List<long[]> ranges) {
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> out = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                out.add(new long[]{range[0], range[1]});
+            }
+        }
+        long[] flat = new long[out.size() * 2];
+        for (int i = 0; i < out.size(); i++) {
+            flat[2 * i] = out.get(i)[0];
+            flat[2 * i + 1] = out.get(i)[1];
+        }
+        return flat;
+    }
+
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    /**
+     * True when every transaction in {@code other} is also in this set.
+     */
+    public boolean contains(GtidSet other) {
+        for (Map.Entry<String, long[]> entry : other.intervals.entrySet()) {
+            long[] mine = intervals.get(entry.getKey());
+            if (mine == null) {
+                return false;
+            }
+            long[] theirs = entry.getValue();
+            for (int i = 0; i < theirs.length; i += 2) {
+                if (!covers(mine, theirs[i], theirs[i + 1])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean covers(long[] ranges, long start, long end) {
+        int lo = 0;
+        int hi = ranges.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long rangeStart = ranges[2 * mid];
+            long rangeEnd = ranges[2 * mid + 1];
+            if (end < rangeStart) {
+                hi = mid - 1;
+            } else if (start > rangeEnd) {
+                lo = mid + 1;
+            } else {
+                return start >= rangeStart && end <= rangeEnd;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,82 @@
+package db;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Session-level read-your-writes on top of {@link RoutingDataSource}.
+ * Servlets that write call {@link #recordWrite}, or {@link #recordCatalogWrite} for changes to
+ * movies and stars, right after committing; servlets whose reads must reflect those writes (e.g.
+ * opening a movie just added from the dashboard) get their connection from
+ * {@link #getReadConnection}. All other reads keep spreading across replicas.
+ */
+public final class ReadYourWrites {
+
+    public static final String SESSION_ATTRIBUTE = "dbWriteToken";
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Stores the master's GTID position after a commit made on {@code masterConnection} in the session.
+     * Does nothing when no replicas are configured, since every read already sees the master.
+     */
+    public static void recordWrite(HttpServletRequest request, Connection masterConnection) {
+        record(request, masterConnection, false);
+    }
+
+    /**
+     * Same as {@link #recordWrite}, for a commit that added or changed movies, stars or genres.
+     */
+    public static void recordCatalogWrite(HttpServletRequest request, Connection masterConnection) {
+        record(request, masterConnection, true);
+    }
+
+    private static void record(HttpServletRequest request, Connection masterConnection, boolean catalog) {
+        if (!DataSourceFactory.getRoutingDataSource().hasReplicas()) {
+            return;
+        }
+        String gtids = "";
+        try (Statement statement = masterConnection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+            if (rs.next() && rs.getString(1) != null) {
+                gtids = rs.getString(1);
+            }
+        } catch (SQLException e) {
+            request.getServletContext().log("Could not read gtid_executed, falling back to time-based pinning", e);
+        }
+        long now = System.currentTimeMillis();
+        WriteToken previous = getToken(request);
+        long catalogCommittedAtMillis = catalog ? now : previous == null ? 0 : previous.getCatalogCommittedAtMillis();
+        request.getSession(true).setAttribute(SESSION_ATTRIBUTE, new WriteToken(gtids, now, catalogCommittedAtMillis));
+    }
+
+    /**
+     * A read connection that is guaranteed to observe this session's last recorded write.
+     */
+    public static Connection getReadConnection(HttpServletRequest request) throws SQLException {
+        return DataSourceFactory.getRoutingDataSource().readOnly(getToken(request)).getConnection();
+    }
+
+    /**
+     * Whether this session changed movies, stars or genres, so its reads of them must see the change.
+     */
+    public static boolean hasCatalogWrite(HttpServletRequest request) {
+        WriteToken token = getToken(request);
+        return token != null && token.hasCatalogWrite();
+    }
+
+    public static WriteToken getToken(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        Object token = session.getAttribute(SESSION_ATTRIBUTE);
+        return token instanceof WriteToken ? (WriteToken) token : null;
+    }
+}
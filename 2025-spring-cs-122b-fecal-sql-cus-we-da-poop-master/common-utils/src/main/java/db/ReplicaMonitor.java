@@ -0,0 +1,90 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls every replica once per interval for its executed GTID set and its replication lag.
+ * The router answers freshness checks from these cached values, so a read that must see the
+ * session's last write costs no extra round trip.
+ */
+final class ReplicaMonitor {
+
+    private final List<RoutingDataSource.Replica> replicas;
+    private final ScheduledExecutorService scheduler;
+
+    ReplicaMonitor(List<RoutingDataSource.Replica> replicas) {
+        this.replicas = replicas;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(this::pollAll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void pollAll() {
+        for (RoutingDataSource.Replica replica : replicas) {
+            try {
+                poll(replica);
+            } catch (RuntimeException e) {
+                System.err.println("Replica monitor error for " + replica.host + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void poll(RoutingDataSource.Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+                if (rs.next()) {
+                    replica.executedGtids = GtidSet.parse(rs.getString(1));
+                }
+            }
+            replica.lagSeconds = readLagSeconds(statement, replica);
+            replica.lastPollMillis = System.currentTimeMillis();
+        } catch (SQLException e) {
+            replica.lagSeconds = -1;
+            System.err.println("Could not poll replica " + replica.host + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Seconds_Behind_Source from SHOW REPLICA STATUS (MySQL 8.0.22+), falling back to the
+     * pre-8.0.22 statement. Returns -1 when the user lacks REPLICATION CLIENT or replication is stopped.
+     */
+    private long readLagSeconds(Statement statement, RoutingDataSource.Replica replica) {
+        String[][] variants = {
+                {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+                {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+        };
+        for (String[] variant : variants) {
+            try (ResultSet rs = statement.executeQuery(variant[0])) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                long lag = rs.getLong(variant[1]);
+                return rs.wasNull() ? -1 : lag;
+            } catch (SQLException e) {
+                if (!replica.lagQueryWarned) {
+                    replica.lagQueryWarned = true;
+                    System.err.println(variant[0] + " failed on " + replica.host + ": " + e.getMessage());
+                }
+            }
+        }
+        return -1;
+    }
+}
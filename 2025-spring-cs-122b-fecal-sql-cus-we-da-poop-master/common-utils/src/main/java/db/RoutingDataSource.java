@@ -0,0 +1,248 @@
+package db;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Splits database traffic between the master and its read replicas.
+ * getConnection() always returns a master connection, so transactional writes never land on a
+ * replica. Read-only work goes through {@link #readOnly()}, which picks the replica with the
+ * fewest outstanding connections and falls back to the master when no replica is reachable.
+ * <p>
+ * Reads that must observe a session's own writes go through {@link #readOnly(WriteToken)}: they
+ * are sent only to replicas whose last polled GTID set already contains the write, or to the master.
+ */
+public class RoutingDataSource extends AbstractDataSource {
+
+    private static final long UNHEALTHY_BACKOFF_MILLIS = 5_000L;
+    private static final long MONITOR_INTERVAL_MILLIS = 1_000L;
+
+    private final DataSource master;
+    private final List<Replica> replicas;
+    private final DataSource readView = new ReadOnlyView();
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final AtomicLong masterReads = new AtomicLong();
+    private final AtomicLong masterWrites = new AtomicLong();
+    private final AtomicLong freshReadsOnReplica = new AtomicLong();
+    private final AtomicLong freshReadsPinnedToMaster = new AtomicLong();
+    private final long noGtidPinMillis = ConnectionPool.intEnv("DB_RYW_PIN_MILLIS", 5_000);
+    private final ReplicaMonitor monitor;
+
+    RoutingDataSource(DataSource master, Map<String, DataSource> replicasByHost) {
+        this.master = master;
+        List<Replica> list = new ArrayList<>();
+        for (Map.Entry<String, DataSource> entry : replicasByHost.entrySet()) {
+            list.add(new Replica(entry.getKey(), entry.getValue()));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        if (replicas.isEmpty()) {
+            this.monitor = null;
+        } else {
+            this.monitor = new ReplicaMonitor(replicas);
+            monitor.start(MONITOR_INTERVAL_MILLIS);
+        }
+    }
+
+    void close() {
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * A master connection, for writes and anything that runs inside a transaction.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        masterWrites.incrementAndGet();
+        return master.getConnection();
+    }
+
+    /**
+     * A DataSource view whose connections come from the least-loaded replica.
+     */
+    public DataSource readOnly() {
+        return readView;
+    }
+
+    /**
+     * A read DataSource that honours the session's last write: its connections come from a replica
+     * that has already applied {@code token}, or from the master when none has.
+     */
+    public DataSource readOnly(WriteToken token) {
+        if (token == null || replicas.isEmpty()) {
+            return readView;
+        }
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return getFreshReadConnection(token);
+            }
+        };
+    }
+
+    List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    DataSource getMaster() {
+        return master;
+    }
+
+    Connection getReadConnection() throws SQLException {
+        SQLException lastFailure = null;
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = pickReplica(r -> true);
+            if (replica == null) {
+                break;
+            }
+            try {
+                return replica.borrow();
+            } catch (SQLException e) {
+                replica.markUnhealthy();
+                lastFailure = e;
+                System.err.println("Replica " + replica.host + " unavailable, trying another: " + e.getMessage());
+            }
+        }
+        if (lastFailure != null) {
+            System.err.println("No replica available, routing read to master.");
+        }
+        masterReads.incrementAndGet();
+        return master.getConnection();
+    }
+
+    Connection getFreshReadConnection(WriteToken token) throws SQLException {
+        GtidSet needed = token.gtidSet();
+        if (needed.isEmpty()) {
+            // Server runs without GTIDs: pin to the master for a window covering the observed lag.
+            long pinMillis = Math.max(noGtidPinMillis, maxLagSeconds() * 1000L + 1000L);
+            if (System.currentTimeMillis() - token.getCommittedAtMillis() > pinMillis) {
+                return getReadConnection();
+            }
+        } else {
+            Replica replica = pickReplica(r -> r.executedGtids.contains(needed));
+            if (replica != null) {
+                try {
+                    Connection connection = replica.borrow();
+                    freshReadsOnReplica.incrementAndGet();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.markUnhealthy();
+                    System.err.println("Caught-up replica " + replica.host + " unavailable, reading from master: " + e.getMessage());
+                }
+            }
+        }
+        freshReadsPinnedToMaster.incrementAndGet();
+        masterReads.incrementAndGet();
+        return master.getConnection();
+    }
+
+    long maxLagSeconds() {
+        long max = 0;
+        for (Replica replica : replicas) {
+            max = Math.max(max, replica.lagSeconds);
+        }
+        return max;
+    }
+
+    /**
+     * Least-outstanding-requests choice among healthy replicas that pass {@code eligible}.
+     * The scan starts at a rotating offset so ties are spread evenly instead of always
+     * favouring the first replica.
+     */
+    Replica pickReplica(Predicate<Replica> eligible) {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        Replica best = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (candidate.unhealthyUntil > now || !eligible.test(candidate)) {
+                continue;
+            }
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("masterWrites", masterWrites.get());
+        stats.put("masterReads", masterReads.get());
+        stats.put("freshReadsOnReplica", freshReadsOnReplica.get());
+        stats.put("freshReadsPinnedToMaster", freshReadsPinnedToMaster.get());
+        stats.put("maxReplicaLagSeconds", maxLagSeconds());
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            Map<String, Object> replicaStats = new LinkedHashMap<>();
+            replicaStats.put("outstanding", replica.outstanding.get());
+            replicaStats.put("routed", replica.routed.get());
+            replicaStats.put("failures", replica.failures.get());
+            replicaStats.put("healthy", replica.unhealthyUntil <= now);
+            replicaStats.put("lagSeconds", replica.lagSeconds);
+            replicaStats.put("lastPollAgeMillis", replica.lastPollMillis == 0 ? -1 : now - replica.lastPollMillis);
+            stats.put("replica." + replica.host, replicaStats);
+        }
+        return stats;
+    }
+
+    static final class Replica {
+        final String host;
+        final DataSource dataSource;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicLong routed = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        volatile long unhealthyUntil;
+        volatile GtidSet executedGtids = GtidSet.EMPTY;
+        volatile long lagSeconds = -1;
+        volatile long lastPollMillis;
+        volatile boolean lagQueryWarned;
+
+        Replica(String host, DataSource dataSource) {
+            this.host = host;
+            this.dataSource = dataSource;
+        }
+
+        Connection borrow() throws SQLException {
+            outstanding.incrementAndGet();
+            try {
+                Connection connection = dataSource.getConnection();
+                routed.incrementAndGet();
+                return TrackedConnection.wrap(connection, outstanding::decrementAndGet);
+            } catch (SQLException | RuntimeException e) {
+                outstanding.decrementAndGet();
+                throw e;
+            }
+        }
+
+        void markUnhealthy() {
+            failures.incrementAndGet();
+            unhealthyUntil = System.currentTimeMillis() + UNHEALTHY_BACKOFF_MILLIS;
+        }
+    }
+
+    private final class ReadOnlyView extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return getReadConnection();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package db;
+
+import java.io.Serializable;
+
+/**
+ * Position of a session's last committed write: the master's executed GTID set right after the
+ * commit, plus the commit time for servers running without GTIDs. Also remembers when the session
+ * last changed movies or stars, since only those writes have to show up on movie and star pages.
+ * Stored in the HttpSession, so it must stay serializable.
+ */
+public final class WriteToken implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String gtids;
+    private final long committedAtMillis;
+    private final long catalogCommittedAtMillis;
+    private transient volatile GtidSet parsed;
+
+    WriteToken(String gtids, long committedAtMillis, long catalogCommittedAtMillis) {
+        this.gtids = gtids == null ? "" : gtids;
+        this.committedAtMillis = committedAtMillis;
+        this.catalogCommittedAtMillis = catalogCommittedAtMillis;
+    }
+
+    public String getGtids() {
+        return gtids;
+    }
+
+    public long getCommittedAtMillis() {
+        return committedAtMillis;
+    }
+
+    /**
+     * Commit time of the session's last write to movies, stars or genres, or 0 if it made none.
+     */
+    public long getCatalogCommittedAtMillis() {
+        return catalogCommittedAtMillis;
+    }
+
+    public boolean hasCatalogWrite() {
+        return catalogCommittedAtMillis > 0;
+    }
+
+    GtidSet gtidSet() {
+        GtidSet result = parsed;
+        if (result == null) {
+            result = GtidSet.parse(gtids);
+            parsed = result;
+        }
+        return result;
+    }
+}
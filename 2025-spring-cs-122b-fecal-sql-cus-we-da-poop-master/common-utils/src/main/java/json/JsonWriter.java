@@ -0,0 +1,459 @@
+package json;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Streaming JSON writer that encodes straight to UTF-8 bytes, for every servlet response.
+ * <p>
+ * Strings are escaped and encoded in a single pass over their chars, and numbers are formatted in
+ * place, so writing a field allocates nothing. Bytes collect in a buffer borrowed from the calling
+ * thread and reused by the next writer on that thread; a streaming writer hands the buffer to its
+ * output stream whenever it fills, an in-memory one grows it until {@link #toByteArray()}.
+ * <p>
+ * Commas and colons are inserted automatically; callers keep names, values and begin/end calls
+ * balanced, as the writer does not check structure. A writer must be {@link #close() closed} on the
+ * thread that created it so that the buffer goes back for reuse.
+ */
+public final class JsonWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    /** Buffers grown past this by an in-memory writer are dropped rather than kept per thread. */
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    /** For each ASCII char: 0 to copy it, the letter after the backslash, or 'u' for \\u00XX. */
+    private static final byte[] ESCAPES = new byte[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+    }
+
+    private final OutputStream out;                 // null for an in-memory writer
+    private final HttpServletResponse response;     // forResponse only, to set Content-Length
+    private byte[] buffer;
+    private int position;
+    private boolean flushed;
+    private boolean comma;
+
+    private JsonWriter(OutputStream out, HttpServletResponse response) {
+        this.out = out;
+        this.response = response;
+        byte[] reused = BUFFERS.get();
+        if (reused != null) {
+            BUFFERS.set(null);
+            this.buffer = reused;
+        } else {
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * A writer for the response body, with content type application/json in UTF-8. A body that fits
+     * in the buffer is sent with a Content-Length when the writer is closed; a larger one streams.
+     */
+    public static JsonWriter forResponse(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        return new JsonWriter(response.getOutputStream(), response);
+    }
+
+    /** Writes {@code value} (see {@link #value(Object)}) as the whole response body. */
+    public static void write(HttpServletResponse response, Object value) throws IOException {
+        try (JsonWriter json = forResponse(response)) {
+            json.value(value);
+        }
+    }
+
+    public static JsonWriter to(OutputStream out) {
+        return new JsonWriter(out, null);
+    }
+
+    /** A writer that keeps everything in memory, for bodies that are cached before being sent. */
+    public static JsonWriter inMemory() {
+        return new JsonWriter(null, null);
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        ensure(1);
+        buffer[position++] = '{';
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        ensure(1);
+        buffer[position++] = '}';
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        ensure(1);
+        buffer[position++] = '[';
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        ensure(1);
+        buffer[position++] = ']';
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        ensure(1);
+        buffer[position++] = ':';
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            bytes(NULL);
+        } else {
+            string(value);
+        }
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        number(value);
+        comma = true;
+        return this;
+    }
+
+    /** NaN and the infinities, which JSON cannot represent, are written as null. */
+    public JsonWriter value(double value) throws IOException {
+        separate();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            bytes(NULL);
+        } else if (value == (long) value && Math.abs(value) < 1e7 && Double.doubleToRawLongBits(value) != Long.MIN_VALUE) {
+            // Whole numbers (but not -0.0) in the range Double.toString writes as "7.0", without the String.
+            number((long) value);
+            ascii(".0");
+        } else if (value != 0 && Math.abs(value) < 1e6 && (long) (value * 10) / 10.0 == value) {
+            // One decimal place, as every rounded rating has.
+            long tenths = (long) (value * 10);
+            ensure(1);
+            if (tenths < 0) {
+                buffer[position++] = '-';
+                tenths = -tenths;
+            }
+            number(tenths / 10);
+            ensure(2);
+            buffer[position++] = '.';
+            buffer[position++] = (byte) ('0' + tenths % 10);
+        } else {
+            ascii(Double.toString(value));
+        }
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        bytes(value ? TRUE : FALSE);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return value(value.doubleValue());
+        }
+        separate();
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            ascii(value.toString());
+        } else {
+            double d = value.doubleValue();
+            ascii(Double.isNaN(d) || Double.isInfinite(d) ? "null" : value.toString());
+        }
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Copies {@code json}, which must be one complete UTF-8 encoded JSON value, such as a fragment
+     * written earlier by an in-memory writer.
+     */
+    public JsonWriter rawValue(byte[] json) throws IOException {
+        separate();
+        bytes(json);
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        bytes(NULL);
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Any value made of maps (keys written with {@code String.valueOf}), iterables, arrays of
+     * objects, strings, numbers, booleans and null; anything else is written as its toString.
+     */
+    public JsonWriter value(Object value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof String) {
+            return value((String) value);
+        }
+        if (value instanceof Number) {
+            return value((Number) value);
+        }
+        if (value instanceof Boolean) {
+            return value(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof Iterable) {
+            beginArray();
+            for (Object item : (Iterable<?>) value) {
+                value(item);
+            }
+            return endArray();
+        }
+        if (value instanceof Object[]) {
+            return value(Arrays.asList((Object[]) value));
+        }
+        return value(value.toString());
+    }
+
+    /**
+     * The bytes written so far by an in-memory writer. The writer stays usable.
+     */
+    public byte[] toByteArray() {
+        if (out != null) {
+            throw new IllegalStateException("toByteArray() needs an in-memory writer");
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Drops everything written so far so that something else, typically an error, can be written
+     * instead; false when part of it has already gone to the output stream.
+     */
+    public boolean reset() {
+        if (flushed || (response != null && response.isCommitted())) {
+            return false;
+        }
+        position = 0;
+        comma = false;
+        return true;
+    }
+
+    /** Sends what is buffered to the output stream, and flushes the stream. */
+    public void flush() throws IOException {
+        if (out != null) {
+            drain();
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends what is buffered and gives the buffer back to the thread. The output stream itself is
+     * left open for the container to finish the response.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            if (out != null) {
+                if (!flushed && response != null && !response.isCommitted()) {
+                    response.setContentLength(position);
+                }
+                drain();
+                out.flush();
+            }
+        } finally {
+            if (buffer.length <= MAX_RETAINED_BUFFER) {
+                BUFFERS.set(buffer);
+            }
+            buffer = null;
+        }
+    }
+
+    private void separate() throws IOException {
+        if (comma) {
+            ensure(1);
+            buffer[position++] = ',';
+        }
+    }
+
+    /** Makes room for {@code bytes} more bytes, by draining to the stream or growing the buffer. */
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes <= buffer.length) {
+            return;
+        }
+        if (out != null) {
+            drain();
+            if (bytes <= buffer.length) {
+                return;
+            }
+        }
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+            flushed = true;
+        }
+    }
+
+    private void bytes(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /** Text known to be ASCII without anything to escape, such as a formatted number. */
+    private void ascii(String text) throws IOException {
+        int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void number(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * The quoted string, escaped and UTF-8 encoded in one pass. Besides what JSON requires, U+2028
+     * and U+2029 are escaped so the output is also valid JavaScript; an unpaired surrogate becomes
+     * '?', as {@code String.getBytes(UTF_8)} does.
+     */
+    private void string(String value) throws IOException {
+        int length = value.length();
+        ensure(length + 2);
+        byte[] bytes = buffer;
+        int pos = position;
+        bytes[pos++] = '"';
+        int i = 0;
+        // Plain ASCII, nearly every title and name, is copied with no further checks.
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80 || ESCAPES[c] != 0) {
+                break;
+            }
+            bytes[pos++] = (byte) c;
+        }
+        position = pos;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (position + 6 > buffer.length) {
+                ensure(6);
+            }
+            byte[] buffer = this.buffer;
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    buffer[position++] = (byte) c;
+                } else if (escape == 'u') {
+                    unicodeEscape(c);
+                } else {
+                    buffer[position++] = '\\';
+                    buffer[position++] = escape;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    buffer[position++] = '?';
+                }
+            } else if (c == 0x2028 || c == 0x2029) {
+                unicodeEscape(c);
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        ensure(1);
+        buffer[position++] = '"';
+    }
+
+    private void unicodeEscape(char c) {
+        buffer[position++] = '\\';
+        buffer[position++] = 'u';
+        buffer[position++] = HEX[(c >> 12) & 0xf];
+        buffer[position++] = HEX[(c >> 8) & 0xf];
+        buffer[position++] = HEX[(c >> 4) & 0xf];
+        buffer[position++] = HEX[c & 0xf];
+    }
+}
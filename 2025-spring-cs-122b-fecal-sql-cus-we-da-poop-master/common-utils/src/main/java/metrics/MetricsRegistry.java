@@ -0,0 +1,46 @@
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of named metric groups.
+ * Components register a supplier once and the metrics endpoint polls all of them on demand.
+ */
+public final class MetricsRegistry {
+
+    private static final Map<String, Supplier<Map<String, Object>>> GROUPS = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Registers (or replaces) a metric group under the given name.
+     */
+    public static void register(String name, Supplier<Map<String, Object>> supplier) {
+        GROUPS.put(name, supplier);
+    }
+
+    public static void unregister(String name) {
+        GROUPS.remove(name);
+    }
+
+    /**
+     * Collects the current value of every registered group, keyed by group name.
+     */
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Map<String, Object>>> entry : GROUPS.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().get());
+            } catch (RuntimeException e) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("error", e.getMessage());
+                result.put(entry.getKey(), error);
+            }
+        }
+        return result;
+    }
+}
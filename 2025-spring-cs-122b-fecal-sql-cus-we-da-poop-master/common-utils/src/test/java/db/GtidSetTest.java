@@ -0,0 +1,56 @@
+package db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtidSetTest {
+
+    private static final String A = "3E11FA47-71CA-11E1-9E33-C80AA9429562";
+    private static final String B = "4d3c2b1a-0000-11e1-9e33-c80aa9429562";
+
+    @Test
+    void containsSubrangesOfOneSource() {
+        GtidSet replica = GtidSet.parse(A + ":1-5:11-18");
+        assertTrue(replica.contains(GtidSet.parse(A + ":3")));
+        assertTrue(replica.contains(GtidSet.parse(A + ":1-5")));
+        assertTrue(replica.contains(GtidSet.parse(A + ":2-4:12-18")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":6")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":4-12")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":18-19")));
+    }
+
+    @Test
+    void mergesAdjacentAndOverlappingRanges() {
+        GtidSet replica = GtidSet.parse(A + ":1-5:6-9, " + A + ":8-12");
+        assertTrue(replica.contains(GtidSet.parse(A + ":1-12")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":1-13")));
+    }
+
+    @Test
+    void needsEverySourceOfTheOtherSet() {
+        GtidSet replica = GtidSet.parse(A + ":1-100,\n" + B + ":1-3");
+        assertTrue(replica.contains(GtidSet.parse(B.toUpperCase() + ":2," + A + ":50")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":50,5e5e5e5e-0000-11e1-9e33-c80aa9429562:1")));
+    }
+
+    @Test
+    void keepsTaggedTransactionsApart() {
+        GtidSet replica = GtidSet.parse(A + ":1-10:batch:1-3");
+        assertTrue(replica.contains(GtidSet.parse(A + ":batch:2")));
+        assertTrue(replica.contains(GtidSet.parse(A + ":7")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":batch:7")));
+        assertFalse(replica.contains(GtidSet.parse(A + ":other:1")));
+    }
+
+    @Test
+    void emptySets() {
+        GtidSet replica = GtidSet.parse(A + ":1-5");
+        assertTrue(replica.contains(GtidSet.EMPTY));
+        assertTrue(replica.contains(GtidSet.parse("  ")));
+        assertTrue(GtidSet.EMPTY.contains(GtidSet.parse(null)));
+        assertFalse(GtidSet.EMPTY.contains(replica));
+        assertTrue(GtidSet.parse("").isEmpty());
+    }
+}
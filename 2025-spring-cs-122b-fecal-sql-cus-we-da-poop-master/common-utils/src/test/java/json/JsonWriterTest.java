@@ -0,0 +1,88 @@
+package json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonWriterTest {
+
+    private static String written(double value) throws IOException {
+        JsonWriter json = JsonWriter.inMemory();
+        json.value(value);
+        return new String(json.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String written(String value) throws IOException {
+        JsonWriter json = JsonWriter.inMemory();
+        json.value(value);
+        return new String(json.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void doublesAreWrittenAsDoubleToString() throws IOException {
+        double[] values = {0.0, -0.0, 7.0, -3.0, 7.3, 0.3, -0.5, -2.5, 8.1, 10.0, 9999999.0, 1e7, 999999.9,
+                1e6 + 0.5, 0.05, 1e-5, 3.14159, 1.0 / 3, 123456789.123, Long.MAX_VALUE, -1e300, Double.MIN_VALUE};
+        for (double value : values) {
+            assertEquals(Double.toString(value), written(value), "value " + value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double tenths = (random.nextInt(2_000_000) - 1_000_000) / 10.0;
+            assertEquals(Double.toString(tenths), written(tenths));
+            double any = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 5);
+            assertEquals(Double.toString(any), written(any));
+        }
+    }
+
+    @Test
+    void storedFloatRatingsKeepTheirDigits() throws IOException {
+        // What a FLOAT column holds for 7.3, printed the way the float itself prints.
+        double rating = Double.parseDouble(Float.toString(7.3f));
+        assertEquals("7.3", written(rating));
+    }
+
+    @Test
+    void nonFiniteDoublesAreNull() throws IOException {
+        assertEquals("null", written(Double.NaN));
+        assertEquals("null", written(Double.POSITIVE_INFINITY));
+        assertEquals("null", written(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() throws IOException {
+        assertEquals("\"plain title\"", written("plain title"));
+        assertEquals("\"say \\\"hi\\\" \\\\ bye\"", written("say \"hi\" \\ bye"));
+        assertEquals("\"a\\nb\\rc\\td\\be\\ff\"", written("a\nb\rc\td\be\ff"));
+        assertEquals("\"\\u0000\\u001f\"", written("\u0000\u001f"));
+        assertEquals("\"\\u2028\\u2029\"", written("\u2028\u2029"));
+        assertEquals("\"/\"", written("/"));
+        assertEquals("null", written((String) null));
+    }
+
+    @Test
+    void writesNonAsciiAsUtf8() throws IOException {
+        String value = "Amélie 東京 🎬";
+        assertEquals("\"" + value + "\"", written(value));
+        // An unpaired surrogate cannot be encoded.
+        assertEquals("\"a?b\"", written("a\uD83Cb"));
+    }
+
+    @Test
+    void separatesMembersAndElements() throws IOException {
+        JsonWriter json = JsonWriter.inMemory();
+        json.beginObject()
+                .name("id").value("tt01")
+                .name("year").value(2004)
+                .name("rating").value(7.5)
+                .name("genres").beginArray().value("Drama").value("Comedy").endArray()
+                .name("director").nullValue()
+                .name("raw").rawValue("{\"x\":1}".getBytes(StandardCharsets.UTF_8))
+                .endObject();
+        assertEquals("{\"id\":\"tt01\",\"year\":2004,\"rating\":7.5,\"genres\":[\"Drama\",\"Comedy\"],"
+                + "\"director\":null,\"raw\":{\"x\":1}}", new String(json.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
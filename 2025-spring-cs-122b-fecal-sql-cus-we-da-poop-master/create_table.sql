@@ -22,6 +22,8 @@ CREATE TABLE movies (
 );
 
 ALTER TABLE movies ADD FULLTEXT INDEX idx_movie_title_fts (title);
+CREATE INDEX idx_movies_title ON movies (title);
+CREATE INDEX idx_movies_year ON movies (year);
 
 CREATE TABLE stars (
     id VARCHAR(10) PRIMARY KEY,
@@ -37,11 +39,27 @@ CREATE TABLE stars_in_movies (
     FOREIGN KEY (movieId) REFERENCES movies(id)
 );
 
+-- Derived from stars_in_movies; maintained by the procedures in stored-procedure.sql.
+CREATE TABLE star_movie_counts (
+    starId VARCHAR(10) PRIMARY KEY,
+    movieCount INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (starId) REFERENCES stars(id)
+);
+
+-- Up to three "id:name" pairs per movie, most prolific star first, ties broken by name.
+CREATE TABLE top_stars_per_movie (
+    movieId VARCHAR(10) PRIMARY KEY,
+    topStars VARCHAR(512),
+    FOREIGN KEY (movieId) REFERENCES movies(id)
+);
+
 CREATE TABLE genres (
     id INT PRIMARY KEY AUTO_INCREMENT,
     name VARCHAR(32) NOT NULL
 );
 
+CREATE INDEX idx_genres_name ON genres (name);
+
 CREATE TABLE genres_in_movies (
     genreId INT,
     movieId VARCHAR(10),
@@ -77,6 +95,16 @@ CREATE TABLE sales (
     FOREIGN KEY (movieId) REFERENCES movies(id)
 );
 
+-- Append-only log of catalog mutations, written in the same transaction as the change itself.
+-- Each movies-service pod polls it by seq to keep its in-memory catalog and caches current.
+-- entity is 'movie', 'star', 'genre' or 'catalog' (bulk change: reload everything).
+CREATE TABLE catalog_changes (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entity VARCHAR(16) NOT NULL,
+    entityId VARCHAR(10),
+    changedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
 CREATE TABLE ratings (
     movieId VARCHAR(10) PRIMARY KEY,
     rating FLOAT NOT NULL,
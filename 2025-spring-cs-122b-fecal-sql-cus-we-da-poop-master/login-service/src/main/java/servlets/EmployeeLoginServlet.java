@@ -1,25 +1,24 @@
 package servlets;
 
-import com.google.gson.JsonObject;
-import com.mysql.cj.jdbc.MysqlDataSource;
+import db.DataSourceFactory;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import json.JsonWriter;
 import org.jasypt.util.password.StrongPasswordEncryptor;
 import utils.RecaptchaVerifyUtils;
 
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import javax.sql.DataSource;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @WebServlet(name = "EmployeeLoginServlet", urlPatterns = "/_dashboard/login-action")
 public class EmployeeLoginServlet extends HttpServlet {
@@ -27,63 +26,21 @@ public class EmployeeLoginServlet extends HttpServlet {
     private DataSource dataSource;
 
     public void init(ServletConfig config) {
-        try {
-            String dbHost = System.getenv("DB_SLAVE_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
-
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
-
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
-
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
-
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
-
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
-        }
+        this.dataSource = DataSourceFactory.getReadDataSource();
     }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-        JsonObject responseJsonObject = new JsonObject();
+        Map<String, Object> responseJson = new LinkedHashMap<>();
 
         String email = request.getParameter("email");
         String password = request.getParameter("password");
         String recaptchaResponse = request.getParameter("g-recaptcha-response");
 
         if (recaptchaResponse == null || recaptchaResponse.isEmpty()) {
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Missing reCAPTCHA response.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Missing reCAPTCHA response.");
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(responseJsonObject.toString());
-            out.close();
+            JsonWriter.write(response, responseJson);
             return;
         }
 
@@ -92,20 +49,18 @@ public class EmployeeLoginServlet extends HttpServlet {
             System.out.println("EmployeeLoginServlet: reCAPTCHA verified successfully for " + email);
         } catch (Exception e) {
             request.getServletContext().log("EmployeeLoginServlet: reCAPTCHA verification failed for " + email, e);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "reCAPTCHA verification failed: " + e.getMessage());
+            responseJson.put("status", "fail");
+            responseJson.put("message", "reCAPTCHA verification failed: " + e.getMessage());
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            out.write(responseJsonObject.toString());
-            out.close();
+            JsonWriter.write(response, responseJson);
             return;
         }
 
         if (email == null || password == null || email.trim().isEmpty() || password.trim().isEmpty()) {
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Email and password are required.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Email and password are required.");
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(responseJsonObject.toString());
-            out.close();
+            JsonWriter.write(response, responseJson);
             return;
         }
 
@@ -138,34 +93,34 @@ public class EmployeeLoginServlet extends HttpServlet {
                     session.setAttribute("employeeFullName", fullName);
                     session.setMaxInactiveInterval(30 * 60);
 
-                    responseJsonObject.addProperty("status", "success");
-                    responseJsonObject.addProperty("message", "Login successful!");
+                    responseJson.put("status", "success");
+                    responseJson.put("message", "Login successful!");
                     response.setStatus(HttpServletResponse.SC_OK);
 
                 } else {
                     System.out.println("Employee login failed (incorrect password) for: " + email);
-                    responseJsonObject.addProperty("status", "fail");
-                    responseJsonObject.addProperty("message", "Incorrect email or password.");
+                    responseJson.put("status", "fail");
+                    responseJson.put("message", "Incorrect email or password.");
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 }
             } else {
                 System.out.println("Employee login failed (email not found): " + email);
-                responseJsonObject.addProperty("status", "fail");
-                responseJsonObject.addProperty("message", "Incorrect email or password.");
+                responseJson.put("status", "fail");
+                responseJson.put("message", "Incorrect email or password.");
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             }
 
         } catch (SQLException e) {
             request.getServletContext().log("EmployeeLoginServlet: Database error for " + email, e);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Database error occurred. Please try again later.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Database error occurred. Please try again later.");
             if (!response.isCommitted()) {
                 response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
         } catch (Exception e) {
             request.getServletContext().log("EmployeeLoginServlet: Unexpected error for " + email, e);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "An unexpected error occurred.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "An unexpected error occurred.");
             if (!response.isCommitted()) {
                 response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
@@ -175,8 +130,7 @@ public class EmployeeLoginServlet extends HttpServlet {
             try { if (conn != null) conn.close(); } catch (SQLException e) { request.getServletContext().log("Error closing Connection", e); }
             System.out.println("EmployeeLoginServlet: Released database resources for " + email);
 
-            out.write(responseJsonObject.toString());
-            out.close();
+            JsonWriter.write(response, responseJson);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package servlets;
 
+import db.DataSourceFactory;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -7,10 +8,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import javax.sql.DataSource;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.*;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -19,10 +17,10 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 
+import json.JsonWriter;
 import models.JwtUtil;
 import org.jasypt.util.password.StrongPasswordEncryptor;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
 
 @WebServlet(name = "LoginServlet", urlPatterns = "/login")
 public class LoginServlet extends HttpServlet {
@@ -34,78 +32,32 @@ public class LoginServlet extends HttpServlet {
 
     @Override
     public void init() throws ServletException {
-        try {
-            String dbHost = System.getenv("DB_SLAVE_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
-
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
-
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
-
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
-
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
-
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
-        }
+        this.dataSource = DataSourceFactory.getReadDataSource();
     }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-
         String email = request.getParameter("email");
         String password = request.getParameter("password");
         String recaptchaResponse = request.getParameter("g-recaptcha-response");
 
         if (recaptchaResponse == null || recaptchaResponse.isEmpty()) {
-            out.write("{\"status\":\"fail\", \"message\":\"Missing reCAPTCHA response.\"}");
-            out.close();
+            writeStatus(response, "fail", "Missing reCAPTCHA response.");
             return;
         }
 
         try {
             if (!verifyRecaptcha(recaptchaResponse)) {
-                out.write("{\"status\":\"fail\", \"message\":\"reCAPTCHA verification failed.\"}");
-                out.close();
+                writeStatus(response, "fail", "reCAPTCHA verification failed.");
                 return;
             }
         } catch (Exception e) {
             getServletContext().log("reCAPTCHA verification error: ", e); // Corrected: Use getServletContext()
-            out.write("{\"status\":\"fail\", \"message\":\"Error during reCAPTCHA verification.\"}");
-            out.close();
+            writeStatus(response, "fail", "Error during reCAPTCHA verification.");
             return;
         }
 
         if (email == null || password == null || email.trim().isEmpty() || password.trim().isEmpty()) {
-            response.getWriter().write("{\"status\":\"fail\", \"message\":\"Missing email or password\"}");
-            out.close();
+            writeStatus(response, "fail", "Missing email or password");
             return;
         }
 
@@ -119,7 +71,7 @@ public class LoginServlet extends HttpServlet {
                 try (ResultSet resultSet = statement.executeQuery()) {
 
                     if (!resultSet.next()) {
-                        out.write("{\"status\":\"fail\", \"message\":\"Email not found.\"}");
+                        writeStatus(response, "fail", "Email not found.");
                     } else {
                         String encryptedPasswordFromDB = resultSet.getString("password");
                         StrongPasswordEncryptor passwordEncryptor = new StrongPasswordEncryptor();
@@ -127,25 +79,32 @@ public class LoginServlet extends HttpServlet {
                         boolean passwordMatch = passwordEncryptor.checkPassword(password, encryptedPasswordFromDB);
 
                         if (!passwordMatch) {
-                            out.write("{\"status\":\"fail\", \"message\":\"Incorrect password.\"}");
+                            writeStatus(response, "fail", "Incorrect password.");
                         } else {
                             String token = JwtUtil.generateToken(email, null);
                             JwtUtil.updateJwtCookie(response, token);
-                            out.write("{\"status\":\"success\"}");
+                            writeStatus(response, "success", null);
                         }
                     }
                 }
             }
         } catch (SQLException e) {
             getServletContext().log("Database error during login: ", e); // Corrected: Use getServletContext()
-            out.write("{\"status\":\"fail\", \"message\":\"Database error during login.\"}");
+            writeStatus(response, "fail", "Database error during login.");
         } catch (Exception e) {
             getServletContext().log("Login error: ", e); // Corrected: Use getServletContext()
-            out.write("{\"status\":\"fail\", \"message\":\"An unexpected internal error occurred.\"}");
-        } finally {
-            if (out != null) {
-                out.close();
+            writeStatus(response, "fail", "An unexpected internal error occurred.");
+        }
+    }
+
+    /** {"status": status} plus "message" when there is one. */
+    private static void writeStatus(HttpServletResponse response, String status, String message) throws IOException {
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("status").value(status);
+            if (message != null) {
+                json.name("message").value(message);
             }
+            json.endObject();
         }
     }
 
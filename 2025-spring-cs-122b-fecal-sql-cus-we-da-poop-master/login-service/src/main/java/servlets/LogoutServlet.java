@@ -7,7 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
-import java.io.PrintWriter;
+import json.JsonWriter;
 
 @WebServlet(name = "LogoutServlet", urlPatterns = "/logout")
 public class LogoutServlet extends HttpServlet {
@@ -17,9 +17,8 @@ public class LogoutServlet extends HttpServlet {
             session.invalidate();
         }
 
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-        out.write("{\"status\":\"success\"}");
-        out.close();
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("status").value("success").endObject();
+        }
     }
 }
@@ -5,6 +5,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import json.JsonWriter;
 
 import java.io.IOException;
 
@@ -12,9 +13,10 @@ import java.io.IOException;
 public class SessionCheckServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
-        response.setContentType("application/json");
         HttpSession session = request.getSession(false);
         boolean loggedIn = (session != null && session.getAttribute("email") != null);
-        response.getWriter().write("{\"loggedIn\": " + loggedIn + "}");
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("loggedIn").value(loggedIn).endObject();
+        }
     }
 }
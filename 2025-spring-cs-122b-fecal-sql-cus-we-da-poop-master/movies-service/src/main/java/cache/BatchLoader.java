@@ -0,0 +1,190 @@
+package cache;
+
+import metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces concurrent lookups by key into batched loads.
+ * <p>
+ * A key that is already being loaded is not loaded again: the caller waits for the same result
+ * (single-flight). A new key joins the pending batch. The first caller of a batch is its leader;
+ * it waits up to the window (less if the batch fills), then loads every pending key with one call
+ * on its own thread and hands each waiting caller its value. Nothing is kept once a load
+ * completes, so this saves queries during bursts without serving anything older than a direct
+ * read would.
+ */
+public class BatchLoader<K, V> {
+
+    /** Loads many keys at once; keys that do not exist are left out of the result. */
+    public interface BatchFunction<K, V> {
+        Map<K, V> load(List<K> keys) throws Exception;
+    }
+
+    /** LOOKUP_BATCH_WINDOW_MICROS; 0 keeps single-flight but loads each key as soon as it arrives. */
+    public static final long DEFAULT_WINDOW_MICROS = windowFromEnv("LOOKUP_BATCH_WINDOW_MICROS", 1000);
+
+    private final BatchFunction<K, V> function;
+    private final long windowNanos;
+    private final int maxBatch;
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition full = lock.newCondition();
+    private List<K> pending = new ArrayList<>();   // guarded by lock
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong joinedInFlight = new AtomicLong();
+    private final AtomicLong joinedBatch = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong keysLoaded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile int largestBatch;
+
+    public BatchLoader(String name, BatchFunction<K, V> function, long windowMicros, int maxBatch) {
+        this.function = function;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        MetricsRegistry.register("loader." + name, this::stats);
+    }
+
+    /**
+     * The value for {@code key}, or null when it does not exist. Failures of the batch load are
+     * rethrown to every caller that was waiting on it.
+     */
+    public V load(K key, long timeoutMillis) throws Exception {
+        requests.incrementAndGet();
+        CompletableFuture<V> future = inFlight.get(key);
+        if (future == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            future = inFlight.putIfAbsent(key, created);
+            if (future == null) {
+                enqueue(key);
+                return await(created, timeoutMillis);
+            }
+        }
+        joinedInFlight.incrementAndGet();
+        return await(future, timeoutMillis);
+    }
+
+    private void enqueue(K key) {
+        List<K> batch = null;
+        lock.lock();
+        try {
+            pending.add(key);
+            if (pending.size() == 1) {
+                // Leader: wait for the window to close or the batch to fill, then take the batch.
+                // An interrupt cuts the wait short, but the batch still runs: its callers depend on it.
+                long remaining = windowNanos;
+                while (pending.size() < maxBatch && remaining > 0) {
+                    try {
+                        remaining = full.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } else {
+                joinedBatch.incrementAndGet();
+                if (pending.size() >= maxBatch) {
+                    full.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            run(batch);
+        }
+    }
+
+    /** Keys that joined while the leader was waking up can take a batch past maxBatch; split it. */
+    private void run(List<K> batch) {
+        for (int start = 0; start < batch.size(); start += maxBatch) {
+            runChunk(batch.subList(start, Math.min(batch.size(), start + maxBatch)));
+        }
+    }
+
+    private void runChunk(List<K> batch) {
+        batches.incrementAndGet();
+        keysLoaded.addAndGet(batch.size());
+        if (batch.size() > largestBatch) {
+            largestBatch = batch.size();
+        }
+        Map<K, V> values = null;
+        Throwable failure = null;
+        try {
+            values = function.load(batch);
+        } catch (Exception | Error e) {
+            failures.incrementAndGet();
+            failure = e;
+        }
+        for (K key : batch) {
+            CompletableFuture<V> future = inFlight.remove(key);
+            if (future == null) {
+                continue;
+            }
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(values.get(key));
+            }
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future, long timeoutMillis) throws Exception {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Batched lookup took longer than " + timeoutMillis + " ms");
+        }
+    }
+
+    private static long windowFromEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long requestCount = requests.get();
+        long batchCount = batches.get();
+        stats.put("requests", requestCount);
+        stats.put("batches", batchCount);
+        stats.put("keysLoaded", keysLoaded.get());
+        stats.put("joinedInFlight", joinedInFlight.get());
+        stats.put("joinedBatch", joinedBatch.get());
+        stats.put("largestBatch", largestBatch);
+        stats.put("requestsPerBatch", batchCount == 0 ? 0.0 : (double) requestCount / batchCount);
+        stats.put("failures", failures.get());
+        stats.put("windowMicros", TimeUnit.NANOSECONDS.toMicros(windowNanos));
+        return stats;
+    }
+}
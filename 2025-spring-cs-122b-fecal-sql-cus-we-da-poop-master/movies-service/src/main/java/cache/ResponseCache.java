@@ -0,0 +1,221 @@
+package cache;
+
+import metrics.MetricsRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of serialized responses (UTF-8 JSON bytes), so a hit is a single write.
+ * <p>
+ * Size is bounded in bytes. Entries expire after a fixed TTL. When full, the least recently used
+ * entry is the eviction candidate, but a new response only replaces it if the new key has been
+ * requested more often recently (TinyLFU admission, using a {@link FrequencySketch}). A burst of
+ * one-off queries therefore cannot flush the pages everybody keeps asking for.
+ * <p>
+ * Keys are spread over {@link #SEGMENTS} segments, each with its own lock, LRU order, sketch and
+ * share of the byte budget, so concurrent requests for different pages rarely wait on each other.
+ * Expired entries are dropped when they are read or reach the LRU end, never by scanning.
+ * <p>
+ * {@link #invalidateAll()} bumps a generation number. Responses computed before the bump are not
+ * stored, so a request that raced with a catalog write cannot put a stale page back.
+ * <p>
+ * Each entry also carries the time its data is current as of (every write committed before it is
+ * reflected), so a session that just wrote can skip entries built from data older than its write,
+ * however recently they were stored.
+ */
+public class ResponseCache {
+
+    static final int SEGMENTS = 8;
+
+    private static final class Entry {
+        final byte[] body;
+        final long dataAsOfMillis;
+        final long expiresAtMillis;
+
+        Entry(byte[] body, long dataAsOfMillis, long expiresAtMillis) {
+            this.body = body;
+            this.dataAsOfMillis = dataAsOfMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final class Segment {
+        final long maxBytes;
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        final FrequencySketch sketch;
+
+        long bytes;
+        long hits;
+        long misses;
+        long evictions;
+        long rejections;
+        long expirations;
+
+        Segment(long maxBytes, int expectedEntries) {
+            this.maxBytes = maxBytes;
+            this.sketch = new FrequencySketch(expectedEntries);
+        }
+
+        synchronized byte[] get(String key, long writtenAtMillis) {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+                remove(key, entry);
+                expirations++;
+                misses++;
+                return null;
+            }
+            if (writtenAtMillis > 0 && entry.dataAsOfMillis <= writtenAtMillis) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.body;
+        }
+
+        synchronized void put(String key, byte[] body, long computedInGeneration, long dataAsOfMillis) {
+            // Checked under the segment lock: invalidateAll bumps the generation before it takes
+            // this lock to clear, so a stale response either sees the bump or is cleared after.
+            if (computedInGeneration != generation || body.length > maxBytes) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Entry previous = entries.get(key);
+            if (previous != null) {
+                remove(key, previous);
+            }
+            if (bytes + body.length > maxBytes && !makeRoom(key, body.length, now)) {
+                rejections++;
+                return;
+            }
+            entries.put(key, new Entry(body, dataAsOfMillis, now + ttlMillis));
+            bytes += body.length;
+        }
+
+        /**
+         * Evicts from the LRU end while the entry there has expired or the candidate is more
+         * popular than it. Returns false (evicting nothing further) once neither holds.
+         */
+        private boolean makeRoom(String candidate, int needed, long now) {
+            int candidateFrequency = sketch.frequency(candidate);
+            Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+            while (bytes + needed > maxBytes && lru.hasNext()) {
+                Map.Entry<String, Entry> victim = lru.next();
+                if (victim.getValue().expiresAtMillis <= now) {
+                    expirations++;
+                } else if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                    return false;
+                } else {
+                    evictions++;
+                }
+                bytes -= victim.getValue().body.length;
+                lru.remove();
+            }
+            return bytes + needed <= maxBytes;
+        }
+
+        private void remove(String key, Entry entry) {
+            entries.remove(key);
+            bytes -= entry.body.length;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private volatile long generation;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResponseCache(String name, long maxBytes, long ttlMillis, int expectedEntries) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS, Math.max(1, expectedEntries / SEGMENTS));
+        }
+        MetricsRegistry.register("cache." + name, this::stats);
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[segmentIndex(key)];
+    }
+
+    static int segmentIndex(String key) {
+        // High bits of a multiplicative hash, so the choice does not line up with the sketch's.
+        return (key.hashCode() * 0x9e3779b9) >>> (32 - Integer.numberOfTrailingZeros(SEGMENTS));
+    }
+
+    /**
+     * The cached body for {@code key}, or null. {@code writtenAtMillis} is the commit time of the
+     * caller's last write, or 0; entries whose data is not current past it count as misses.
+     */
+    public byte[] get(String key, long writtenAtMillis) {
+        return segmentFor(key).get(key, writtenAtMillis);
+    }
+
+    /**
+     * The generation to pass to {@link #put}; read it before computing the response.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores {@code body}, built from data that reflects every write committed before
+     * {@code dataAsOfMillis} (0 when that is unknown).
+     */
+    public void put(String key, byte[] body, long computedInGeneration, long dataAsOfMillis) {
+        segmentFor(key).put(key, body, computedInGeneration, dataAsOfMillis);
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            generation++;
+        }
+        invalidations.incrementAndGet();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long entries = 0, bytes = 0, hits = 0, misses = 0, evictions = 0, rejections = 0, expirations = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.entries.size();
+                bytes += segment.bytes;
+                hits += segment.hits;
+                misses += segment.misses;
+                evictions += segment.evictions;
+                rejections += segment.rejections;
+                expirations += segment.expirations;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookups = hits + misses;
+        stats.put("entries", entries);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("segments", SEGMENTS);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("evictions", evictions);
+        stats.put("admissionRejections", rejections);
+        stats.put("expirations", expirations);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
@@ -0,0 +1,827 @@
+package catalog;
+
+import models.MovieCounts;
+import models.MovieListQuery;
+import search.CompletionIndex;
+import search.CompressedBitmap;
+import search.SearchIndex;
+import search.TrigramIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable in-memory copy of movies, ratings, genres, stars and their link tables.
+ * Movies, genres and stars are addressed by dense ordinals into parallel arrays; the link
+ * tables are stored both ways as sorted ordinal arrays. Genre ordinals follow genre name order.
+ * <p>
+ * Filtering mirrors the SQL in MoviesServlet: LIKE comparisons are case-insensitive substring or
+ * prefix matches, and ft_query keywords must each prefix a word of the title. Keyword matching
+ * and ranking go through the snapshot's {@link SearchIndex} over title words; director and star name
+ * substring filters go through {@link TrigramIndex}es instead of scanning every name.
+ */
+public final class Catalog {
+
+    static final int NO_BIRTH_YEAR = Integer.MIN_VALUE;
+    public static final int MAX_COMPLETIONS = 10;
+
+    // movies
+    final String[] movieIds;
+    final String[] titles;
+    final String[] directors;
+    final int[] years;
+    final float[] ratings;          // NaN when the movie has no ratings row
+    final int[] numVotes;           // 0 when the movie has no ratings row
+    final int[][] movieGenres;      // genre ordinals, ascending (= by genre name)
+    final int[][] movieStars;       // star ordinals, most movies first, then by name
+    final String[] titlesLower;
+    final String[] directorsLower;
+    final String[][] titleWords;
+    final TrigramIndex directorTrigrams;   // over directorsLower, by movie ordinal
+    final int[] titleRank;          // position in case-insensitive title order
+    final int[] titleGroup;         // dense rank of titlesLower; equal titles share a group
+    final int[] ratingGroup;        // dense rank of sortRating
+    final int[] idRank;             // position in movie id order
+    final int[] byMovieId;          // inverse of idRank
+    final SearchIndex searchIndex;  // over titleWords, by movie ordinal
+    final CompletionIndex completionIndex;
+    final Map<String, Integer> movieIndex;
+    final FilterIndex filterIndex;
+
+    // genres
+    final int[] genreIds;
+    final String[] genreNames;
+    final int[][] genreMovies;
+    final Map<String, Integer> genreIndex;   // lower-cased name
+
+    // stars
+    final String[] starIds;
+    final String[] starNames;
+    final String[] starNamesLower;
+    final int[] birthYears;
+    final int[][] starMovies;       // movie ordinals, newest first, then by title
+    final SearchIndex starSearchIndex;  // over star name words, by star ordinal
+    final TrigramIndex starNameTrigrams;   // over starNamesLower, by star ordinal
+    final Map<String, Integer> starIndex;
+    final CoStarGraph coStarGraph;
+
+    final long loadStartedMillis;   // current as of: start of the load, or of the feed read that last patched it
+    final long loadedMillis;
+    final long changeSeq;           // last catalog_changes row reflected in this snapshot
+
+    private final Map<String, SortOrder> sortOrders = new ConcurrentHashMap<>();
+    // UTF-8 JSON per movie ordinal, built on first use (see MovieJson) and carried into the next
+    // incremental snapshot for every movie the change did not touch
+    private final AtomicReferenceArray<byte[]> summaryJson;
+    private final AtomicReferenceArray<byte[]> detailJson;
+
+    Catalog(CatalogLoader.Builder b) {
+        this.movieIds = b.movieIds;
+        this.titles = b.titles;
+        this.directors = b.directors;
+        this.years = b.years;
+        this.ratings = b.ratings;
+        this.numVotes = b.numVotes;
+        this.movieGenres = b.movieGenres;
+        this.movieStars = b.movieStars;
+        this.movieIndex = b.movieIndex;
+        this.genreIds = b.genreIds;
+        this.genreNames = b.genreNames;
+        this.genreMovies = b.genreMovies;
+        this.genreIndex = b.genreIndex;
+        this.starIds = b.starIds;
+        this.starNames = b.starNames;
+        this.birthYears = b.birthYears;
+        this.starMovies = b.starMovies;
+        this.starIndex = b.starIndex;
+        this.loadStartedMillis = b.loadStartedMillis;
+        this.changeSeq = b.changeSeq;
+        this.loadedMillis = System.currentTimeMillis();
+
+        int movieCount = movieIds.length;
+        this.titlesLower = new String[movieCount];
+        this.directorsLower = new String[movieCount];
+        this.titleWords = new String[movieCount][];
+        for (int m = 0; m < movieCount; m++) {
+            titlesLower[m] = titles[m].toLowerCase();
+            directorsLower[m] = directors[m] == null ? "" : directors[m].toLowerCase();
+            titleWords[m] = words(titlesLower[m]);
+        }
+        // A patched snapshot updates its predecessor's index instead of rebuilding it.
+        this.searchIndex = b.searchIndex == null ? SearchIndex.build(titleWords) : b.searchIndex.update(titleWords);
+        this.directorTrigrams = b.directorTrigrams == null
+                ? TrigramIndex.build(directorsLower) : b.directorTrigrams.update(directorsLower);
+        this.starNamesLower = new String[starIds.length];
+        String[][] starNameWords = new String[starIds.length][];
+        for (int s = 0; s < starIds.length; s++) {
+            starNamesLower[s] = starNames[s].toLowerCase();
+            starNameWords[s] = words(starNamesLower[s]);
+        }
+        this.starSearchIndex = b.starSearchIndex == null
+                ? SearchIndex.build(starNameWords) : b.starSearchIndex.update(starNameWords);
+        this.starNameTrigrams = b.starNameTrigrams == null
+                ? TrigramIndex.build(starNamesLower) : b.starNameTrigrams.update(starNamesLower);
+
+        Integer[] byTitle = boxedOrdinals(movieCount);
+        Arrays.sort(byTitle, Comparator.<Integer, String>comparing(m -> titlesLower[m]).thenComparing(m -> movieIds[m]));
+        this.titleRank = new int[movieCount];
+        this.titleGroup = new int[movieCount];
+        for (int i = 0; i < movieCount; i++) {
+            titleRank[byTitle[i]] = i;
+            titleGroup[byTitle[i]] = i == 0 ? 0
+                    : titleGroup[byTitle[i - 1]] + (titlesLower[byTitle[i]].equals(titlesLower[byTitle[i - 1]]) ? 0 : 1);
+        }
+        double[] distinctRatings = new double[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            distinctRatings[m] = sortRating(m);
+        }
+        distinctRatings = Arrays.stream(distinctRatings).sorted().distinct().toArray();
+        this.ratingGroup = new int[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            ratingGroup[m] = Arrays.binarySearch(distinctRatings, sortRating(m));
+        }
+        String[] sortedIds = movieIds.clone();
+        Arrays.sort(sortedIds);
+        this.idRank = new int[movieCount];
+        this.byMovieId = new int[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            idRank[m] = Arrays.binarySearch(sortedIds, movieIds[m]);
+            byMovieId[idRank[m]] = m;
+        }
+        // The two-key orders the movie list offers are built up front, not on a user's request.
+        for (String primary : new String[] {"rating", "title"}) {
+            String secondary = "rating".equals(primary) ? "title" : "rating";
+            for (int directions = 0; directions < 4; directions++) {
+                sortOrder(Arrays.asList(new MovieListQuery.SortKey(primary, (directions & 1) != 0),
+                        new MovieListQuery.SortKey(secondary, (directions & 2) != 0)));
+            }
+        }
+        this.completionIndex = CompletionIndex.build(titles, popularityRank(), MAX_COMPLETIONS);
+        this.filterIndex = new FilterIndex(this);
+        this.coStarGraph = b.coStarGraph == null
+                ? new CoStarGraph(movieStars, starMovies) : b.coStarGraph.withSize(movieCount, starIds.length);
+        this.summaryJson = fragments(b.summaryJson, movieCount);
+        this.detailJson = fragments(b.detailJson, movieCount);
+    }
+
+    private static AtomicReferenceArray<byte[]> fragments(byte[][] kept, int movieCount) {
+        AtomicReferenceArray<byte[]> fragments = new AtomicReferenceArray<>(movieCount);
+        if (kept != null) {
+            for (int m = 0; m < kept.length && m < movieCount; m++) {
+                fragments.set(m, kept[m]);
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Position of each movie when ordered by rating weighted by log10(1 + numVotes), so a 9.0 with
+     * 12 votes does not outrank an 8.5 with 200,000; unrated movies come last, by title.
+     */
+    private int[] popularityRank() {
+        int movieCount = movieIds.length;
+        double[] popularity = new double[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            popularity[m] = Float.isNaN(ratings[m]) ? 0.0 : ratings[m] * Math.log10(1.0 + numVotes[m]);
+        }
+        Integer[] byPopularity = boxedOrdinals(movieCount);
+        Arrays.sort(byPopularity, Comparator.<Integer>comparingDouble(m -> -popularity[m])
+                .thenComparing(m -> -numVotes[m])
+                .thenComparingInt(m -> titleRank[m]));
+        int[] rank = new int[movieCount];
+        for (int i = 0; i < movieCount; i++) {
+            rank[byPopularity[i]] = i;
+        }
+        return rank;
+    }
+
+    public int movieCount() {
+        return movieIds.length;
+    }
+
+    public int starCount() {
+        return starIds.length;
+    }
+
+    /**
+     * Every catalog write committed before this time is in the snapshot: the start of the full
+     * load, moved forward each time the change feed patches it.
+     */
+    public long getLoadStartedMillis() {
+        return loadStartedMillis;
+    }
+
+    public long getLoadedMillis() {
+        return loadedMillis;
+    }
+
+    /**
+     * Ordinal of the movie with the given id, or -1.
+     */
+    public int movie(String movieId) {
+        Integer ordinal = movieId == null ? null : movieIndex.get(movieId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Ordinal of the star with the given id, or -1.
+     */
+    public int star(String starId) {
+        Integer ordinal = starId == null ? null : starIndex.get(starId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /** The ordinal of the movie at {@code rank} in movie id order. */
+    public int movieByIdRank(int rank) { return byMovieId[rank]; }
+
+    /**
+     * Rank in movie id order of the first movie whose id sorts after {@code movieId}, which need
+     * not be in the catalog; {@link #movieCount()} when there is none.
+     */
+    public int idRankAfter(String movieId) {
+        int low = 0;
+        int high = byMovieId.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (movieIds[byMovieId[mid]].compareTo(movieId) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** The movie's /api/movies entry as UTF-8 JSON. The array is shared; do not modify it. */
+    public byte[] summaryJson(int m) {
+        byte[] json = summaryJson.get(m);
+        if (json == null) {
+            json = MovieJson.summary(this, m);
+            summaryJson.set(m, json);
+        }
+        return json;
+    }
+
+    /** The movie's single-movie object as UTF-8 JSON. The array is shared; do not modify it. */
+    public byte[] detailJson(int m) {
+        byte[] json = detailJson.get(m);
+        if (json == null) {
+            json = MovieJson.detail(this, m);
+            detailJson.set(m, json);
+        }
+        return json;
+    }
+
+    /** Built fragments of this snapshot, with those of {@code stale} movies left out. */
+    byte[][] keptSummaryJson(Set<Integer> stale) {
+        return kept(summaryJson, stale);
+    }
+
+    byte[][] keptDetailJson(Set<Integer> stale) {
+        return kept(detailJson, stale);
+    }
+
+    private static byte[][] kept(AtomicReferenceArray<byte[]> fragments, Set<Integer> stale) {
+        byte[][] kept = new byte[fragments.length()][];
+        for (int m = 0; m < kept.length; m++) {
+            if (!stale.contains(m)) {
+                kept[m] = fragments.get(m);
+            }
+        }
+        return kept;
+    }
+
+    /** Fragments built so far, for the catalog stats. */
+    int jsonFragmentCount() {
+        int count = 0;
+        for (int m = 0; m < summaryJson.length(); m++) {
+            if (summaryJson.get(m) != null) count++;
+            if (detailJson.get(m) != null) count++;
+        }
+        return count;
+    }
+
+    public String movieId(int m) { return movieIds[m]; }
+    public String title(int m) { return titles[m]; }
+    public int year(int m) { return years[m]; }
+    public String director(int m) { return directors[m]; }
+    public boolean hasRating(int m) { return !Float.isNaN(ratings[m]); }
+    public float rating(int m) { return ratings[m]; }
+    public int numVotes(int m) { return numVotes[m]; }
+    public int[] genresOf(int m) { return movieGenres[m]; }
+    public int[] starsOf(int m) { return movieStars[m]; }
+
+    /** Case-insensitive substring test, as LIKE '%needle%' does; the needle must be lower-cased. */
+    public boolean titleContains(int m, String needle) { return titlesLower[m].contains(needle); }
+
+    /**
+     * Movies whose director contains {@code needle} (lower-cased), as {@code m.director LIKE '%x%'}.
+     */
+    public BitSet moviesWithDirectorContaining(String needle) {
+        return directorTrigrams.containing(needle);
+    }
+
+    /**
+     * Movies with a star whose name contains {@code needle} (lower-cased), as the
+     * {@code EXISTS (... s.name LIKE '%x%')} subquery.
+     */
+    public BitSet moviesWithStarNameContaining(String needle) {
+        return moviesOfStars(starNameTrigrams.containing(needle));
+    }
+
+    /** Movies featuring any of the given stars. */
+    public BitSet moviesOfStars(BitSet stars) {
+        BitSet movies = new BitSet(movieIds.length);
+        for (int s = stars.nextSetBit(0); s >= 0; s = stars.nextSetBit(s + 1)) {
+            for (int m : starMovies[s]) {
+                movies.set(m);
+            }
+        }
+        return movies;
+    }
+
+    public int genreId(int g) { return genreIds[g]; }
+    public String genreName(int g) { return genreNames[g]; }
+
+    public List<String> genreNames() {
+        return Collections.unmodifiableList(Arrays.asList(genreNames));
+    }
+
+    public String starId(int s) { return starIds[s]; }
+    public String starName(int s) { return starNames[s]; }
+    public Integer birthYear(int s) { return birthYears[s] == NO_BIRTH_YEAR ? null : birthYears[s]; }
+    public int[] moviesOf(int s) { return starMovies[s]; }
+    public CoStarGraph coStarGraph() { return coStarGraph; }
+
+    /**
+     * One page of /api/movies results, as movie ordinals in display order.
+     * Walks a precomputed total order and stops as soon as the page is full, so the first pages of
+     * broad queries cost a few hundred comparisons rather than a sort. With a cursor the walk starts
+     * at a binary-searched position instead of skipping offset matches.
+     * <p>
+     * Returns up to limit + 1 ordinals; the extra one only signals that another page exists.
+     */
+    public int[] findMovies(MovieListQuery query) {
+        BitSet allowed = candidates(query);
+        String initial = query.getTitleInitial() == null || query.isNonAlphanumericInitial()
+                ? null : query.getTitleInitial().toLowerCase();
+
+        int[] order = sortOrder(query.getSortKeys()).movies;
+        int toSkip = query.getOffset();
+        int[] page = new int[query.getLimit() + 1];
+        int found = 0;
+        int start = query.getCursor() == null ? 0 : seek(order, query.getSortKeys(), query.getCursor());
+        for (int i = start; i < order.length && found < page.length; i++) {
+            int m = order[i];
+            if (allowed != null && !allowed.get(m)) continue;
+            if (query.getYear() != null && years[m] != query.getYear()) continue;
+            if (initial != null && !titlesLower[m].startsWith(initial)) continue;
+            if (query.isNonAlphanumericInitial() && (titles[m].isEmpty() || isAsciiAlphanumeric(titles[m].charAt(0)))) continue;
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            page[found++] = m;
+        }
+        return Arrays.copyOf(page, found);
+    }
+
+    /**
+     * {@link #findMovies} through the {@link FilterIndex}: the genre, year and initial filters are
+     * ANDed as compressed bitmaps with the keyword, director and star matches, and the walk over the
+     * sort order only tests membership in the result. Sorted by rating, a deep offset skips whole
+     * rating buckets by their match counts instead of stepping over each skipped match.
+     * <p>
+     * When the result is so small that the walk would pass many non-matching movies per match, the
+     * page is instead selected with a bounded heap over the matches' positions in the sort order.
+     * Either way the cost follows the page size, not the size of the filtered set.
+     */
+    public int[] findMoviesIndexed(MovieListQuery query) {
+        CompressedBitmap result = filter(query);
+        SortOrder sorted = sortOrder(query.getSortKeys());
+        int[] order = sorted.movies;
+        int[] page = new int[query.getLimit() + 1];
+        int found = 0;
+        int start = 0;
+        int toSkip = query.getOffset();
+        if (query.getCursor() != null) {
+            start = seek(order, query.getSortKeys(), query.getCursor());
+        } else if (toSkip > 0 && !query.getSortKeys().isEmpty() && "rating".equals(query.getSortKeys().get(0).field)) {
+            boolean ascending = query.getSortKeys().get(0).ascending;
+            while (start < order.length) {
+                int bucket = FilterIndex.ratingBucket(sortRating(order[start]));
+                int matches = result.andCardinality(filterIndex.byRatingBucket[bucket]);
+                if (matches > toSkip) {
+                    break;
+                }
+                toSkip -= matches;
+                start = bucketEnd(order, start, bucket, ascending);
+            }
+        }
+
+        int matches = result.cardinality();
+        long wanted = (long) toSkip + page.length;
+        long walkCost = wanted * (order.length - start) / Math.max(1, matches);
+        long heapCost = matches * (2L + 64 - Long.numberOfLeadingZeros(wanted));
+        if (heapCost < walkCost) {
+            return firstInOrder(result, sorted, start, toSkip, page.length);
+        }
+        for (int i = start; i < order.length && found < page.length; i++) {
+            int m = order[i];
+            if (!result.contains(m)) continue;
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            page[found++] = m;
+        }
+        return Arrays.copyOf(page, found);
+    }
+
+    /**
+     * The number of movies matching {@code query}'s filters and, when {@code facets} is set, their
+     * split by genre, decade and initial: cardinalities of the filter result ANDed with the
+     * {@link FilterIndex} bitmaps.
+     */
+    public MovieCounts countMovies(MovieListQuery query, boolean facets) {
+        CompressedBitmap result = filter(query);
+        if (!facets) {
+            return new MovieCounts(result.cardinality(), null, null, null);
+        }
+        Map<String, Integer> genres = new LinkedHashMap<>();
+        int[] genreCounts = filterIndex.genreCounts(result);
+        for (int g = 0; g < genreCounts.length; g++) {
+            if (genreCounts[g] > 0) {
+                genres.put(genreNames[g], genreCounts[g]);
+            }
+        }
+        Map<String, Integer> decades = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : filterIndex.yearCounts(result).entrySet()) {
+            decades.merge(MovieCounts.decade(entry.getKey()), entry.getValue(), Integer::sum);
+        }
+        Map<String, Integer> initials = new TreeMap<>();
+        for (Map.Entry<Character, Integer> entry : filterIndex.initialCounts(result).entrySet()) {
+            String initial = MovieCounts.initial(entry.getKey());
+            if (!"*".equals(initial)) {
+                initials.merge(initial, entry.getValue(), Integer::sum);
+            }
+        }
+        int others = result.andCardinality(filterIndex.nonAlphanumeric);
+        if (others > 0) {
+            initials.put("*", others);
+        }
+        return new MovieCounts(result.cardinality(), genres, decades, initials);
+    }
+
+    /**
+     * The {@code count} members of {@code result} that come first in {@code sorted} at or after
+     * position {@code start}, after skipping {@code skip} of them. Keeps a max-heap of the best
+     * positions seen, so a selective filter costs O(matches log(skip + count)).
+     */
+    private static int[] firstInOrder(CompressedBitmap result, SortOrder sorted, int start, int skip, int count) {
+        int k = (int) Math.min((long) skip + count, result.cardinality());
+        int[] heap = new int[k];    // positions in the sort order, largest at the root
+        int size = 0;
+        for (int m : result.toArray()) {
+            int position = sorted.positions[m];
+            if (position < start) {
+                continue;
+            }
+            if (size < k) {
+                heap[size] = position;
+                siftUp(heap, size++);
+            } else if (k > 0 && position < heap[0]) {
+                heap[0] = position;
+                siftDown(heap, size);
+            }
+        }
+        Arrays.sort(heap, 0, size);
+        int from = Math.min(skip, size);
+        int[] page = new int[size - from];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = sorted.movies[heap[from + i]];
+        }
+        return page;
+    }
+
+    private static void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= heap[i]) {
+                break;
+            }
+            int swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && heap[left] > heap[largest]) largest = left;
+            if (right < size && heap[right] > heap[largest]) largest = right;
+            if (largest == i) {
+                return;
+            }
+            int swap = heap[largest];
+            heap[largest] = heap[i];
+            heap[i] = swap;
+            i = largest;
+        }
+    }
+
+    /**
+     * The movies passing every filter of {@code query}, ignoring sort and paging.
+     */
+    CompressedBitmap filter(MovieListQuery query) {
+        CompressedBitmap result = filterIndex.all;
+        if (query.getGenre() != null) {
+            Integer g = genreIndex.get(query.getGenre().toLowerCase());
+            result = g == null ? CompressedBitmap.EMPTY : result.and(filterIndex.byGenre[g]);
+        }
+        if (query.getYear() != null) {
+            result = result.and(filterIndex.year(query.getYear()));
+        }
+        if (query.isNonAlphanumericInitial()) {
+            result = result.and(filterIndex.nonAlphanumeric);
+        } else if (query.getTitleInitial() != null) {
+            String initial = query.getTitleInitial().toLowerCase();
+            CompressedBitmap sameStart = result.and(filterIndex.initial(initial));
+            if (initial.length() > 1) {
+                // A longer prefix narrows the first-letter bucket; only its members are checked.
+                int[] members = sameStart.toArray();
+                int kept = 0;
+                for (int m : members) {
+                    if (titlesLower[m].startsWith(initial)) {
+                        members[kept++] = m;
+                    }
+                }
+                sameStart = CompressedBitmap.of(members, kept);
+            }
+            result = sameStart;
+        }
+        BitSet matched = textCandidates(query);
+        if (matched != null && !result.isEmpty()) {
+            result = result.and(CompressedBitmap.of(matched));
+        }
+        return result;
+    }
+
+    /**
+     * First position after {@code from} in a rating-first order whose movie is outside
+     * {@code bucket}; buckets are contiguous runs of such an order.
+     */
+    private int bucketEnd(int[] order, int from, int bucket, boolean ascending) {
+        int low = from;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int b = FilterIndex.ratingBucket(sortRating(order[mid]));
+            if (ascending ? b <= bucket : b >= bucket) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first entry of {@code order} that sorts after the cursor. The cursor's movie may
+     * have been deleted since, so the search compares values rather than looking the movie up.
+     */
+    private int seek(int[] order, List<MovieListQuery.SortKey> sortKeys, MovieListQuery.Cursor cursor) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToCursor(order[mid], sortKeys, cursor) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareToCursor(int m, List<MovieListQuery.SortKey> sortKeys, MovieListQuery.Cursor cursor) {
+        for (int i = 0; i < sortKeys.size(); i++) {
+            MovieListQuery.SortKey key = sortKeys.get(i);
+            int c = "title".equals(key.field)
+                    ? titlesLower[m].compareTo(((String) cursor.value(i)).toLowerCase())
+                    : Double.compare(sortRating(m), (Double) cursor.value(i));
+            if (c != 0) {
+                return key.ascending ? c : -c;
+            }
+        }
+        return movieIds[m].compareTo(cursor.getMovieId());
+    }
+
+    /**
+     * The rating used for ordering and in cursors: unrated movies sort as 0, like COALESCE in SQL.
+     */
+    public double sortRating(int m) {
+        return Float.isNaN(ratings[m]) ? 0.0 : ratings[m];
+    }
+
+    /**
+     * The most popular movies with a run of title words starting with {@code prefix}, as typed.
+     * The array is shared by every caller; do not modify it.
+     */
+    public int[] completeTitle(CharSequence prefix) {
+        return completionIndex.complete(prefix);
+    }
+
+    /**
+     * Up to {@code limit} movies whose title words are prefixed by every keyword of {@code text},
+     * best BM25 match first.
+     */
+    public int[] searchTitles(String text, int limit) {
+        return searchIndex.search(keywords(text), limit);
+    }
+
+    /**
+     * {@link #searchTitles} tolerating typos: each keyword may be a couple of edits off a title word.
+     */
+    public int[] searchTitlesFuzzy(String text, int limit) {
+        return searchIndex.searchFuzzy(keywords(text), limit);
+    }
+
+    /** Stars whose name words are prefixed, allowing typos, by every keyword of {@code text}. */
+    public BitSet searchStarsFuzzy(String text) {
+        BitSet stars = starSearchIndex.matchAllFuzzy(keywords(text));
+        return stars == null ? new BitSet() : stars;
+    }
+
+    /**
+     * "Did you mean" for a title search: {@code text} with each keyword that starts no title word
+     * replaced by the closest word, or null when every keyword matched or one has no close word.
+     */
+    public String correctTitleQuery(String text) {
+        return searchIndex.correct(keywords(text));
+    }
+
+    /** As {@link #correctTitleQuery}, against the words of star names. */
+    public String correctStarQuery(String text) {
+        return starSearchIndex.correct(keywords(text));
+    }
+
+    /**
+     * Movies allowed by the ft_query, genre, director and star filters, or null when none is present.
+     */
+    private BitSet candidates(MovieListQuery query) {
+        BitSet allowed = textCandidates(query);
+        if (query.getGenre() != null) {
+            BitSet inGenre = new BitSet(movieIds.length);
+            Integer g = genreIndex.get(query.getGenre().toLowerCase());
+            if (g != null) {
+                for (int m : genreMovies[g]) {
+                    inGenre.set(m);
+                }
+            }
+            if (allowed == null) {
+                allowed = inGenre;
+            } else {
+                allowed.and(inGenre);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Movies allowed by the ft_query, director and star filters, the ones answered from text
+     * indexes, or null when none is present.
+     */
+    private BitSet textCandidates(MovieListQuery query) {
+        BitSet allowed = null;
+        if (query.getFtQuery() != null) {
+            String[] keywords = keywords(query.getFtQuery());
+            // A query of punctuation alone has no keyword to match; MATCH ... AGAINST finds nothing.
+            if (keywords.length == 0) {
+                allowed = new BitSet();
+            } else {
+                allowed = query.isFuzzy() ? searchIndex.matchAllFuzzy(keywords) : searchIndex.matchAll(keywords);
+            }
+        }
+        if (query.getDirector() != null) {
+            BitSet directed = moviesWithDirectorContaining(query.getDirector().toLowerCase());
+            if (allowed == null) {
+                allowed = directed;
+            } else {
+                allowed.and(directed);
+            }
+        }
+        if (query.getStarName() != null) {
+            String needle = query.getStarName().toLowerCase();
+            BitSet fuzzyStars = query.isFuzzy() ? starSearchIndex.matchAllFuzzy(keywords(needle)) : null;
+            BitSet starred = fuzzyStars != null ? moviesOfStars(fuzzyStars) : moviesWithStarNameContaining(needle);
+            if (allowed == null) {
+                allowed = starred;
+            } else {
+                allowed.and(starred);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * A permutation of the movie ordinals and its inverse.
+     */
+    static final class SortOrder {
+        final int[] movies;         // ordinals in sort order
+        final int[] positions;      // positions[m] = index of m in movies
+
+        SortOrder(int[] movies) {
+            this.movies = movies;
+            this.positions = new int[movies.length];
+            for (int i = 0; i < movies.length; i++) {
+                positions[movies[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * All movie ordinals in the order given by {@code sortKeys}, with the movie id as the final
+     * tie-break, as in the SQL ORDER BY. Built once per snapshot and sort; each movie's sort keys
+     * are dense ranks packed into one long, so building an order is a primitive sort.
+     */
+    SortOrder sortOrder(List<MovieListQuery.SortKey> sortKeys) {
+        String key = sortKeys.toString();
+        SortOrder order = sortOrders.get(key);
+        if (order != null) {
+            return order;
+        }
+        int movieCount = movieIds.length;
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, movieCount - 1));
+        if (bits * (sortKeys.size() + 1) > 63) {
+            throw new IllegalStateException("Too many movies to pack " + sortKeys + " into a long: " + movieCount);
+        }
+        long[] packed = new long[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            long k = 0;
+            for (MovieListQuery.SortKey sortKey : sortKeys) {
+                int group = "title".equals(sortKey.field) ? titleGroup[m] : ratingGroup[m];
+                k = (k << bits) | (sortKey.ascending ? group : movieCount - 1 - group);
+            }
+            packed[m] = (k << bits) | idRank[m];
+        }
+        Arrays.sort(packed);
+        int[] movies = new int[movieCount];
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < movieCount; i++) {
+            movies[i] = byMovieId[(int) (packed[i] & mask)];
+        }
+        order = new SortOrder(movies);
+        SortOrder raced = sortOrders.putIfAbsent(key, order);
+        return raced != null ? raced : order;
+    }
+
+    static String[] keywords(String ftQuery) {
+        return words(ftQuery.toLowerCase());
+    }
+
+    /**
+     * Splits lower-cased text into the words a FULLTEXT index would see: runs of letters and digits.
+     */
+    static String[] words(String lower) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    static boolean isAsciiAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static Integer[] boxedOrdinals(int count) {
+        Integer[] ordinals = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            ordinals[i] = i;
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,63 @@
+package catalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * One row of the catalog_changes log: an entity that was inserted or modified.
+ */
+public final class CatalogChange {
+
+    public static final String MOVIE = "movie";
+    public static final String STAR = "star";
+    public static final String GENRE = "genre";
+    /** Bulk change (e.g. an XML import); consumers should drop everything they derived from the catalog. */
+    public static final String ALL = "catalog";
+
+    private final long seq;
+    private final String entity;
+    private final String entityId;
+    private final long changedAtMillis;
+
+    CatalogChange(long seq, String entity, String entityId, long changedAtMillis) {
+        this.seq = seq;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.changedAtMillis = changedAtMillis;
+    }
+
+    /**
+     * Appends a change row on {@code connection}. Call it inside the transaction that makes the change,
+     * so the row becomes visible to the pods exactly when the change does.
+     */
+    public static void record(Connection connection, String entity, String entityId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO catalog_changes (entity, entityId) VALUES (?, ?)")) {
+            statement.setString(1, entity);
+            statement.setString(2, entityId);
+            statement.executeUpdate();
+        }
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public long getChangedAtMillis() {
+        return changedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return seq + ":" + entity + ":" + entityId;
+    }
+}
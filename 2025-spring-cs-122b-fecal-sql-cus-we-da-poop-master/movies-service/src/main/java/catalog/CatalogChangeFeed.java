@@ -0,0 +1,217 @@
+package catalog;
+
+import db.DataSourceFactory;
+import metrics.MetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls catalog_changes by sequence number and fans each new batch out to the catalog snapshot
+ * and to every registered {@link CatalogChangeListener}.
+ * <p>
+ * AUTO_INCREMENT values become visible in commit order, not allocation order, so a row can appear
+ * after a higher seq was already processed. The feed therefore re-reads from the last seq below
+ * which it has seen everything, skips rows it already handled, and gives up on a hole after
+ * {@link #GAP_WAIT_MILLIS} (a rolled-back insert leaves a permanent one).
+ */
+public final class CatalogChangeFeed {
+
+    static final long GAP_WAIT_MILLIS = 10_000L;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final List<CatalogChangeListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong POLLS = new AtomicLong();
+    private static final AtomicLong CHANGES = new AtomicLong();
+    private static final AtomicLong ERRORS = new AtomicLong();
+
+    private static final Object LOCK = new Object();
+    private static final Progress PROGRESS = new Progress();
+    private static volatile long lastChangeLagMillis = -1;
+
+    private static ScheduledExecutorService scheduler;
+
+    static {
+        MetricsRegistry.register("catalogChanges", CatalogChangeFeed::stats);
+    }
+
+    private CatalogChangeFeed() {
+    }
+
+    public static void addListener(CatalogChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(CatalogChangeListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    static synchronized void start(long intervalMillis) {
+        if (scheduler != null || intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (SQLException | RuntimeException e) {
+                ERRORS.incrementAndGet();
+                System.err.println("Catalog change poll failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    static void poll() throws SQLException {
+        POLLS.incrementAndGet();
+        List<CatalogChange> batch;
+        synchronized (LOCK) {
+            // Taken before the snapshot opens: every change committed earlier is in this read.
+            long pollStartedMillis = System.currentTimeMillis();
+            try (Connection connection = DataSourceFactory.getReadDataSource().getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    // The changes and the rows they point at are read from the same snapshot.
+                    statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                    if (PROGRESS.contiguousSeq < 0) {
+                        Catalog catalog = CatalogHolder.current();
+                        PROGRESS.contiguousSeq = catalog != null ? catalog.changeSeq : CatalogLoader.maxChangeSeq(statement);
+                        connection.commit();
+                        return;
+                    }
+                    batch = readBatch(connection);
+                    if (!batch.isEmpty()) {
+                        // A full batch may have left newer changes unread, so the snapshot is not
+                        // current as of this poll.
+                        long asOfMillis = batch.size() < BATCH_SIZE ? pollStartedMillis : 0;
+                        CatalogHolder.applyChanges(batch, connection, asOfMillis,
+                                PROGRESS.contiguousAfter(batch, pollStartedMillis));
+                    }
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+            PROGRESS.advance(batch, pollStartedMillis);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        CHANGES.addAndGet(batch.size());
+        lastChangeLagMillis = System.currentTimeMillis() - batch.get(batch.size() - 1).getChangedAtMillis();
+        for (CatalogChangeListener listener : LISTENERS) {
+            try {
+                listener.onCatalogChanges(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog change listener " + listener.getClass().getSimpleName() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<CatalogChange> readBatch(Connection connection) throws SQLException {
+        List<CatalogChange> batch = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT seq, entity, entityId, changedAt FROM catalog_changes WHERE seq > ? ORDER BY seq LIMIT " + BATCH_SIZE)) {
+            statement.setLong(1, PROGRESS.contiguousSeq);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long seq = rs.getLong(1);
+                    if (PROGRESS.seenAbove.contains(seq)) {
+                        continue;
+                    }
+                    batch.add(new CatalogChange(seq, rs.getString(2), rs.getString(3), rs.getTimestamp(4).getTime()));
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * The seqs the feed has handled: everything up to {@link #contiguousSeq}, plus
+     * {@link #seenAbove}. Holes above contiguousSeq are waited for, then skipped.
+     */
+    static final class Progress {
+        long contiguousSeq = -1;
+        final TreeSet<Long> seenAbove = new TreeSet<>();
+        final Map<Long, Long> gapNoticedAt = new HashMap<>();
+
+        /**
+         * The contiguousSeq that {@link #advance} would reach for {@code batch}, without moving it.
+         */
+        long contiguousAfter(List<CatalogChange> batch, long now) {
+            TreeSet<Long> seen = new TreeSet<>(seenAbove);
+            for (CatalogChange change : batch) {
+                seen.add(change.getSeq());
+            }
+            long seq = contiguousSeq;
+            while (!seen.isEmpty() && seq < seen.last()) {
+                long next = seq + 1;
+                Long noticed = gapNoticedAt.get(next);
+                if (seen.contains(next) || (noticed != null && now - noticed > GAP_WAIT_MILLIS)) {
+                    seq = next;
+                    continue;
+                }
+                break;
+            }
+            return seq;
+        }
+
+        /**
+         * Records {@code batch} as handled and moves contiguousSeq past every seq that has been
+         * handled or whose hole has timed out. The first hole left starts its wait at {@code now}.
+         */
+        void advance(List<CatalogChange> batch, long now) {
+            long next = contiguousAfter(batch, now);
+            for (CatalogChange change : batch) {
+                if (change.getSeq() > next) {
+                    seenAbove.add(change.getSeq());
+                }
+            }
+            contiguousSeq = next;
+            seenAbove.headSet(next, true).clear();
+            gapNoticedAt.keySet().removeIf(seq -> seq <= next);
+            if (!seenAbove.isEmpty()) {
+                gapNoticedAt.putIfAbsent(next + 1, now);
+            }
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (LOCK) {
+            stats.put("contiguousSeq", PROGRESS.contiguousSeq);
+            stats.put("pendingGaps", PROGRESS.gapNoticedAt.size());
+        }
+        stats.put("polls", POLLS.get());
+        stats.put("changes", CHANGES.get());
+        stats.put("errors", ERRORS.get());
+        stats.put("lastChangeLagMillis", lastChangeLagMillis);
+        stats.put("listeners", LISTENERS.size());
+        return stats;
+    }
+}
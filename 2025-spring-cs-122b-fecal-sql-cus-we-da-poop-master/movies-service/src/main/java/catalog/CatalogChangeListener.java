@@ -0,0 +1,12 @@
+package catalog;
+
+import java.util.List;
+
+/**
+ * Receives each batch of catalog_changes rows after the pod's catalog snapshot has been updated.
+ * Called on the change-feed thread; implementations should only invalidate, not do I/O.
+ */
+public interface CatalogChangeListener {
+
+    void onCatalogChanges(List<CatalogChange> changes);
+}
@@ -0,0 +1,182 @@
+package catalog;
+
+import db.DataSourceFactory;
+import db.ReadYourWrites;
+import db.WriteToken;
+import jakarta.servlet.http.HttpServletRequest;
+import metrics.MetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the live {@link Catalog} snapshot of this pod.
+ * A refresh builds the next snapshot off to the side while requests keep reading the current one,
+ * then publishes it with a single reference swap; readers never see a half-built catalog.
+ */
+public final class CatalogHolder {
+
+    private static final AtomicReference<Catalog> CURRENT = new AtomicReference<>();
+    private static final AtomicLong REFRESHES = new AtomicLong();
+    private static final AtomicLong INCREMENTAL_UPDATES = new AtomicLong();
+    private static final AtomicLong FAILED_REFRESHES = new AtomicLong();
+    private static final AtomicLong SERVED = new AtomicLong();
+    private static final AtomicLong BYPASSED = new AtomicLong();
+    private static volatile long lastRefreshMillis;
+
+    private static ScheduledExecutorService scheduler;
+
+    static {
+        MetricsRegistry.register("catalog", CatalogHolder::stats);
+    }
+
+    private CatalogHolder() {
+    }
+
+    /**
+     * The current snapshot, or null before the first successful load.
+     */
+    public static Catalog current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * The snapshot to answer {@code request} from, or null when the caller must query MySQL:
+     * either nothing is loaded yet, or the session changed movies or stars after the snapshot was
+     * taken. Other writes, such as a purchase, leave the snapshot usable.
+     */
+    public static Catalog forRequest(HttpServletRequest request) {
+        Catalog catalog = CURRENT.get();
+        if (catalog == null) {
+            return null;
+        }
+        WriteToken token = ReadYourWrites.getToken(request);
+        if (token != null && token.getCatalogCommittedAtMillis() >= catalog.getLoadStartedMillis()) {
+            BYPASSED.incrementAndGet();
+            return null;
+        }
+        SERVED.incrementAndGet();
+        return catalog;
+    }
+
+    /**
+     * Loads a fresh snapshot from a read replica and swaps it in.
+     */
+    public static synchronized void refresh() throws SQLException {
+        long start = System.currentTimeMillis();
+        try {
+            Catalog next = CatalogLoader.load(DataSourceFactory.getReadDataSource());
+            CURRENT.set(next);
+            REFRESHES.incrementAndGet();
+            lastRefreshMillis = System.currentTimeMillis() - start;
+            System.out.println("Catalog loaded: " + next.movieCount() + " movies, " + next.starCount() +
+                    " stars in " + lastRefreshMillis + " ms");
+        } catch (SQLException | RuntimeException e) {
+            FAILED_REFRESHES.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Patches the snapshot for a batch from the change feed, reading the changed rows on
+     * {@code connection} (the feed's snapshot transaction). Falls back to a full reload for bulk
+     * changes, new genres, or anything the patch cannot express.
+     * <p>
+     * The patched snapshot is current as of {@code asOfMillis}, when the feed's transaction
+     * started (0 if the batch may be incomplete), and holds every change up to {@code throughSeq}.
+     */
+    static synchronized void applyChanges(List<CatalogChange> changes, Connection connection,
+                                          long asOfMillis, long throughSeq) throws SQLException {
+        Catalog base = CURRENT.get();
+        if (base == null) {
+            return;
+        }
+        Set<String> movieIds = new HashSet<>();
+        Set<String> starIds = new HashSet<>();
+        boolean fullReload = false;
+        for (CatalogChange change : changes) {
+            if (change.getSeq() <= base.changeSeq) {
+                continue;
+            }
+            if (CatalogChange.MOVIE.equals(change.getEntity())) {
+                movieIds.add(change.getEntityId());
+            } else if (CatalogChange.STAR.equals(change.getEntity())) {
+                starIds.add(change.getEntityId());
+            } else {
+                fullReload = true;
+            }
+        }
+        if (!fullReload && movieIds.isEmpty() && starIds.isEmpty()) {
+            return;
+        }
+        Catalog next = fullReload ? null : CatalogLoader.applyChanges(base, connection, movieIds, starIds, asOfMillis, throughSeq);
+        if (next == null) {
+            refresh();
+            return;
+        }
+        CURRENT.set(next);
+        INCREMENTAL_UPDATES.incrementAndGet();
+    }
+
+    static synchronized void startRefreshing(long intervalSeconds) {
+        if (scheduler != null || intervalSeconds <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Catalog refresh failed, keeping previous snapshot: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        CURRENT.set(null);
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Catalog catalog = CURRENT.get();
+        stats.put("loaded", catalog != null);
+        if (catalog != null) {
+            stats.put("movies", catalog.movieCount());
+            stats.put("stars", catalog.starCount());
+            stats.put("searchTerms", catalog.searchIndex.termCount());
+            stats.put("completionNodes", catalog.completionIndex.nodeCount());
+            stats.put("trigrams", catalog.directorTrigrams.gramCount() + catalog.starNameTrigrams.gramCount());
+            stats.put("filterBitmapBytes", catalog.filterIndex.sizeInBytes());
+            stats.put("jsonFragments", catalog.jsonFragmentCount());
+            stats.put("coStarGraphBytes", catalog.coStarGraph.sizeInBytes());
+            stats.put("coStarGraphBuildMillis", catalog.coStarGraph.buildMillis());
+            stats.put("ageMillis", System.currentTimeMillis() - catalog.getLoadStartedMillis());
+            stats.put("changeSeq", catalog.changeSeq);
+        }
+        stats.put("lastRefreshMillis", lastRefreshMillis);
+        stats.put("refreshes", REFRESHES.get());
+        stats.put("incrementalUpdates", INCREMENTAL_UPDATES.get());
+        stats.put("failedRefreshes", FAILED_REFRESHES.get());
+        stats.put("served", SERVED.get());
+        stats.put("bypassedForFreshRead", BYPASSED.get());
+        return stats;
+    }
+}
@@ -0,0 +1,53 @@
+package catalog;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Loads the catalog snapshot when movies-service starts and reloads it every CATALOG_REFRESH_SECONDS
+ * (default 300). Set CATALOG_ENABLED=false to serve every read from MySQL instead.
+ * <p>
+ * Also starts the catalog_changes poller (every CATALOG_CHANGE_POLL_MILLIS, default 1000), which
+ * keeps the snapshot and any registered caches current between full reloads.
+ */
+@WebListener
+public class CatalogListener implements ServletContextListener {
+
+    private static final long DEFAULT_REFRESH_SECONDS = 300;
+    private static final long DEFAULT_CHANGE_POLL_MILLIS = 1000;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        if ("false".equalsIgnoreCase(System.getenv("CATALOG_ENABLED"))) {
+            System.out.println("Catalog snapshot disabled; reads go to MySQL.");
+        } else {
+            try {
+                CatalogHolder.refresh();
+            } catch (Exception e) {
+                System.err.println("Initial catalog load failed, serving from MySQL until the next refresh: " + e.getMessage());
+            }
+            CatalogHolder.startRefreshing(longEnv("CATALOG_REFRESH_SECONDS", DEFAULT_REFRESH_SECONDS));
+        }
+        CatalogChangeFeed.start(longEnv("CATALOG_CHANGE_POLL_MILLIS", DEFAULT_CHANGE_POLL_MILLIS));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        CatalogChangeFeed.stop();
+        CatalogHolder.stop();
+    }
+
+    private static long longEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
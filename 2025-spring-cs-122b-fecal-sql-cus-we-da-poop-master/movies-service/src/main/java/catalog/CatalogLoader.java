@@ -0,0 +1,577 @@
+package catalog;
+
+import search.SearchIndex;
+import search.TrigramIndex;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the catalog tables in one consistent-snapshot transaction and builds a {@link Catalog}.
+ */
+public final class CatalogLoader {
+
+    private CatalogLoader() {
+    }
+
+    public static Catalog load(DataSource dataSource) throws SQLException {
+        Builder b = new Builder();
+        b.loadStartedMillis = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // All five reads see the same point in time, so links never reference a missing row.
+                statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                read(statement, b);
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return new Catalog(b);
+    }
+
+    /**
+     * Reads every catalog table on {@code statement} into {@code b}.
+     */
+    static void read(Statement statement, Builder b) throws SQLException {
+        loadMovies(statement, b);
+        loadGenres(statement, b);
+        loadStars(statement, b);
+        loadGenreLinks(statement, b);
+        loadStarLinks(statement, b);
+        b.changeSeq = maxChangeSeq(statement);
+    }
+
+    static long maxChangeSeq(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM catalog_changes")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * A new snapshot equal to {@code base} with the given movies and stars re-read (inserted or
+     * overwritten) on {@code connection}, together with their links. Returns null when the change
+     * cannot be patched in place, e.g. a row was deleted or references a genre the snapshot lacks;
+     * the caller then does a full load.
+     * <p>
+     * The new snapshot's {@link Catalog#getLoadStartedMillis()} and change seq move forward to
+     * {@code asOfMillis} and {@code throughSeq}, never back.
+     */
+    static Catalog applyChanges(Catalog base, Connection connection, Set<String> movieIds, Set<String> starIds,
+                                long asOfMillis, long throughSeq) throws SQLException {
+        Builder b = Builder.copyOf(base);
+        List<Integer> changedMovies = new ArrayList<>();
+        List<Integer> changedStars = new ArrayList<>();
+
+        if (!movieIds.isEmpty()) {
+            try (PreparedStatement ps = prepareIn(connection,
+                    "SELECT m.id, m.title, m.year, m.director, r.rating, r.numVotes FROM movies m LEFT JOIN ratings r ON m.id = r.movieId WHERE m.id IN ", movieIds);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    float rating = rs.getFloat(5);
+                    boolean unrated = rs.wasNull();
+                    changedMovies.add(b.putMovie(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getString(4),
+                            unrated ? Float.NaN : rating, rs.getInt(6)));
+                }
+            }
+            if (changedMovies.size() != movieIds.size()) {
+                return null;
+            }
+        }
+        if (!starIds.isEmpty()) {
+            try (PreparedStatement ps = prepareIn(connection, "SELECT id, name, birthYear FROM stars WHERE id IN ", starIds);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int birthYear = rs.getInt(3);
+                    changedStars.add(b.putStar(rs.getString(1), rs.getString(2), rs.wasNull() ? Catalog.NO_BIRTH_YEAR : birthYear));
+                }
+            }
+            if (changedStars.size() != starIds.size()) {
+                return null;
+            }
+        }
+
+        Set<String> changedMovieIds = new HashSet<>(movieIds);
+        Set<Integer> touchedGenres = new HashSet<>();
+        Set<Integer> touchedStars = new HashSet<>(changedStars);
+        Map<Integer, List<Integer>> newMovieGenres = new HashMap<>();
+        Map<Integer, List<Integer>> newMovieStars = new HashMap<>();
+        for (int m : changedMovies) {
+            newMovieGenres.put(m, new ArrayList<>());
+            newMovieStars.put(m, new ArrayList<>());
+            for (int g : b.movieGenres[m]) touchedGenres.add(g);
+            for (int s : b.movieStars[m]) touchedStars.add(s);
+        }
+
+        if (!changedMovieIds.isEmpty()) {
+            try (PreparedStatement ps = prepareIn(connection, "SELECT genreId, movieId FROM genres_in_movies WHERE movieId IN ", changedMovieIds);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Integer g = b.genreOrdinalById.get(rs.getInt(1));
+                    if (g == null) {
+                        return null;
+                    }
+                    newMovieGenres.get(b.movieIndex.get(rs.getString(2))).add(g);
+                    touchedGenres.add(g);
+                }
+            }
+            try (PreparedStatement ps = prepareIn(connection, "SELECT starId, movieId FROM stars_in_movies WHERE movieId IN ", changedMovieIds);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Integer s = b.starIndex.get(rs.getString(1));
+                    if (s == null) {
+                        return null;
+                    }
+                    newMovieStars.get(b.movieIndex.get(rs.getString(2))).add(s);
+                    touchedStars.add(s);
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : newMovieGenres.entrySet()) {
+            int[] genres = toArray(entry.getValue());
+            Arrays.sort(genres);
+            b.movieGenres[entry.getKey()] = genres;
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : newMovieStars.entrySet()) {
+            b.movieStars[entry.getKey()] = toArray(entry.getValue());
+        }
+
+        // Genre membership lists: drop the changed movies, then add them back where they are linked now.
+        Set<Integer> changedMovieOrdinals = new HashSet<>(changedMovies);
+        for (int g : touchedGenres) {
+            List<Integer> movies = new ArrayList<>();
+            for (int m : b.genreMovies[g]) {
+                if (!changedMovieOrdinals.contains(m)) movies.add(m);
+            }
+            for (int m : changedMovies) {
+                if (Arrays.binarySearch(b.movieGenres[m], g) >= 0) movies.add(m);
+            }
+            int[] sorted = toArray(movies);
+            Arrays.sort(sorted);
+            b.genreMovies[g] = sorted;
+        }
+
+        // Full movie lists of every star whose filmography may have changed, re-read from the database.
+        Set<Integer> resortMovies = new HashSet<>(changedMovies);
+        if (!touchedStars.isEmpty()) {
+            Map<Integer, List<Integer>> filmographies = new HashMap<>();
+            Set<String> touchedStarIds = new HashSet<>();
+            for (int s : touchedStars) {
+                filmographies.put(s, new ArrayList<>());
+                touchedStarIds.add(b.starIds[s]);
+            }
+            try (PreparedStatement ps = prepareIn(connection, "SELECT starId, movieId FROM stars_in_movies WHERE starId IN ", touchedStarIds);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Integer m = b.movieIndex.get(rs.getString(2));
+                    if (m == null) {
+                        return null;
+                    }
+                    filmographies.get(b.starIndex.get(rs.getString(1))).add(m);
+                }
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : filmographies.entrySet()) {
+                b.starMovies[entry.getKey()] = toArray(entry.getValue());
+                resortMovies.addAll(entry.getValue());
+            }
+            Comparator<Integer> newestFirst = newestFirst(b);
+            for (int s : touchedStars) {
+                b.starMovies[s] = sorted(b.starMovies[s], newestFirst);
+            }
+        }
+        // Same links as before (only names, years and the like changed): keep the co-star graph.
+        boolean linksChanged = false;
+        for (int m : changedMovies) {
+            linksChanged |= !sameMembers(m < base.movieIds.length ? base.movieStars[m] : new int[0], b.movieStars[m]);
+        }
+        for (int s : touchedStars) {
+            linksChanged |= !sameMembers(s < base.starIds.length ? base.starMovies[s] : new int[0], b.starMovies[s]);
+        }
+        b.coStarGraph = linksChanged ? null : base.coStarGraph;
+
+        // A star's movie count feeds the cast order of every movie it appears in.
+        Comparator<Integer> byPopularity = byPopularity(b);
+        for (int m : resortMovies) {
+            b.movieStars[m] = sorted(b.movieStars[m], byPopularity);
+        }
+
+        // Every movie whose fields, genres, cast, cast order or star names may have changed is in
+        // resortMovies; the JSON of all others is still right.
+        b.summaryJson = base.keptSummaryJson(resortMovies);
+        b.detailJson = base.keptDetailJson(resortMovies);
+        b.loadStartedMillis = Math.max(base.loadStartedMillis, asOfMillis);
+        b.changeSeq = Math.max(base.changeSeq, throughSeq);
+        return new Catalog(b);
+    }
+
+    private static PreparedStatement prepareIn(Connection connection, String sqlPrefix, Set<String> values) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sqlPrefix + "(" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")");
+        int index = 1;
+        for (String value : values) {
+            ps.setString(index++, value);
+        }
+        return ps;
+    }
+
+    private static boolean sameMembers(int[] a, int[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        int[] sortedA = a.clone();
+        int[] sortedB = b.clone();
+        Arrays.sort(sortedA);
+        Arrays.sort(sortedB);
+        return Arrays.equals(sortedA, sortedB);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static void loadMovies(Statement statement, Builder b) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        List<String> directors = new ArrayList<>();
+        List<Integer> years = new ArrayList<>();
+        List<Float> ratings = new ArrayList<>();
+        List<Integer> numVotes = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT m.id, m.title, m.year, m.director, r.rating, r.numVotes FROM movies m LEFT JOIN ratings r ON m.id = r.movieId")) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+                titles.add(rs.getString(2));
+                years.add(rs.getInt(3));
+                directors.add(rs.getString(4));
+                float rating = rs.getFloat(5);
+                ratings.add(rs.wasNull() ? Float.NaN : rating);
+                numVotes.add(rs.getInt(6));
+            }
+        }
+        int count = ids.size();
+        b.movieIds = ids.toArray(new String[0]);
+        b.titles = titles.toArray(new String[0]);
+        b.directors = directors.toArray(new String[0]);
+        b.years = new int[count];
+        b.ratings = new float[count];
+        b.numVotes = new int[count];
+        b.movieIndex = new HashMap<>(count * 2);
+        for (int m = 0; m < count; m++) {
+            b.years[m] = years.get(m);
+            b.ratings[m] = ratings.get(m);
+            b.numVotes[m] = numVotes.get(m);
+            b.movieIndex.put(b.movieIds[m], m);
+        }
+    }
+
+    private static void loadGenres(Statement statement, Builder b) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery("SELECT id, name FROM genres")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+                names.add(rs.getString(2));
+            }
+        }
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Ordinals follow name order so that sorted ordinal arrays are also sorted by name.
+        Arrays.sort(order, Comparator.<Integer, String>comparing(i -> names.get(i).toLowerCase()).thenComparing(names::get));
+        b.genreIds = new int[order.length];
+        b.genreNames = new String[order.length];
+        b.genreIndex = new HashMap<>();
+        b.genreOrdinalById = new HashMap<>();
+        for (int g = 0; g < order.length; g++) {
+            b.genreIds[g] = ids.get(order[g]);
+            b.genreNames[g] = names.get(order[g]);
+            b.genreIndex.putIfAbsent(b.genreNames[g].toLowerCase(), g);
+            b.genreOrdinalById.put(b.genreIds[g], g);
+        }
+    }
+
+    private static void loadStars(Statement statement, Builder b) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> birthYears = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery("SELECT id, name, birthYear FROM stars")) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+                names.add(rs.getString(2));
+                int birthYear = rs.getInt(3);
+                birthYears.add(rs.wasNull() ? Catalog.NO_BIRTH_YEAR : birthYear);
+            }
+        }
+        int count = ids.size();
+        b.starIds = ids.toArray(new String[0]);
+        b.starNames = names.toArray(new String[0]);
+        b.birthYears = new int[count];
+        b.starIndex = new HashMap<>(count * 2);
+        for (int s = 0; s < count; s++) {
+            b.birthYears[s] = birthYears.get(s);
+            b.starIndex.put(b.starIds[s], s);
+        }
+    }
+
+    private static void loadGenreLinks(Statement statement, Builder b) throws SQLException {
+        LinkTable links = new LinkTable(b.movieIds.length, b.genreIds.length);
+        try (ResultSet rs = statement.executeQuery("SELECT genreId, movieId FROM genres_in_movies")) {
+            while (rs.next()) {
+                Integer g = b.genreOrdinalById.get(rs.getInt(1));
+                Integer m = b.movieIndex.get(rs.getString(2));
+                if (g != null && m != null) {
+                    links.add(m, g);
+                }
+            }
+        }
+        b.movieGenres = links.byLeft();
+        b.genreMovies = links.byRight();
+        for (int[] genres : b.movieGenres) {
+            Arrays.sort(genres);
+        }
+        for (int[] movies : b.genreMovies) {
+            Arrays.sort(movies);
+        }
+    }
+
+    private static void loadStarLinks(Statement statement, Builder b) throws SQLException {
+        LinkTable links = new LinkTable(b.movieIds.length, b.starIds.length);
+        try (ResultSet rs = statement.executeQuery("SELECT starId, movieId FROM stars_in_movies")) {
+            while (rs.next()) {
+                Integer s = b.starIndex.get(rs.getString(1));
+                Integer m = b.movieIndex.get(rs.getString(2));
+                if (s != null && m != null) {
+                    links.add(m, s);
+                }
+            }
+        }
+        b.movieStars = links.byLeft();
+        b.starMovies = links.byRight();
+
+        Comparator<Integer> byPopularity = byPopularity(b);
+        for (int m = 0; m < b.movieStars.length; m++) {
+            b.movieStars[m] = sorted(b.movieStars[m], byPopularity);
+        }
+        Comparator<Integer> newestFirst = newestFirst(b);
+        for (int s = 0; s < b.starMovies.length; s++) {
+            b.starMovies[s] = sorted(b.starMovies[s], newestFirst);
+        }
+    }
+
+    /**
+     * Cast order: stars in more movies first, then by name.
+     */
+    private static Comparator<Integer> byPopularity(Builder b) {
+        int[][] starMovies = b.starMovies;
+        String[] starNames = b.starNames;
+        String[] starIds = b.starIds;
+        return Comparator.<Integer>comparingInt(s -> -starMovies[s].length)
+                .thenComparing(s -> starNames[s].toLowerCase())
+                .thenComparing(s -> starIds[s]);
+    }
+
+    /**
+     * Filmography order: newest first, then by title.
+     */
+    private static Comparator<Integer> newestFirst(Builder b) {
+        int[] years = b.years;
+        String[] titles = b.titles;
+        String[] movieIds = b.movieIds;
+        return Comparator.<Integer>comparingInt(m -> -years[m])
+                .thenComparing(m -> titles[m].toLowerCase())
+                .thenComparing(m -> movieIds[m]);
+    }
+
+    private static int[] sorted(int[] values, Comparator<Integer> comparator) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        Arrays.sort(boxed, comparator);
+        int[] result = new int[values.length];
+        for (int i = 0; i < boxed.length; i++) {
+            result[i] = boxed[i];
+        }
+        return result;
+    }
+
+    /**
+     * Collects (left, right) pairs and turns them into two adjacency arrays.
+     */
+    private static final class LinkTable {
+        private final int leftCount;
+        private final int rightCount;
+        private int[] lefts = new int[1024];
+        private int[] rights = new int[1024];
+        private int size;
+
+        LinkTable(int leftCount, int rightCount) {
+            this.leftCount = leftCount;
+            this.rightCount = rightCount;
+        }
+
+        void add(int left, int right) {
+            if (size == lefts.length) {
+                lefts = Arrays.copyOf(lefts, size * 2);
+                rights = Arrays.copyOf(rights, size * 2);
+            }
+            lefts[size] = left;
+            rights[size] = right;
+            size++;
+        }
+
+        int[][] byLeft() {
+            return group(lefts, rights, leftCount);
+        }
+
+        int[][] byRight() {
+            return group(rights, lefts, rightCount);
+        }
+
+        private int[][] group(int[] keys, int[] values, int keyCount) {
+            int[] counts = new int[keyCount];
+            for (int i = 0; i < size; i++) {
+                counts[keys[i]]++;
+            }
+            int[][] grouped = new int[keyCount][];
+            for (int k = 0; k < keyCount; k++) {
+                grouped[k] = new int[counts[k]];
+                counts[k] = 0;
+            }
+            for (int i = 0; i < size; i++) {
+                int k = keys[i];
+                grouped[k][counts[k]++] = values[i];
+            }
+            return grouped;
+        }
+    }
+
+    static final class Builder {
+        long loadStartedMillis;
+        long changeSeq;
+        String[] movieIds;
+        String[] titles;
+        String[] directors;
+        int[] years;
+        float[] ratings;
+        int[] numVotes;
+        int[][] movieGenres;
+        int[][] movieStars;
+        Map<String, Integer> movieIndex;
+        int[] genreIds;
+        String[] genreNames;
+        int[][] genreMovies;
+        Map<String, Integer> genreIndex;
+        Map<Integer, Integer> genreOrdinalById;
+        String[] starIds;
+        String[] starNames;
+        int[] birthYears;
+        int[][] starMovies;
+        Map<String, Integer> starIndex;
+        SearchIndex searchIndex;
+        SearchIndex starSearchIndex;
+        TrigramIndex directorTrigrams;
+        TrigramIndex starNameTrigrams;
+        CoStarGraph coStarGraph;    // kept from the previous snapshot when no link changed
+        byte[][] summaryJson;       // kept from the previous snapshot, null entries to be rebuilt
+        byte[][] detailJson;
+
+        /**
+         * A builder over copies of the snapshot's top-level arrays and maps. Inner link arrays are
+         * shared; they are replaced, never written to.
+         */
+        static Builder copyOf(Catalog c) {
+            Builder b = new Builder();
+            b.movieIds = c.movieIds.clone();
+            b.titles = c.titles.clone();
+            b.directors = c.directors.clone();
+            b.years = c.years.clone();
+            b.ratings = c.ratings.clone();
+            b.numVotes = c.numVotes.clone();
+            b.movieGenres = c.movieGenres.clone();
+            b.movieStars = c.movieStars.clone();
+            b.movieIndex = new HashMap<>(c.movieIndex);
+            b.genreIds = c.genreIds;
+            b.genreNames = c.genreNames;
+            b.genreMovies = c.genreMovies.clone();
+            b.genreIndex = c.genreIndex;
+            b.genreOrdinalById = new HashMap<>();
+            for (int g = 0; g < c.genreIds.length; g++) {
+                b.genreOrdinalById.put(c.genreIds[g], g);
+            }
+            b.starIds = c.starIds.clone();
+            b.starNames = c.starNames.clone();
+            b.birthYears = c.birthYears.clone();
+            b.starMovies = c.starMovies.clone();
+            b.starIndex = new HashMap<>(c.starIndex);
+            b.searchIndex = c.searchIndex;
+            b.starSearchIndex = c.starSearchIndex;
+            b.directorTrigrams = c.directorTrigrams;
+            b.starNameTrigrams = c.starNameTrigrams;
+            return b;
+        }
+
+        int putMovie(String id, String title, int year, String director, float rating, int votes) {
+            Integer m = movieIndex.get(id);
+            if (m == null) {
+                m = movieIds.length;
+                int size = m + 1;
+                movieIds = Arrays.copyOf(movieIds, size);
+                titles = Arrays.copyOf(titles, size);
+                directors = Arrays.copyOf(directors, size);
+                years = Arrays.copyOf(years, size);
+                ratings = Arrays.copyOf(ratings, size);
+                numVotes = Arrays.copyOf(numVotes, size);
+                movieGenres = Arrays.copyOf(movieGenres, size);
+                movieStars = Arrays.copyOf(movieStars, size);
+                movieGenres[m] = new int[0];
+                movieStars[m] = new int[0];
+                movieIndex.put(id, m);
+            }
+            movieIds[m] = id;
+            titles[m] = title;
+            years[m] = year;
+            directors[m] = director;
+            ratings[m] = rating;
+            numVotes[m] = votes;
+            return m;
+        }
+
+        int putStar(String id, String name, int birthYear) {
+            Integer s = starIndex.get(id);
+            if (s == null) {
+                s = starIds.length;
+                int size = s + 1;
+                starIds = Arrays.copyOf(starIds, size);
+                starNames = Arrays.copyOf(starNames, size);
+                birthYears = Arrays.copyOf(birthYears, size);
+                starMovies = Arrays.copyOf(starMovies, size);
+                starMovies[s] = new int[0];
+                starIndex.put(id, s);
+            }
+            starIds[s] = id;
+            starNames[s] = name;
+            birthYears[s] = birthYear;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package catalog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The star/movie graph of a snapshot in compressed sparse row form: each side's links are one int
+ * array, sliced by an offsets array indexed by ordinal, rather than an array object per star or
+ * movie. Stars are connected through the movies they share, so a path between two stars alternates
+ * star, movie, star; its length in movies is the degrees of separation.
+ * <p>
+ * Each star's most frequent co-stars (the {@link #TOP_CO_STARS} stars it shares the most movies
+ * with) are counted once, when the graph is built, and stored the same way. That count visits
+ * every pair of stars sharing a movie, so an incremental catalog patch that leaves stars_in_movies
+ * alone keeps its predecessor's graph ({@link #withSize}) instead of building a new one.
+ */
+public final class CoStarGraph {
+
+    public static final int TOP_CO_STARS = 10;
+
+    private final int starCount;
+    private final int[] castOffsets;        // movie ordinal -> slice of cast
+    private final int[] cast;               // star ordinals
+    private final int[] filmographyOffsets; // star ordinal -> slice of filmography
+    private final int[] filmography;        // movie ordinals
+    private final int[] coStarOffsets;      // star ordinal -> slice of coStars / sharedMovies
+    private final int[] coStars;            // star ordinals, most shared movies first
+    private final int[] sharedMovies;
+    private final long buildMillis;
+
+    CoStarGraph(int[][] movieStars, int[][] starMovies) {
+        long started = System.currentTimeMillis();
+        this.starCount = starMovies.length;
+        this.castOffsets = new int[movieStars.length + 1];
+        this.cast = flatten(movieStars, castOffsets);
+        this.filmographyOffsets = new int[starCount + 1];
+        this.filmography = flatten(starMovies, filmographyOffsets);
+
+        // Count every star's co-stars through its movies, keeping the top few.
+        int[] counts = new int[starCount];
+        int[] touched = new int[starCount];
+        int[] topStars = new int[TOP_CO_STARS];
+        int[] topCounts = new int[TOP_CO_STARS];
+        int[] offsets = new int[starCount + 1];
+        int[] stars = new int[Math.min(starCount, 1024)];
+        int[] shared = new int[stars.length];
+        int size = 0;
+        for (int s = 0; s < starCount; s++) {
+            int distinct = 0;
+            for (int i = filmographyOffsets[s]; i < filmographyOffsets[s + 1]; i++) {
+                int m = filmography[i];
+                for (int j = castOffsets[m]; j < castOffsets[m + 1]; j++) {
+                    int t = cast[j];
+                    if (t != s && counts[t]++ == 0) {
+                        touched[distinct++] = t;
+                    }
+                }
+            }
+            int kept = 0;
+            for (int i = 0; i < distinct; i++) {
+                int t = touched[i];
+                kept = offer(topStars, topCounts, kept, t, counts[t]);
+                counts[t] = 0;
+            }
+            if (size + kept > stars.length) {
+                stars = Arrays.copyOf(stars, Math.max(stars.length * 2, size + kept));
+                shared = Arrays.copyOf(shared, stars.length);
+            }
+            System.arraycopy(topStars, 0, stars, size, kept);
+            System.arraycopy(topCounts, 0, shared, size, kept);
+            size += kept;
+            offsets[s + 1] = size;
+        }
+        this.coStarOffsets = offsets;
+        this.coStars = Arrays.copyOf(stars, size);
+        this.sharedMovies = Arrays.copyOf(shared, size);
+        this.buildMillis = System.currentTimeMillis() - started;
+    }
+
+    private CoStarGraph(CoStarGraph graph, int movieCount, int starCount) {
+        this.starCount = starCount;
+        this.castOffsets = grown(graph.castOffsets, movieCount + 1);
+        this.cast = graph.cast;
+        this.filmographyOffsets = grown(graph.filmographyOffsets, starCount + 1);
+        this.filmography = graph.filmography;
+        this.coStarOffsets = grown(graph.coStarOffsets, starCount + 1);
+        this.coStars = graph.coStars;
+        this.sharedMovies = graph.sharedMovies;
+        this.buildMillis = graph.buildMillis;
+    }
+
+    /**
+     * This graph over {@code movieCount} movies and {@code starCount} stars, at least as many as it
+     * has: the links are shared and the added movies and stars have none.
+     */
+    CoStarGraph withSize(int movieCount, int starCount) {
+        if (movieCount == castOffsets.length - 1 && starCount == this.starCount) {
+            return this;
+        }
+        return new CoStarGraph(this, movieCount, starCount);
+    }
+
+    /** {@code offsets} extended to {@code length} with empty slices at the end. */
+    private static int[] grown(int[] offsets, int length) {
+        int[] grown = Arrays.copyOf(offsets, length);
+        Arrays.fill(grown, offsets.length, length, offsets[offsets.length - 1]);
+        return grown;
+    }
+
+    /** Concatenates {@code lists} and fills in where each one starts. */
+    private static int[] flatten(int[][] lists, int[] offsets) {
+        int total = 0;
+        for (int i = 0; i < lists.length; i++) {
+            offsets[i] = total;
+            total += lists[i].length;
+        }
+        offsets[lists.length] = total;
+        int[] flat = new int[total];
+        for (int i = 0; i < lists.length; i++) {
+            System.arraycopy(lists[i], 0, flat, offsets[i], lists[i].length);
+        }
+        return flat;
+    }
+
+    /**
+     * Inserts {@code star} into the first {@code size} entries of the top list, kept by count
+     * descending and then by ordinal, if it belongs there; returns the new size.
+     */
+    private static int offer(int[] topStars, int[] topCounts, int size, int star, int count) {
+        int capacity = topStars.length;
+        int at = size;
+        while (at > 0 && (topCounts[at - 1] < count || (topCounts[at - 1] == count && topStars[at - 1] > star))) {
+            at--;
+        }
+        if (at == capacity) {
+            return size;
+        }
+        int moved = Math.min(size, capacity - 1) - at;
+        System.arraycopy(topStars, at, topStars, at + 1, moved);
+        System.arraycopy(topCounts, at, topCounts, at + 1, moved);
+        topStars[at] = star;
+        topCounts[at] = count;
+        return Math.min(size + 1, capacity);
+    }
+
+    /** How many frequent co-stars star {@code s} has listed, at most {@link #TOP_CO_STARS}. */
+    public int coStarCount(int s) {
+        return coStarOffsets[s + 1] - coStarOffsets[s];
+    }
+
+    /** The {@code i}th most frequent co-star of star {@code s}. */
+    public int coStar(int s, int i) {
+        return coStars[coStarOffsets[s] + i];
+    }
+
+    /** How many movies star {@code s} shares with {@link #coStar coStar(s, i)}. */
+    public int sharedMovies(int s, int i) {
+        return sharedMovies[coStarOffsets[s] + i];
+    }
+
+    /**
+     * A shortest path from star {@code from} to star {@code to} through at most {@code maxMovies}
+     * movies, as ordinals alternating star, movie, star, ... (stars at even positions), or null
+     * when there is none that short. Searches from both ends at once, always growing the side with
+     * the smaller frontier, and scans each movie's cast at most once per side.
+     */
+    public int[] path(int from, int to, int maxMovies) {
+        if (from == to) {
+            return new int[] {from};
+        }
+        Side forward = new Side(from);
+        Side backward = new Side(to);
+        while (forward.frontierSize > 0 && backward.frontierSize > 0
+                && forward.level + backward.level < maxMovies) {
+            Side grow = forward.frontierSize <= backward.frontierSize ? forward : backward;
+            Side other = grow == forward ? backward : forward;
+            int meet = grow.expand(other);
+            if (meet >= 0) {
+                return join(forward, backward, meet);
+            }
+        }
+        return null;
+    }
+
+    /** from ... meet from the forward side's parents, then meet ... to from the backward side's. */
+    private int[] join(Side forward, Side backward, int meet) {
+        int degrees = forward.depth[meet] + backward.depth[meet];
+        int[] path = new int[2 * degrees + 1];
+        int middle = 2 * forward.depth[meet];
+        path[middle] = meet;
+        int at = middle;
+        for (int s = meet; s != forward.root; s = forward.parent[s]) {
+            path[at - 1] = forward.via[s];
+            path[at - 2] = forward.parent[s];
+            at -= 2;
+        }
+        at = middle;
+        for (int s = meet; s != backward.root; s = backward.parent[s]) {
+            path[at + 1] = backward.via[s];
+            path[at + 2] = backward.parent[s];
+            at += 2;
+        }
+        return path;
+    }
+
+    /** One end of a bidirectional search. */
+    private final class Side {
+        final int root;
+        final int[] depth = new int[starCount];   // movies from root, -1 when not reached
+        final int[] parent = new int[starCount];  // previous star on the way from root
+        final int[] via = new int[starCount];     // the movie shared with parent
+        final BitSet scanned = new BitSet(castOffsets.length - 1);
+        int[] frontier;
+        int frontierSize;
+        int level;
+
+        Side(int root) {
+            this.root = root;
+            Arrays.fill(depth, -1);
+            depth[root] = 0;
+            parent[root] = root;
+            frontier = new int[] {root};
+            frontierSize = 1;
+        }
+
+        /**
+         * Reaches every star one movie beyond the frontier. Returns the reached star that the
+         * other side has also reached with the fewest movies in total, or -1.
+         */
+        int expand(Side other) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            int meet = -1;
+            level++;
+            for (int f = 0; f < frontierSize; f++) {
+                int s = frontier[f];
+                for (int i = filmographyOffsets[s]; i < filmographyOffsets[s + 1]; i++) {
+                    int m = filmography[i];
+                    if (scanned.get(m)) {
+                        continue;
+                    }
+                    scanned.set(m);
+                    for (int j = castOffsets[m]; j < castOffsets[m + 1]; j++) {
+                        int t = cast[j];
+                        if (depth[t] >= 0) {
+                            continue;
+                        }
+                        depth[t] = level;
+                        parent[t] = s;
+                        via[t] = m;
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = t;
+                        if (other.depth[t] >= 0 && (meet < 0 || other.depth[t] < other.depth[meet])) {
+                            meet = t;
+                        }
+                    }
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+            return meet;
+        }
+    }
+
+    /** How long counting the co-stars took when this graph's links were built. */
+    long buildMillis() {
+        return buildMillis;
+    }
+
+    /** Heap held by the graph's arrays, in bytes. */
+    public long sizeInBytes() {
+        return 4L * (castOffsets.length + cast.length + filmographyOffsets.length + filmography.length
+                + coStarOffsets.length + coStars.length + sharedMovies.length);
+    }
+}
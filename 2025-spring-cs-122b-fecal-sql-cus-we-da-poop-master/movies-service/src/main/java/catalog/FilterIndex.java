@@ -0,0 +1,149 @@
+package catalog;
+
+import search.CompressedBitmap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compressed bitmaps of movie ordinals for the /api/movies filters that are plain equality tests:
+ * one per genre, per year, per lower-cased title initial (plus the "*" bucket of titles starting
+ * with anything but an ASCII letter or digit, which MySQL can only find with a REGEXP scan) and per
+ * whole-number rating bucket. A filter combination is the AND of a few of these, and counts and
+ * facets are cardinalities of further ANDs, so none of them touches a movie row.
+ */
+final class FilterIndex {
+
+    static final int RATING_BUCKETS = 11;   // floor(COALESCE(rating, 0)), 0 through 10
+
+    final CompressedBitmap all;
+    final CompressedBitmap[] byGenre;                   // by genre ordinal
+    final Map<Integer, CompressedBitmap> byYear;
+    final Map<Character, CompressedBitmap> byInitial;   // first char of the lower-cased title
+    final CompressedBitmap nonAlphanumeric;
+    final CompressedBitmap[] byRatingBucket;
+
+    FilterIndex(Catalog catalog) {
+        int movieCount = catalog.movieCount();
+        int[] ordinals = new int[movieCount];
+        for (int m = 0; m < movieCount; m++) {
+            ordinals[m] = m;
+        }
+        this.all = CompressedBitmap.of(ordinals);
+
+        this.byGenre = new CompressedBitmap[catalog.genreMovies.length];
+        for (int g = 0; g < byGenre.length; g++) {
+            byGenre[g] = CompressedBitmap.of(sorted(catalog.genreMovies[g]));
+        }
+
+        Map<Integer, IntList> years = new HashMap<>();
+        Map<Character, IntList> initials = new HashMap<>();
+        IntList others = new IntList();
+        IntList[] buckets = new IntList[RATING_BUCKETS];
+        for (int b = 0; b < RATING_BUCKETS; b++) {
+            buckets[b] = new IntList();
+        }
+        for (int m = 0; m < movieCount; m++) {
+            years.computeIfAbsent(catalog.years[m], y -> new IntList()).add(m);
+            String lower = catalog.titlesLower[m];
+            if (!lower.isEmpty()) {
+                initials.computeIfAbsent(lower.charAt(0), c -> new IntList()).add(m);
+                if (!Catalog.isAsciiAlphanumeric(catalog.titles[m].charAt(0))) {
+                    others.add(m);
+                }
+            }
+            buckets[ratingBucket(catalog.sortRating(m))].add(m);
+        }
+        this.byYear = new HashMap<>();
+        for (Map.Entry<Integer, IntList> entry : years.entrySet()) {
+            byYear.put(entry.getKey(), entry.getValue().toBitmap());
+        }
+        this.byInitial = new HashMap<>();
+        for (Map.Entry<Character, IntList> entry : initials.entrySet()) {
+            byInitial.put(entry.getKey(), entry.getValue().toBitmap());
+        }
+        this.nonAlphanumeric = others.toBitmap();
+        this.byRatingBucket = new CompressedBitmap[RATING_BUCKETS];
+        for (int b = 0; b < RATING_BUCKETS; b++) {
+            byRatingBucket[b] = buckets[b].toBitmap();
+        }
+    }
+
+    static int ratingBucket(double sortRating) {
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, (int) Math.floor(sortRating)));
+    }
+
+    CompressedBitmap year(int year) {
+        return byYear.getOrDefault(year, CompressedBitmap.EMPTY);
+    }
+
+    /** Movies whose lower-cased title starts with the first char of {@code initialLower}. */
+    CompressedBitmap initial(String initialLower) {
+        return byInitial.getOrDefault(initialLower.charAt(0), CompressedBitmap.EMPTY);
+    }
+
+    /** Matches in {@code result} per genre ordinal. */
+    int[] genreCounts(CompressedBitmap result) {
+        int[] counts = new int[byGenre.length];
+        for (int g = 0; g < byGenre.length; g++) {
+            counts[g] = result.andCardinality(byGenre[g]);
+        }
+        return counts;
+    }
+
+    /** Matches in {@code result} per year, ascending, years without matches left out. */
+    TreeMap<Integer, Integer> yearCounts(CompressedBitmap result) {
+        return counts(result, byYear);
+    }
+
+    /** Matches in {@code result} per title initial, ascending, initials without matches left out. */
+    TreeMap<Character, Integer> initialCounts(CompressedBitmap result) {
+        return counts(result, byInitial);
+    }
+
+    long sizeInBytes() {
+        long bytes = all.sizeInBytes() + nonAlphanumeric.sizeInBytes();
+        for (CompressedBitmap bitmap : byGenre) bytes += bitmap.sizeInBytes();
+        for (CompressedBitmap bitmap : byYear.values()) bytes += bitmap.sizeInBytes();
+        for (CompressedBitmap bitmap : byInitial.values()) bytes += bitmap.sizeInBytes();
+        for (CompressedBitmap bitmap : byRatingBucket) bytes += bitmap.sizeInBytes();
+        return bytes;
+    }
+
+    private static <K extends Comparable<K>> TreeMap<K, Integer> counts(CompressedBitmap result,
+                                                                        Map<K, CompressedBitmap> bitmaps) {
+        TreeMap<K, Integer> counts = new TreeMap<>();
+        for (Map.Entry<K, CompressedBitmap> entry : bitmaps.entrySet()) {
+            int count = result.andCardinality(entry.getValue());
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    private static int[] sorted(int[] ordinals) {
+        int[] copy = ordinals.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /** Ordinals appended in ascending order. */
+    private static final class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        CompressedBitmap toBitmap() {
+            return CompressedBitmap.of(items, size);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package catalog;
+
+import json.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The JSON objects the movie list and the single-movie page return for one movie. A snapshot keeps
+ * them as UTF-8 fragments per movie ({@link Catalog#summaryJson}, {@link Catalog#detailJson}), so
+ * serving a page is copying bytes; the SQL paths write the same objects through
+ * {@link #writeSummary} and {@link #writeDetail}.
+ */
+public final class MovieJson {
+
+    /** Stars listed in a summary, in cast order. */
+    static final int SUMMARY_STARS = 3;
+
+    private MovieJson() {
+    }
+
+    /**
+     * One /api/movies entry. Null fields are left out; rating is rounded to one decimal.
+     */
+    public static void writeSummary(JsonWriter json, String id, String title, int year, String director,
+                                    Double rating, String genres, String stars) throws IOException {
+        json.beginObject();
+        json.name("id").value(id);
+        if (title != null) json.name("title").value(title);
+        json.name("year").value(year);
+        if (director != null) json.name("director").value(director);
+        if (rating != null) json.name("rating").value(Math.round(rating * 10.0) / 10.0);
+        if (genres != null) json.name("genres").value(genres);
+        if (stars != null) json.name("stars").value(stars);
+        json.endObject();
+    }
+
+    /**
+     * One /api/movie object. Rating is written as the FLOAT column holds it (see
+     * {@link #storedRating}), null when unrated; missing genres or stars are written as "".
+     */
+    public static void writeDetail(JsonWriter json, String id, String title, int year, String director,
+                                   Double rating, String genres, String stars) throws IOException {
+        json.beginObject()
+                .name("id").value(id)
+                .name("title").value(title)
+                .name("year").value(year)
+                .name("director").value(director);
+        if (rating != null) {
+            json.name("rating").value(storedRating(rating));
+        } else {
+            json.name("rating").nullValue();
+        }
+        json.name("genres").value(genres != null ? genres : "")
+                .name("stars").value(stars != null ? stars : "")
+                .endObject();
+    }
+
+    /**
+     * {@code rating} as the shortest decimal of the float it came from. ratings.rating is a FLOAT:
+     * the catalog keeps it as a float, and the binary protocol of server-side prepared statements
+     * hands it over as one, so widening it to double would print 7.3 as 7.300000190734863.
+     */
+    public static double storedRating(double rating) {
+        return Double.parseDouble(Float.toString((float) rating));
+    }
+
+    /** "Action, Drama" and "nm1:Name, nm2:Name, nm3:Name", or null when the movie has none. */
+    static byte[] summary(Catalog catalog, int m) {
+        int[] genres = catalog.genresOf(m);
+        StringBuilder genreList = new StringBuilder();
+        for (int g : genres) {
+            if (genreList.length() > 0) genreList.append(", ");
+            genreList.append(catalog.genreName(g));
+        }
+
+        int[] stars = catalog.starsOf(m);
+        StringBuilder starList = new StringBuilder();
+        for (int i = 0; i < stars.length && i < SUMMARY_STARS; i++) {
+            if (i > 0) starList.append(", ");
+            starList.append(catalog.starId(stars[i])).append(':').append(catalog.starName(stars[i]));
+        }
+
+        try (JsonWriter json = JsonWriter.inMemory()) {
+            writeSummary(json, catalog.movieId(m), catalog.title(m), catalog.year(m), catalog.director(m),
+                    catalog.hasRating(m) ? (double) catalog.rating(m) : 0.0,
+                    genres.length == 0 ? null : genreList.toString(),
+                    stars.length == 0 ? null : starList.toString());
+            return json.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);   // an in-memory writer does no I/O
+        }
+    }
+
+    /** The single-movie object: every genre as "id:name" and every star as "id:name", comma-separated. */
+    static byte[] detail(Catalog catalog, int m) {
+        StringBuilder genres = new StringBuilder();
+        for (int g : catalog.genresOf(m)) {
+            if (genres.length() > 0) genres.append(',');
+            genres.append(catalog.genreId(g)).append(':').append(catalog.genreName(g));
+        }
+        StringBuilder stars = new StringBuilder();
+        for (int s : catalog.starsOf(m)) {
+            if (stars.length() > 0) stars.append(',');
+            stars.append(catalog.starId(s)).append(':').append(catalog.starName(s));
+        }
+
+        try (JsonWriter json = JsonWriter.inMemory()) {
+            writeDetail(json, catalog.movieId(m), catalog.title(m), catalog.year(m), catalog.director(m),
+                    catalog.hasRating(m) ? (double) catalog.rating(m) : null, genres.toString(), stars.toString());
+            return json.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
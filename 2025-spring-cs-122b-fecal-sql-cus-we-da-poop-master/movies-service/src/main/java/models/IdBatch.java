@@ -0,0 +1,91 @@
+package models;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The ids of a batch lookup: {@code ids=a,b,c} and/or repeated {@code id} parameters, trimmed,
+ * without blanks and duplicates, in the order given.
+ */
+public final class IdBatch {
+
+    public static final int MAX_IDS = 100;
+
+    private final List<String> ids;
+
+    private IdBatch(List<String> ids) {
+        this.ids = ids;
+    }
+
+    public static IdBatch fromRequest(HttpServletRequest request) {
+        Set<String> ids = new LinkedHashSet<>();
+        String[] lists = request.getParameterValues("ids");
+        if (lists != null) {
+            for (String list : lists) {
+                for (String id : list.split(",")) {
+                    add(ids, id);
+                }
+            }
+        }
+        String[] singles = request.getParameterValues("id");
+        if (singles != null) {
+            for (String id : singles) {
+                add(ids, id);
+            }
+        }
+        return new IdBatch(new ArrayList<>(ids));
+    }
+
+    private static void add(Set<String> ids, String id) {
+        String trimmed = id.trim();
+        if (!trimmed.isEmpty()) {
+            ids.add(trimmed);
+        }
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    public boolean isTooLarge() {
+        return ids.size() > MAX_IDS;
+    }
+
+    /**
+     * Size of the IN list for {@code count} ids: the next power of two, at most {@link #MAX_IDS},
+     * so only a handful of statement shapes are ever prepared.
+     */
+    public static int slots(int count) {
+        int slots = 1;
+        while (slots < count) {
+            slots <<= 1;
+        }
+        return Math.min(slots, MAX_IDS);
+    }
+
+    /** "?, ?, ?" for an IN list of {@code slots} placeholders. */
+    public static String placeholders(int slots) {
+        return String.join(", ", Collections.nCopies(slots, "?"));
+    }
+
+    /**
+     * Binds {@code ids} to {@code slots} placeholders starting at {@code firstIndex}, padding by
+     * repeating the last id.
+     */
+    public static void bind(PreparedStatement statement, int firstIndex, List<String> ids, int slots) throws SQLException {
+        for (int i = 0; i < slots; i++) {
+            statement.setString(firstIndex + i, ids.get(Math.min(i, ids.size() - 1)));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package models;
+
+import java.util.Map;
+
+/**
+ * How many movies match a {@link MovieListQuery}'s filters, and optionally how they split by
+ * genre, decade ("1990s") and title initial ("A".."Z", "0".."9", "*" for anything else). Facet
+ * maps are ordered for display and leave out zero counts.
+ */
+public class MovieCounts {
+    private final int total;
+    private final Map<String, Integer> genres;
+    private final Map<String, Integer> decades;
+    private final Map<String, Integer> initials;
+
+    public MovieCounts(int total, Map<String, Integer> genres, Map<String, Integer> decades,
+                       Map<String, Integer> initials) {
+        this.total = total;
+        this.genres = genres;
+        this.decades = decades;
+        this.initials = initials;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /** Null when facets were not computed. */
+    public Map<String, Integer> getGenres() {
+        return genres;
+    }
+
+    public Map<String, Integer> getDecades() {
+        return decades;
+    }
+
+    public Map<String, Integer> getInitials() {
+        return initials;
+    }
+
+    public boolean hasFacets() {
+        return genres != null;
+    }
+
+    public static String decade(int year) {
+        return Math.floorDiv(year, 10) * 10 + "s";
+    }
+
+    /** The facet an initial char falls in: itself upper-cased for ASCII letters and digits, else "*". */
+    public static String initial(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            return String.valueOf(Character.toUpperCase(c));
+        }
+        return "*";
+    }
+}
@@ -0,0 +1,350 @@
+package models;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Normalized parameters of an /api/movies request.
+ * Two requests that differ only in whitespace, letter case of sort options or an invalid
+ * value that gets ignored produce equal queries, and the filters that are present (but not
+ * their values) together with the sort order form the query's {@link #shapeKey() shape}.
+ * <p>
+ * A request either asks for a page number or passes the {@code cursor} returned with the previous
+ * page; a valid cursor wins, and an invalid one is ignored like any other bad parameter.
+ */
+public class MovieListQuery {
+
+    public static final List<Integer> ALLOWED_LIMITS = Arrays.asList(10, 25, 50, 100);
+    public static final int DEFAULT_LIMIT = 25;
+    public static final int DEFAULT_PAGE = 1;
+
+    private static final List<String> ALLOWED_SORT_FIELDS = Arrays.asList("title", "rating");
+    private static final List<String> ALLOWED_ORDERS = Arrays.asList("asc", "desc");
+
+    public static final class SortKey {
+        public final String field;
+        public final boolean ascending;
+
+        public SortKey(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public String toString() {
+            return field + (ascending ? " asc" : " desc");
+        }
+    }
+
+    /**
+     * Position just after the last movie of a page: its value for every sort key, then its id.
+     * Encoded as URL-safe base64 of a JSON array that starts with the sort order it was made for,
+     * so a cursor reused with different sort options is rejected instead of seeking to a wrong place.
+     * <p>
+     * It holds sort values, not a position in one engine's result, so the catalog and SQL can both
+     * seek from it: a session whose own write moves it from the snapshot to SQL mid-listing keeps
+     * paging. The two order titles slightly differently (Java string order against the MySQL
+     * collation, e.g. for accents), so such a switch can repeat or skip a title that the two
+     * compare differently right at the page boundary.
+     */
+    public static final class Cursor {
+        private final Object[] values;
+        private final String movieId;
+
+        private Cursor(Object[] values, String movieId) {
+            this.values = values;
+            this.movieId = movieId;
+        }
+
+        /** Sort value for key {@code i}: a Double for rating (0 when unrated), a String for title. */
+        public Object value(int i) { return values[i]; }
+        public String getMovieId() { return movieId; }
+
+        public static String encode(List<SortKey> sortKeys, Object[] values, String movieId) {
+            JsonArray array = new JsonArray();
+            array.add(sortSpec(sortKeys));
+            for (int i = 0; i < sortKeys.size(); i++) {
+                if ("title".equals(sortKeys.get(i).field)) {
+                    array.add((String) values[i]);
+                } else {
+                    array.add((Double) values[i]);
+                }
+            }
+            array.add(movieId);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(array.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token, List<SortKey> sortKeys) {
+            try {
+                String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                JsonArray array = JsonParser.parseString(json).getAsJsonArray();
+                if (array.size() != sortKeys.size() + 2 || !sortSpec(sortKeys).equals(array.get(0).getAsString())) {
+                    return null;
+                }
+                Object[] values = new Object[sortKeys.size()];
+                for (int i = 0; i < values.length; i++) {
+                    JsonElement value = array.get(i + 1);
+                    values[i] = "title".equals(sortKeys.get(i).field) ? value.getAsString() : (Object) value.getAsDouble();
+                }
+                return new Cursor(values, array.get(array.size() - 1).getAsString());
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static String sortSpec(List<SortKey> sortKeys) {
+            return sortKeys.toString();
+        }
+    }
+
+    private String genre;
+    private String title;
+    private Integer year;
+    private String director;
+    private String starName;
+    private String titleInitial;
+    private String ftQuery;
+    private List<SortKey> sortKeys;
+    private int limit = DEFAULT_LIMIT;
+    private int page = DEFAULT_PAGE;
+    private Cursor cursor;
+    private String cursorToken;
+    private boolean fuzzy;
+    private boolean totalRequested;
+    private boolean facetsRequested;
+
+    public static MovieListQuery fromRequest(HttpServletRequest request) {
+        MovieListQuery query = new MovieListQuery();
+        query.genre = trimToNull(request.getParameter("genre"));
+        query.title = trimToNull(request.getParameter("title"));
+        query.director = trimToNull(request.getParameter("director"));
+        query.starName = trimToNull(request.getParameter("star_name"));
+        query.titleInitial = trimToNull(request.getParameter("titleInitial"));
+        query.ftQuery = normalizeWhitespace(request.getParameter("ft_query"));
+        query.fuzzy = isTrue(request.getParameter("fuzzy"));
+        query.totalRequested = isTrue(request.getParameter("total"));
+        query.facetsRequested = isTrue(request.getParameter("facets"));
+
+        String yearParam = trimToNull(request.getParameter("year"));
+        if (yearParam != null) {
+            try {
+                query.year = Integer.parseInt(yearParam);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid year format: " + yearParam);
+            }
+        }
+
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                int requestedLimit = Integer.parseInt(limitParam);
+                if (ALLOWED_LIMITS.contains(requestedLimit)) {
+                    query.limit = requestedLimit;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid limit parameter format: " + limitParam);
+            }
+        }
+
+        String pageParam = request.getParameter("page");
+        if (pageParam != null) {
+            try {
+                query.page = Math.max(DEFAULT_PAGE, Integer.parseInt(pageParam));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid page parameter format: " + pageParam);
+            }
+        }
+
+        query.sortKeys = resolveSortKeys(request.getParameter("sort1"), request.getParameter("order1"),
+                request.getParameter("sort2"), request.getParameter("order2"));
+
+        String cursorParam = trimToNull(request.getParameter("cursor"));
+        if (cursorParam != null) {
+            query.cursor = Cursor.decode(cursorParam, query.sortKeys);
+            if (query.cursor != null) {
+                query.cursorToken = cursorParam;
+            } else {
+                System.err.println("Invalid cursor parameter for sort " + query.sortKeys + ": " + cursorParam);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Primary key from sort1/order1, secondary from sort2/order2 when it names a different field,
+     * and rating desc, title asc when neither is valid.
+     */
+    private static List<SortKey> resolveSortKeys(String sort1, String order1, String sort2, String order2) {
+        List<SortKey> keys = new ArrayList<>(2);
+        if (isValidSortParam(sort1, order1)) {
+            keys.add(new SortKey(sort1.toLowerCase(), "asc".equalsIgnoreCase(order1)));
+        }
+        if (isValidSortParam(sort2, order2) && (keys.isEmpty() || !keys.get(0).field.equals(sort2.toLowerCase()))) {
+            keys.add(new SortKey(sort2.toLowerCase(), "asc".equalsIgnoreCase(order2)));
+        }
+        if (keys.isEmpty()) {
+            keys.add(new SortKey("rating", false));
+            keys.add(new SortKey("title", true));
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    private static boolean isValidSortParam(String field, String order) {
+        return field != null && !field.trim().isEmpty() && !field.equalsIgnoreCase("none") &&
+                order != null && !order.trim().isEmpty() &&
+                ALLOWED_SORT_FIELDS.contains(field.toLowerCase()) &&
+                ALLOWED_ORDERS.contains(order.toLowerCase());
+    }
+
+    private static boolean isTrue(String value) {
+        return value != null && ("true".equalsIgnoreCase(value.trim()) || "1".equals(value.trim()));
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String normalizeWhitespace(String value) {
+        String trimmed = trimToNull(value);
+        return trimmed == null ? null : trimmed.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * The canonical shape: which filters are present and how results are ordered.
+     * Every query with the same shape runs the same SQL text with different bind values.
+     */
+    public String shapeKey() {
+        StringBuilder key = new StringBuilder(filterShapeKey());
+        key.append('|');
+        for (int i = 0; i < sortKeys.size(); i++) {
+            if (i > 0) key.append(',');
+            key.append(sortKeys.get(i));
+        }
+        if (cursor != null) key.append("|seek");
+        return key.toString();
+    }
+
+    /**
+     * Every parameter that affects the response, normalized: values that MySQL compares
+     * case-insensitively are lower-cased, and invalid or defaulted values are already resolved.
+     */
+    public String cacheKey() {
+        StringBuilder key = new StringBuilder(shapeKey());
+        appendFilterValues(key);
+        key.append(totalRequested ? "|total" : "|").append(facetsRequested ? "|facets" : "|");
+        key.append('|').append(limit).append('|');
+        if (cursor != null) {
+            key.append("c:").append(cursorToken);
+        } else {
+            key.append(page);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Which filters are present, without their values: the part of the shape that decides the
+     * WHERE clause.
+     */
+    public String filterShapeKey() {
+        StringBuilder key = new StringBuilder();
+        if (ftQuery != null) key.append("ft,");
+        if (genre != null) key.append("genre,");
+        if (year != null) key.append("year,");
+        if (director != null) key.append("director,");
+        if (starName != null) key.append("star,");
+        if (titleInitial != null) key.append(isNonAlphanumericInitial() ? "initial*," : "initial,");
+        if (key.length() == 0) key.append("all,");
+        key.setLength(key.length() - 1);
+        return key.toString();
+    }
+
+    /**
+     * The filters and their normalized values, ignoring sort and paging: queries with the same
+     * filter key match the same set of movies.
+     */
+    public String filterKey() {
+        StringBuilder key = new StringBuilder(filterShapeKey());
+        appendFilterValues(key);
+        return key.toString();
+    }
+
+    private void appendFilterValues(StringBuilder key) {
+        appendPart(key, genre);
+        appendPart(key, title);
+        appendPart(key, year == null ? null : String.valueOf(year));
+        appendPart(key, director);
+        appendPart(key, starName);
+        appendPart(key, titleInitial);
+        appendPart(key, ftQuery);
+        key.append(fuzzy ? "|fuzzy" : "|exact");
+    }
+
+    private static void appendPart(StringBuilder key, String value) {
+        key.append('|');
+        if (value != null) {
+            // Length prefix keeps "a|b" in one field distinct from "a" and "b" in two.
+            String normalized = value.toLowerCase();
+            key.append(normalized.length()).append(':').append(normalized);
+        }
+    }
+
+    /**
+     * The ft_query rewritten for MATCH ... AGAINST in BOOLEAN MODE: every keyword required, as a prefix.
+     */
+    public String ftBooleanQuery() {
+        if (ftQuery == null) return null;
+        StringBuilder booleanQuery = new StringBuilder();
+        for (String keyword : ftQuery.split(" ")) {
+            if (booleanQuery.length() > 0) booleanQuery.append(' ');
+            booleanQuery.append('+').append(keyword).append('*');
+        }
+        return booleanQuery.toString();
+    }
+
+    /**
+     * Whether ft_query and star_name keywords may be misspelled. Only the in-memory catalog
+     * supports this; the SQL fallback matches exactly.
+     */
+    public boolean isFuzzy() {
+        return fuzzy;
+    }
+
+    /** Whether the response should carry the total number of matches (param total=true). */
+    public boolean isTotalRequested() {
+        return totalRequested;
+    }
+
+    /** Whether the response should carry genre, decade and initial counts (param facets=true). */
+    public boolean isFacetsRequested() {
+        return facetsRequested;
+    }
+
+    public boolean isNonAlphanumericInitial() {
+        return "*".equals(titleInitial);
+    }
+
+    public String getGenre() { return genre; }
+    public String getTitle() { return title; }
+    public Integer getYear() { return year; }
+    public String getDirector() { return director; }
+    public String getStarName() { return starName; }
+    public String getTitleInitial() { return titleInitial; }
+    public String getFtQuery() { return ftQuery; }
+    public List<SortKey> getSortKeys() { return sortKeys; }
+    public int getLimit() { return limit; }
+    public int getPage() { return page; }
+    public int getOffset() { return cursor != null ? 0 : (page - 1) * limit; }
+    public Cursor getCursor() { return cursor; }
+}
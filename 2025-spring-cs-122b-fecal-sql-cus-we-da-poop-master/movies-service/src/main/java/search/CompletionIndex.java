@@ -0,0 +1,258 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix completion over titles: a radix trie whose keys are every normalized title starting at
+ * each of its words ("star wars ii", "wars ii", "ii"), so typing the beginning of any word run
+ * finds the movie. Every node stores the best {@code k} movies below it, by a popularity rank fixed
+ * at build time, so a lookup walks at most one node per typed character and returns a stored array.
+ * <p>
+ * Normalization lower-cases letters and digits and turns every other run of characters into a
+ * single space; lookups normalize on the fly while walking, without building a string.
+ */
+public final class CompletionIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final String[] labels;      // edge label leading into each node; node 0 is the root
+    private final char[] firstChars;    // labels[n].charAt(0), for binary search among siblings
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[][] topK;
+    private int nodeCount;
+
+    private CompletionIndex(int capacity) {
+        labels = new String[capacity];
+        firstChars = new char[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        topK = new int[capacity][];
+    }
+
+    /**
+     * @param titles raw titles, indexed by movie ordinal
+     * @param rank   popularity position of each movie, 0 = most popular
+     * @param k      how many movies each node keeps
+     */
+    public static CompletionIndex build(String[] titles, int[] rank, int k) {
+        List<Key> keys = new ArrayList<>();
+        for (int m = 0; m < titles.length; m++) {
+            String normalized = normalize(titles[m]);
+            for (int p = 0; p < normalized.length(); p++) {
+                if (p == 0 || normalized.charAt(p - 1) == ' ') {
+                    keys.add(new Key(normalized.substring(p), m, rank[m]));
+                }
+            }
+        }
+        keys.sort((a, b) -> {
+            int c = a.text.compareTo(b.text);
+            return c != 0 ? c : Integer.compare(a.rank, b.rank);
+        });
+
+        // Collapse equal keys; their movies are already in rank order.
+        List<String> texts = new ArrayList<>();
+        List<int[]> movies = new ArrayList<>();
+        for (int i = 0; i < keys.size(); ) {
+            int j = i;
+            List<Integer> group = new ArrayList<>();
+            while (j < keys.size() && keys.get(j).text.equals(keys.get(i).text)) {
+                int m = keys.get(j).movie;
+                if (!group.contains(m) && group.size() < k) {
+                    group.add(m);
+                }
+                j++;
+            }
+            texts.add(keys.get(i).text);
+            movies.add(group.stream().mapToInt(Integer::intValue).toArray());
+            i = j;
+        }
+
+        // A radix trie over n keys has fewer than 2n nodes.
+        CompletionIndex index = new CompletionIndex(2 * texts.size() + 1);
+        index.nodeCount = 1;
+        if (texts.isEmpty()) {
+            index.labels[0] = "";
+            index.topK[0] = NONE;
+        } else {
+            index.buildNode(0, texts.toArray(new String[0]), movies, 0, texts.size(), 0, rank, k);
+        }
+        return index;
+    }
+
+    /**
+     * The best movies whose normalized title contains a word run starting with the normalized
+     * {@code prefix}, most popular first. The returned array is shared; do not modify it.
+     */
+    public int[] complete(CharSequence prefix) {
+        int node = 0;
+        int pos = 0;
+        boolean started = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                pendingSpace = started;
+                continue;
+            }
+            for (int pass = pendingSpace ? 0 : 1; pass < 2; pass++) {
+                char next = pass == 0 ? ' ' : Character.toLowerCase(c);
+                if (pos < labels[node].length()) {
+                    if (labels[node].charAt(pos) != next) {
+                        return NONE;
+                    }
+                    pos++;
+                } else {
+                    node = child(node, next);
+                    if (node < 0) {
+                        return NONE;
+                    }
+                    pos = 1;
+                }
+            }
+            pendingSpace = false;
+            started = true;
+        }
+        return topK[node];
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Lower-cased letters and digits, with every other run of characters as one space, trimmed.
+     */
+    public static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(Character.toLowerCase(c));
+        }
+        return normalized.toString();
+    }
+
+    private int child(int node, char c) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstChars[mid] < c) {
+                low = mid + 1;
+            } else if (firstChars[mid] > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fills {@code node} for the sorted keys [lo, hi), which share their first {@code depth}
+     * characters, and returns its top-k. Children are allocated as one contiguous block.
+     */
+    private int[] buildNode(int node, String[] texts, List<int[]> movies, int lo, int hi, int depth, int[] rank, int k) {
+        int end = commonPrefix(texts[lo], texts[hi - 1]);
+        labels[node] = texts[lo].substring(depth, end);
+        if (!labels[node].isEmpty()) {
+            firstChars[node] = labels[node].charAt(0);
+        }
+
+        List<int[]> ranked = new ArrayList<>();
+        int i = lo;
+        if (texts[i].length() == end) {
+            ranked.add(movies.get(i));
+            i++;
+        }
+        int groups = 0;
+        for (int j = i; j < hi; j++) {
+            if (j == i || texts[j].charAt(end) != texts[j - 1].charAt(end)) {
+                groups++;
+            }
+        }
+        int child = nodeCount;
+        nodeCount += groups;
+        firstChild[node] = child;
+        childCount[node] = groups;
+        while (i < hi) {
+            int j = i + 1;
+            while (j < hi && texts[j].charAt(end) == texts[i].charAt(end)) {
+                j++;
+            }
+            ranked.add(buildNode(child++, texts, movies, i, j, end, rank, k));
+            i = j;
+        }
+        topK[node] = merge(ranked, rank, k);
+        return topK[node];
+    }
+
+    /**
+     * The best {@code k} distinct movies across lists that are each already in rank order.
+     */
+    private static int[] merge(List<int[]> lists, int[] rank, int k) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int[] positions = new int[lists.size()];
+        int[] merged = new int[k];
+        int count = 0;
+        while (count < k) {
+            int best = -1;
+            for (int l = 0; l < lists.size(); l++) {
+                int[] list = lists.get(l);
+                if (positions[l] < list.length
+                        && (best < 0 || rank[list[positions[l]]] < rank[lists.get(best)[positions[best]]])) {
+                    best = l;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            int m = lists.get(best)[positions[best]++];
+            boolean seen = false;
+            for (int i = 0; i < count; i++) {
+                if (merged[i] == m) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                merged[count++] = m;
+            }
+        }
+        return count == k ? merged : Arrays.copyOf(merged, count);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Key {
+        final String text;
+        final int movie;
+        final int rank;
+
+        Key(String text, int movie, int rank) {
+            this.text = text;
+            this.movie = movie;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable compressed set of non-negative ints in the Roaring layout: values are split by their
+ * high 16 bits into chunks, and each chunk is stored either as a sorted char array (up to
+ * {@value #ARRAY_MAX} values) or as a 65536-bit bitmap. Sparse sets (one year, one rare genre) stay
+ * a few bytes per member, dense ones (one rating bucket) a bit per possible member, and AND/OR
+ * work chunk by chunk with the cheapest algorithm for each pair of representations.
+ */
+public final class CompressedBitmap {
+
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Chunk[0]);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private final char[] keys;          // high 16 bits of the chunk's values, ascending
+    private final Chunk[] chunks;       // parallel to keys, never empty
+
+    private CompressedBitmap(char[] keys, Chunk[] chunks) {
+        this.keys = keys;
+        this.chunks = chunks;
+    }
+
+    /**
+     * The set of {@code sorted[0..length)}, which must be ascending without duplicates.
+     */
+    public static CompressedBitmap of(int[] sorted, int length) {
+        char[] keys = new char[length == 0 ? 0 : (sorted[length - 1] >>> 16) - (sorted[0] >>> 16) + 1];
+        Chunk[] chunks = new Chunk[keys.length];
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            int key = sorted[start] >>> 16;
+            int end = start;
+            while (end < length && sorted[end] >>> 16 == key) {
+                end++;
+            }
+            char[] values = new char[end - start];
+            for (int i = start; i < end; i++) {
+                values[i - start] = (char) sorted[i];
+            }
+            keys[count] = (char) key;
+            chunks[count++] = Chunk.ofArray(values, values.length).optimized();
+            start = end;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(chunks, count));
+    }
+
+    public static CompressedBitmap of(int[] sorted) {
+        return of(sorted, sorted.length);
+    }
+
+    public static CompressedBitmap of(BitSet bits) {
+        return of(bits.stream().toArray());
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (Chunk chunk : chunks) {
+            cardinality += chunk.cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return chunks.length == 0;
+    }
+
+    public boolean contains(int value) {
+        int c = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return c >= 0 && chunks[c].contains((char) value);
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+        Chunk[] resultChunks = new Chunk[resultKeys.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = chunks[i].and(other.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    resultKeys[count] = keys[i];
+                    resultChunks[count++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultChunks, count));
+    }
+
+    /** {@code and(other).cardinality()} without building the intersection. */
+    public int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += chunks[i].andCardinality(other.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        char[] resultKeys = new char[keys.length + other.keys.length];
+        Chunk[] resultChunks = new Chunk[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[count] = keys[i];
+                resultChunks[count++] = chunks[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                resultChunks[count++] = other.chunks[j++];
+            } else {
+                resultKeys[count] = keys[i];
+                resultChunks[count++] = chunks[i++].or(other.chunks[j++]);
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultChunks, count));
+    }
+
+    /** The members, ascending. */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int n = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            n = chunks[c].copyTo(values, n, keys[c] << 16);
+        }
+        return values;
+    }
+
+    /** Bytes held by the chunks, for stats. */
+    public long sizeInBytes() {
+        long bytes = keys.length * 2L;
+        for (Chunk chunk : chunks) {
+            bytes += chunk.words != null ? WORDS * 8L : chunk.array.length * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * The values of one 65536-wide chunk: exactly one of {@code array} (sorted) and {@code words}
+     * is set.
+     */
+    private static final class Chunk {
+        final char[] array;
+        final long[] words;
+        final int cardinality;
+
+        private Chunk(char[] array, long[] words, int cardinality) {
+            this.array = array;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Chunk ofArray(char[] values, int length) {
+            return new Chunk(length == values.length ? values : Arrays.copyOf(values, length), null, length);
+        }
+
+        static Chunk ofWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return new Chunk(null, words, cardinality);
+        }
+
+        /** The same values in whichever representation is smaller. */
+        Chunk optimized() {
+            if (words != null && cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                copyTo(values);
+                return new Chunk(values, null, cardinality);
+            }
+            if (array != null && cardinality > ARRAY_MAX) {
+                long[] bits = new long[WORDS];
+                for (char v : array) {
+                    bits[v >>> 6] |= 1L << v;
+                }
+                return new Chunk(null, bits, cardinality);
+            }
+            return this;
+        }
+
+        boolean contains(char value) {
+            return words != null ? (words[value >>> 6] & (1L << value)) != 0 : Arrays.binarySearch(array, value) >= 0;
+        }
+
+        Chunk and(Chunk other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] = words[w] & other.words[w];
+                }
+                return ofWords(result).optimized();
+            }
+            if (words != null) {
+                return other.and(this);
+            }
+            char[] result = new char[Math.min(cardinality, other.cardinality)];
+            int n = 0;
+            if (other.words != null) {
+                for (char v : array) {
+                    if (other.contains(v)) {
+                        result[n++] = v;
+                    }
+                }
+            } else {
+                for (int i = 0, j = 0; i < array.length && j < other.array.length; ) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        result[n++] = array[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return ofArray(result, n);
+        }
+
+        int andCardinality(Chunk other) {
+            if (words != null && other.words != null) {
+                int cardinality = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    cardinality += Long.bitCount(words[w] & other.words[w]);
+                }
+                return cardinality;
+            }
+            if (words != null) {
+                return other.andCardinality(this);
+            }
+            int cardinality = 0;
+            if (other.words != null) {
+                for (char v : array) {
+                    if (other.contains(v)) {
+                        cardinality++;
+                    }
+                }
+            } else {
+                for (int i = 0, j = 0; i < array.length && j < other.array.length; ) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        cardinality++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return cardinality;
+        }
+
+        Chunk or(Chunk other) {
+            if (words == null && other.words == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] result = new char[cardinality + other.cardinality];
+                int n = 0;
+                int i = 0;
+                int j = 0;
+                while (i < array.length || j < other.array.length) {
+                    if (j == other.array.length || (i < array.length && array[i] < other.array[j])) {
+                        result[n++] = array[i++];
+                    } else if (i == array.length || array[i] > other.array[j]) {
+                        result[n++] = other.array[j++];
+                    } else {
+                        result[n++] = array[i++];
+                        j++;
+                    }
+                }
+                return ofArray(result, n);
+            }
+            long[] result = new long[WORDS];
+            orInto(result);
+            other.orInto(result);
+            return ofWords(result).optimized();
+        }
+
+        private void orInto(long[] bits) {
+            if (words != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] |= words[w];
+                }
+            } else {
+                for (char v : array) {
+                    bits[v >>> 6] |= 1L << v;
+                }
+            }
+        }
+
+        private void copyTo(char[] values) {
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        int copyTo(int[] values, int n, int high) {
+            if (array != null) {
+                for (char v : array) {
+                    values[n++] = high | v;
+                }
+                return n;
+            }
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[n++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds dictionary terms that a typed keyword is a misspelled prefix of: terms with a prefix within
+ * {@link #maxEdits(int)} Levenshtein edits of the keyword ("godfathr" finds "godfather", "hanx"
+ * finds "hanks"). The first letter must be typed correctly, as in most search engines' fuzzy
+ * matching: typos there are rare, and allowing them makes short keywords match most of the dictionary.
+ * Since the terms are sorted, the terms sharing a first letter are one contiguous id range, and
+ * every posting list is searched only inside that range.
+ * <p>
+ * Candidates come from a bigram index over the terms. One edit changes at most two of the keyword's
+ * bigrams, so a term within k edits must contain all but 2k of them; only those candidates pay for
+ * the bounded edit-distance check.
+ */
+final class FuzzyTermMatcher {
+
+    /** Marks the start of a word, so the first letter counts as a bigram of its own. */
+    private static final char START = '\u0002';
+
+    private final String[] terms;
+    private final Map<Integer, int[]> termsByBigram;
+
+    static final class Match {
+        final int term;
+        final int distance;
+
+        Match(int term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+
+    /** {@code terms} must be sorted; ids are positions in it. */
+    FuzzyTermMatcher(String[] terms) {
+        this.terms = terms;
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int t = 0; t < terms.length; t++) {
+            for (int bigram : distinctBigrams(terms[t])) {
+                lists.computeIfAbsent(bigram, b -> new ArrayList<>()).add(t);
+            }
+        }
+        this.termsByBigram = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Integer, List<Integer>> entry : lists.entrySet()) {
+            termsByBigram.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Edits tolerated for a keyword of the given length: none up to 3 characters, one up to 7, then
+     * two. Stricter than for whole words, because a short keyword with an edit is a prefix of a
+     * large part of the dictionary.
+     */
+    static int maxEdits(int length) {
+        return length <= 3 ? 0 : length <= 7 ? 1 : 2;
+    }
+
+    /**
+     * Every term with a prefix within {@link #maxEdits} of {@code keyword}, exact prefixes included.
+     * None for an empty keyword, which would otherwise be a prefix of every term.
+     */
+    List<Match> match(String keyword) {
+        if (keyword.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int maxEdits = maxEdits(keyword.length());
+        List<Match> matches = new ArrayList<>();
+        int[] row = new int[2 * (keyword.length() + maxEdits + 1)];
+        int[] bigrams = distinctBigrams(keyword);
+        int required = bigrams.length - 2 * maxEdits;
+        char first = keyword.charAt(0);
+        int from = lowerBound(String.valueOf(first));
+        int to = lowerBound(String.valueOf((char) (first + 1)));
+        if (required <= 0) {
+            for (int t = from; t < to; t++) {
+                addIfClose(matches, keyword, t, maxEdits, row);
+            }
+            return matches;
+        }
+
+        int[] shared = new int[to - from];
+        for (int bigram : bigrams) {
+            int[] postings = termsByBigram.get(bigram);
+            if (postings == null) {
+                continue;
+            }
+            int start = Arrays.binarySearch(postings, from);
+            for (int p = start < 0 ? -start - 1 : start; p < postings.length && postings[p] < to; p++) {
+                int t = postings[p];
+                if (++shared[t - from] == required) {
+                    addIfClose(matches, keyword, t, maxEdits, row);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /** First term id whose term is not less than {@code key}. */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void addIfClose(List<Match> matches, String keyword, int t, int maxEdits, int[] row) {
+        if (terms[t].length() < keyword.length() - maxEdits) {
+            return;
+        }
+        int distance = prefixDistance(keyword, terms[t], maxEdits, row);
+        if (distance <= maxEdits) {
+            matches.add(new Match(t, distance));
+        }
+    }
+
+    /**
+     * The smallest edit distance between {@code keyword} and any prefix of {@code term}, or
+     * {@code maxEdits + 1} once it is certain to exceed {@code maxEdits}. {@code rows} is scratch
+     * space for two DP rows of up to keyword.length() + maxEdits + 1 entries.
+     */
+    static int prefixDistance(String keyword, String term, int maxEdits, int[] rows) {
+        int columns = Math.min(term.length(), keyword.length() + maxEdits);
+        int width = columns + 1;
+        int previous = 0;       // offsets of the two DP rows inside rows
+        int current = width;
+        for (int j = 0; j <= columns; j++) {
+            rows[previous + j] = j;
+        }
+        for (int i = 1; i <= keyword.length(); i++) {
+            rows[current] = i;
+            int rowMin = i;
+            char k = keyword.charAt(i - 1);
+            for (int j = 1; j <= columns; j++) {
+                int substitution = rows[previous + j - 1] + (k == term.charAt(j - 1) ? 0 : 1);
+                int value = Math.min(substitution, Math.min(rows[previous + j], rows[current + j - 1]) + 1);
+                rows[current + j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int best = maxEdits + 1;
+        for (int j = 0; j <= columns; j++) {
+            best = Math.min(best, rows[previous + j]);
+        }
+        return best;
+    }
+
+    /**
+     * The word's bigrams (with a leading START marker) packed into ints, sorted, duplicates removed.
+     */
+    private static int[] distinctBigrams(String word) {
+        int[] bigrams = new int[word.length()];
+        char previous = START;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            bigrams[i] = (previous << 16) | c;
+            previous = c;
+        }
+        Arrays.sort(bigrams);
+        int distinct = 0;
+        for (int i = 0; i < bigrams.length; i++) {
+            if (i == 0 || bigrams[i] != bigrams[i - 1]) {
+                bigrams[distinct++] = bigrams[i];
+            }
+        }
+        return Arrays.copyOf(bigrams, distinct);
+    }
+}
@@ -0,0 +1,594 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable inverted index over tokenized documents (movie titles, addressed by catalog ordinal)
+ * with prefix matching and BM25 ranking.
+ * <p>
+ * The dictionary is a sorted term array, so the terms a keyword is a prefix of form one contiguous
+ * range found by binary search. A query matches a document when every keyword prefixes one of its
+ * words, the same rule as {@code +kw*} in BOOLEAN MODE. A document's score is the sum over keywords
+ * of the best BM25 weight among the terms that keyword expanded to.
+ * <p>
+ * The fuzzy variants also expand a keyword to misspelled prefixes ({@link FuzzyTermMatcher});
+ * a term reached through d edits contributes its weight divided by 1 + d.
+ */
+public final class SearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final String[][] docWords;
+    private final String[] terms;
+    private final int[][] postings;        // doc ordinals, ascending
+    private final int[][] frequencies;     // term frequency, parallel to postings
+    private final long totalLength;
+    private final double averageLength;
+    private volatile FuzzyTermMatcher fuzzyMatcher;   // built on first fuzzy query
+
+    private SearchIndex(String[][] docWords, String[] terms, int[][] postings, int[][] frequencies, long totalLength) {
+        this.docWords = docWords;
+        this.terms = terms;
+        this.postings = postings;
+        this.frequencies = frequencies;
+        this.totalLength = totalLength;
+        this.averageLength = docWords.length == 0 ? 1.0 : Math.max(1.0, (double) totalLength / docWords.length);
+    }
+
+    /**
+     * Indexes {@code docWords[d]}, the lower-cased words of document d.
+     */
+    public static SearchIndex build(String[][] docWords) {
+        TreeMap<String, PostingBuilder> byTerm = new TreeMap<>();
+        long totalLength = 0;
+        for (int d = 0; d < docWords.length; d++) {
+            totalLength += docWords[d].length;
+            addDocument(byTerm, d, docWords[d]);
+        }
+        return fromTermMap(docWords, byTerm, totalLength);
+    }
+
+    /**
+     * An index over {@code newDocWords} that reuses this one's posting lists for every term whose
+     * documents did not change. Documents keep their ordinals; new ones are appended after the old.
+     */
+    public SearchIndex update(String[][] newDocWords) {
+        List<Integer> changed = new ArrayList<>();
+        for (int d = 0; d < newDocWords.length; d++) {
+            if (d >= docWords.length || !Arrays.equals(docWords[d], newDocWords[d])) {
+                changed.add(d);
+            }
+        }
+        for (int d = newDocWords.length; d < docWords.length; d++) {
+            changed.add(d);
+        }
+        if (changed.isEmpty()) {
+            return new SearchIndex(newDocWords, terms, postings, frequencies, totalLength);
+        }
+
+        // Rebuild the posting lists of every term a changed document had or has now.
+        TreeMap<String, PostingBuilder> touched = new TreeMap<>();
+        BitSet changedDocs = new BitSet();
+        long totalLength = this.totalLength;
+        for (int d : changed) {
+            changedDocs.set(d);
+            if (d < docWords.length) {
+                totalLength -= docWords[d].length;
+                for (String word : docWords[d]) {
+                    touched.putIfAbsent(word, new PostingBuilder());
+                }
+            }
+            if (d < newDocWords.length) {
+                totalLength += newDocWords[d].length;
+                for (String word : newDocWords[d]) {
+                    touched.putIfAbsent(word, new PostingBuilder());
+                }
+            }
+        }
+        for (Map.Entry<String, PostingBuilder> entry : touched.entrySet()) {
+            int t = Arrays.binarySearch(terms, entry.getKey());
+            if (t < 0) {
+                continue;
+            }
+            PostingBuilder posting = entry.getValue();
+            for (int i = 0; i < postings[t].length; i++) {
+                if (!changedDocs.get(postings[t][i])) {
+                    posting.add(postings[t][i], frequencies[t][i]);
+                }
+            }
+        }
+        for (int d : changed) {
+            if (d < newDocWords.length) {
+                addDocument(touched, d, newDocWords[d]);
+            }
+        }
+        for (PostingBuilder posting : touched.values()) {
+            posting.sort();
+        }
+
+        // Merge the untouched terms with the rebuilt ones, dropping terms left without documents.
+        TreeMap<String, PostingBuilder> merged = new TreeMap<>();
+        for (int t = 0; t < terms.length; t++) {
+            if (!touched.containsKey(terms[t])) {
+                merged.put(terms[t], new PostingBuilder(postings[t], frequencies[t]));
+            }
+        }
+        for (Map.Entry<String, PostingBuilder> entry : touched.entrySet()) {
+            if (entry.getValue().size > 0) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return fromTermMap(newDocWords, merged, totalLength);
+    }
+
+    public int documentCount() {
+        return docWords.length;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Documents containing, for every keyword, a word it is a prefix of; null when there are no
+     * keywords (no constraint).
+     */
+    public BitSet matchAll(String[] keywords) {
+        if (keywords.length == 0) {
+            return null;
+        }
+        return intersect(prefixExpansions(keywords));
+    }
+
+    /**
+     * {@link #matchAll} with typo tolerance.
+     */
+    public BitSet matchAllFuzzy(String[] keywords) {
+        if (keywords.length == 0) {
+            return null;
+        }
+        return intersect(fuzzyExpansions(keywords));
+    }
+
+    /**
+     * Documents matching every expansion. Filters need no scores, so each keyword's postings are
+     * OR-ed into a bitmap and the bitmaps AND-ed, which is cheaper than scoring wide expansions.
+     */
+    private BitSet intersect(Expansion[] expansions) {
+        BitSet matches = null;
+        BitSet keywordMatches = new BitSet(docWords.length);
+        for (Expansion expansion : expansions) {
+            keywordMatches.clear();
+            for (int t : expansion.terms) {
+                for (int d : postings[t]) {
+                    keywordMatches.set(d);
+                }
+            }
+            if (matches == null) {
+                matches = (BitSet) keywordMatches.clone();
+            } else {
+                matches.and(keywordMatches);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Up to {@code limit} matching documents, best BM25 score first; ties keep ordinal order.
+     */
+    public int[] search(String[] keywords, int limit) {
+        if (keywords.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        return rank(score(prefixExpansions(keywords)), limit);
+    }
+
+    /**
+     * {@link #search} with typo tolerance; corrected matches weigh less than exact ones.
+     */
+    public int[] searchFuzzy(String[] keywords, int limit) {
+        if (keywords.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        return rank(score(fuzzyExpansions(keywords)), limit);
+    }
+
+    /**
+     * The keywords with every one that prefixes no term replaced by the closest term (fewest edits,
+     * then most documents), joined by spaces; null when nothing needed correcting or some keyword
+     * has no close term.
+     */
+    public String correct(String[] keywords) {
+        StringBuilder corrected = new StringBuilder();
+        boolean changed = false;
+        for (String keyword : keywords) {
+            String replacement = keyword;
+            int[] range = prefixRange(keyword);
+            if (range[0] == range[1]) {
+                FuzzyTermMatcher.Match best = null;
+                for (FuzzyTermMatcher.Match match : fuzzyMatcher().match(keyword)) {
+                    if (best == null || match.distance < best.distance
+                            || (match.distance == best.distance && postings[match.term].length > postings[best.term].length)) {
+                        best = match;
+                    }
+                }
+                if (best == null) {
+                    return null;
+                }
+                replacement = terms[best.term];
+                changed = true;
+            }
+            if (corrected.length() > 0) {
+                corrected.append(' ');
+            }
+            corrected.append(replacement);
+        }
+        return changed ? corrected.toString() : null;
+    }
+
+    /**
+     * The best {@code limit} documents, highest score first, ties by ordinal. Keeps a bounded
+     * min-heap of the current best instead of sorting every match.
+     */
+    private static int[] rank(Scores scores, int limit) {
+        int k = Math.min(limit, scores.docs.length);
+        int[] heap = new int[k];    // positions into scores, worst at the root
+        int size = 0;
+        for (int i = 0; i < scores.docs.length; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (better(scores, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = scores.docs[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i, scores);
+        }
+        return result;
+    }
+
+    private static boolean better(Scores scores, int a, int b) {
+        int c = Double.compare(scores.total[a], scores.total[b]);
+        return c != 0 ? c > 0 : scores.docs[a] < scores.docs[b];
+    }
+
+    private static void siftUp(int[] heap, int i, Scores scores) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(scores, heap[parent], heap[i])) {
+                break;
+            }
+            int swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, Scores scores) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && better(scores, heap[worst], heap[left])) worst = left;
+            if (right < size && better(scores, heap[worst], heap[right])) worst = right;
+            if (worst == i) {
+                return;
+            }
+            int swap = heap[worst];
+            heap[worst] = heap[i];
+            heap[i] = swap;
+            i = worst;
+        }
+    }
+
+    private static final class Scores {
+        static final Scores EMPTY = new Scores(new int[0], new double[0]);
+
+        final int[] docs;           // matching documents, ascending
+        final double[] total;       // score of docs[i]
+
+        Scores(int[] docs, double[] total) {
+            this.docs = docs;
+            this.total = total;
+        }
+    }
+
+    /**
+     * The terms one keyword stands for, each with the factor its BM25 weight is multiplied by.
+     */
+    private static final class Expansion {
+        final int[] terms;
+        final double[] factors;
+
+        Expansion(int[] terms, double[] factors) {
+            this.terms = terms;
+            this.factors = factors;
+        }
+    }
+
+    private Expansion[] prefixExpansions(String[] keywords) {
+        Expansion[] expansions = new Expansion[keywords.length];
+        for (int k = 0; k < keywords.length; k++) {
+            int[] range = prefixRange(keywords[k]);
+            int[] expanded = new int[range[1] - range[0]];
+            double[] factors = new double[expanded.length];
+            for (int i = 0; i < expanded.length; i++) {
+                expanded[i] = range[0] + i;
+                factors[i] = 1.0;
+            }
+            expansions[k] = new Expansion(expanded, factors);
+        }
+        return expansions;
+    }
+
+    private Expansion[] fuzzyExpansions(String[] keywords) {
+        FuzzyTermMatcher matcher = fuzzyMatcher();
+        Expansion[] expansions = new Expansion[keywords.length];
+        for (int k = 0; k < keywords.length; k++) {
+            List<FuzzyTermMatcher.Match> matches = matcher.match(keywords[k]);
+            int[] expanded = new int[matches.size()];
+            double[] factors = new double[expanded.length];
+            for (int i = 0; i < expanded.length; i++) {
+                expanded[i] = matches.get(i).term;
+                factors[i] = 1.0 / (1 + matches.get(i).distance);
+            }
+            expansions[k] = new Expansion(expanded, factors);
+        }
+        return expansions;
+    }
+
+    private FuzzyTermMatcher fuzzyMatcher() {
+        FuzzyTermMatcher matcher = fuzzyMatcher;
+        if (matcher == null) {
+            // Racing threads may each build one; they are identical and the last write wins.
+            matcher = new FuzzyTermMatcher(terms);
+            fuzzyMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * Matching documents and their scores. Candidates come from the rarest keyword; every other
+     * keyword is then only looked up in that sorted candidate list, so the work and memory follow
+     * the posting lists touched rather than the catalog size.
+     */
+    private Scores score(Expansion[] expansions) {
+        int documentCount = docWords.length;
+        Integer[] order = new Integer[expansions.length];
+        long[] expansion = new long[expansions.length];
+        for (int k = 0; k < expansions.length; k++) {
+            order[k] = k;
+            for (int t : expansions[k].terms) {
+                expansion[k] += postings[t].length;
+            }
+            if (expansion[k] == 0) {
+                return Scores.EMPTY;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(expansion[a], expansion[b]));
+
+        // Rarest keyword: the union of its postings, best weight per document, in document order.
+        // Small unions are sorted; large ones go through a dense per-document array instead.
+        Expansion first = expansions[order[0]];
+        int size = (int) expansion[order[0]];
+        int[] docs;
+        double[] total;
+        int count = 0;
+        if (size > documentCount / 16) {
+            double[] byDoc = new double[documentCount];
+            for (int e = 0; e < first.terms.length; e++) {
+                int t = first.terms[e];
+                double idf = idf(postings[t].length, documentCount) * first.factors[e];
+                for (int p = 0; p < postings[t].length; p++) {
+                    int d = postings[t][p];
+                    byDoc[d] = Math.max(byDoc[d], idf * tfWeight(frequencies[t][p], docWords[d].length));
+                }
+            }
+            docs = new int[Math.min(size, documentCount)];
+            total = new double[docs.length];
+            for (int d = 0; d < documentCount; d++) {
+                if (byDoc[d] > 0) {
+                    docs[count] = d;
+                    total[count++] = byDoc[d];
+                }
+            }
+        } else {
+            long[] packed = new long[size];
+            double[] weights = new double[size];
+            int n = 0;
+            for (int e = 0; e < first.terms.length; e++) {
+                int t = first.terms[e];
+                double idf = idf(postings[t].length, documentCount) * first.factors[e];
+                for (int p = 0; p < postings[t].length; p++) {
+                    weights[n] = idf * tfWeight(frequencies[t][p], docWords[postings[t][p]].length);
+                    packed[n] = ((long) postings[t][p] << 32) | n;
+                    n++;
+                }
+            }
+            Arrays.sort(packed);
+            docs = new int[n];
+            total = new double[n];
+            for (int i = 0; i < n; i++) {
+                int d = (int) (packed[i] >>> 32);
+                double weight = weights[(int) packed[i]];
+                if (count > 0 && docs[count - 1] == d) {
+                    total[count - 1] = Math.max(total[count - 1], weight);
+                } else {
+                    docs[count] = d;
+                    total[count] = weight;
+                    count++;
+                }
+            }
+        }
+
+        // Every other keyword: keep the candidates it matches, adding its best weight.
+        for (int i = 1; i < order.length && count > 0; i++) {
+            Expansion keyword = expansions[order[i]];
+            double[] best = new double[count];
+            for (int e = 0; e < keyword.terms.length; e++) {
+                int t = keyword.terms[e];
+                double idf = idf(postings[t].length, documentCount) * keyword.factors[e];
+                int[] termDocs = postings[t];
+                int from = 0;
+                if (termDocs.length > 4 * count) {
+                    // Long posting list, few candidates: search the list for each candidate.
+                    for (int c = 0; c < count && from < termDocs.length; c++) {
+                        int p = Arrays.binarySearch(termDocs, from, termDocs.length, docs[c]);
+                        if (p < 0) {
+                            from = -p - 1;
+                            continue;
+                        }
+                        best[c] = Math.max(best[c], idf * tfWeight(frequencies[t][p], docWords[docs[c]].length));
+                        from = p + 1;
+                    }
+                    continue;
+                }
+                for (int p = 0; p < termDocs.length && from < count; p++) {
+                    int c = Arrays.binarySearch(docs, from, count, termDocs[p]);
+                    if (c < 0) {
+                        from = -c - 1;
+                        continue;
+                    }
+                    best[c] = Math.max(best[c], idf * tfWeight(frequencies[t][p], docWords[termDocs[p]].length));
+                    from = c + 1;
+                }
+            }
+            int kept = 0;
+            for (int c = 0; c < count; c++) {
+                if (best[c] > 0) {
+                    docs[kept] = docs[c];
+                    total[kept] = total[c] + best[c];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+        return new Scores(Arrays.copyOf(docs, count), Arrays.copyOf(total, count));
+    }
+
+    /**
+     * [from, to) of the terms that start with {@code prefix}.
+     */
+    private int[] prefixRange(String prefix) {
+        return new int[] {lowerBound(prefix), lowerBound(prefix + Character.MAX_VALUE)};
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double idf(int documentFrequency, int documentCount) {
+        return Math.log(1.0 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double tfWeight(int tf, int length) {
+        return tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private static void addDocument(TreeMap<String, PostingBuilder> byTerm, int d, String[] words) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String word : words) {
+            counts.merge(word, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            byTerm.computeIfAbsent(entry.getKey(), w -> new PostingBuilder()).add(d, entry.getValue());
+        }
+    }
+
+    private static SearchIndex fromTermMap(String[][] docWords, TreeMap<String, PostingBuilder> byTerm, long totalLength) {
+        String[] terms = new String[byTerm.size()];
+        int[][] postings = new int[terms.length][];
+        int[][] frequencies = new int[terms.length][];
+        int t = 0;
+        for (Map.Entry<String, PostingBuilder> entry : byTerm.entrySet()) {
+            terms[t] = entry.getKey();
+            postings[t] = entry.getValue().docs();
+            frequencies[t] = entry.getValue().frequencies();
+            t++;
+        }
+        return new SearchIndex(docWords, terms, postings, frequencies, totalLength);
+    }
+
+    /**
+     * Growable (doc, frequency) list. Built in ascending doc order except during
+     * {@link #update}, which calls {@link #sort()} before use.
+     */
+    private static final class PostingBuilder {
+        private int[] docs;
+        private int[] frequencies;
+        private int size;
+        private final int[] shared;
+        private final int[] sharedFrequencies;
+
+        PostingBuilder() {
+            this.docs = new int[4];
+            this.frequencies = new int[4];
+            this.shared = null;
+            this.sharedFrequencies = null;
+        }
+
+        /** Wraps an unchanged posting list so it is reused rather than copied. */
+        PostingBuilder(int[] docs, int[] frequencies) {
+            this.shared = docs;
+            this.sharedFrequencies = frequencies;
+            this.size = docs.length;
+        }
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        void sort() {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long) docs[i] << 32) | frequencies[i];
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < size; i++) {
+                docs[i] = (int) (packed[i] >>> 32);
+                frequencies[i] = (int) packed[i];
+            }
+        }
+
+        int[] docs() {
+            return shared != null ? shared : Arrays.copyOf(docs, size);
+        }
+
+        int[] frequencies() {
+            return shared != null ? sharedFrequencies : Arrays.copyOf(frequencies, size);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Immutable trigram index over short lower-cased strings (director and star names, addressed by
+ * catalog ordinal) answering substring queries, the in-memory counterpart of {@code LIKE '%x%'}.
+ * <p>
+ * Every string containing the needle contains all of the needle's trigrams, so the candidates are
+ * the intersection of those trigrams' posting lists, shortest first; a verification pass then drops
+ * the few that have the trigrams in another order. Needles under three characters have no trigram
+ * and fall back to scanning every value.
+ */
+public final class TrigramIndex {
+
+    private final String[] values;
+    private final long[] grams;         // three chars packed into the low 48 bits, ascending
+    private final int[][] postings;     // value ordinals, ascending, parallel to grams
+
+    private TrigramIndex(String[] values, long[] grams, int[][] postings) {
+        this.values = values;
+        this.grams = grams;
+        this.postings = postings;
+    }
+
+    /**
+     * Indexes {@code values[i]}, which must already be lower-cased; null values match nothing.
+     */
+    public static TrigramIndex build(String[] values) {
+        Map<Long, IntList> byGram = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            addValue(byGram, i, values[i]);
+        }
+        TreeMap<Long, int[]> sorted = new TreeMap<>();
+        for (Map.Entry<Long, IntList> entry : byGram.entrySet()) {
+            sorted.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return fromGramMap(values, sorted);
+    }
+
+    /**
+     * An index over {@code newValues} that reuses this one's posting lists for every trigram whose
+     * values did not change. Values keep their ordinals; new ones are appended after the old.
+     */
+    public TrigramIndex update(String[] newValues) {
+        BitSet changed = new BitSet();
+        for (int i = 0; i < Math.max(values.length, newValues.length); i++) {
+            if (i >= values.length || i >= newValues.length || !Objects.equals(values[i], newValues[i])) {
+                changed.set(i);
+            }
+        }
+        if (changed.isEmpty()) {
+            return new TrigramIndex(newValues, grams, postings);
+        }
+
+        // Rebuild the posting lists of every trigram a changed value had or has now.
+        Map<Long, IntList> touched = new HashMap<>();
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            if (i < values.length) {
+                for (long gram : distinctGrams(values[i])) {
+                    touched.putIfAbsent(gram, new IntList());
+                }
+            }
+            if (i < newValues.length) {
+                for (long gram : distinctGrams(newValues[i])) {
+                    touched.putIfAbsent(gram, new IntList());
+                }
+            }
+        }
+        for (Map.Entry<Long, IntList> entry : touched.entrySet()) {
+            int g = Arrays.binarySearch(grams, entry.getKey());
+            if (g < 0) {
+                continue;
+            }
+            for (int i : postings[g]) {
+                if (!changed.get(i)) {
+                    entry.getValue().add(i);
+                }
+            }
+        }
+        for (int i = changed.nextSetBit(0); i >= 0 && i < newValues.length; i = changed.nextSetBit(i + 1)) {
+            addValue(touched, i, newValues[i]);
+        }
+
+        TreeMap<Long, int[]> merged = new TreeMap<>();
+        for (int g = 0; g < grams.length; g++) {
+            if (!touched.containsKey(grams[g])) {
+                merged.put(grams[g], postings[g]);
+            }
+        }
+        for (Map.Entry<Long, IntList> entry : touched.entrySet()) {
+            if (entry.getValue().size > 0) {
+                int[] posting = entry.getValue().toArray();
+                Arrays.sort(posting);
+                merged.put(entry.getKey(), posting);
+            }
+        }
+        return fromGramMap(newValues, merged);
+    }
+
+    public int gramCount() {
+        return grams.length;
+    }
+
+    /**
+     * Ordinals of the values containing {@code needle}, which must be lower-cased.
+     */
+    public BitSet containing(String needle) {
+        BitSet matches = new BitSet(values.length);
+        if (needle.length() < 3) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null && values[i].contains(needle)) {
+                    matches.set(i);
+                }
+            }
+            return matches;
+        }
+
+        long[] needleGrams = distinctGrams(needle);
+        int[][] lists = new int[needleGrams.length][];
+        for (int k = 0; k < needleGrams.length; k++) {
+            int g = Arrays.binarySearch(grams, needleGrams[k]);
+            if (g < 0) {
+                return matches;
+            }
+            lists[k] = postings[g];
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        int[] candidates = lists[0].clone();
+        int count = candidates.length;
+        for (int k = 1; k < lists.length && count > 0; k++) {
+            int kept = 0;
+            int from = 0;
+            for (int c = 0; c < count && from < lists[k].length; c++) {
+                int p = Arrays.binarySearch(lists[k], from, lists[k].length, candidates[c]);
+                if (p >= 0) {
+                    candidates[kept++] = candidates[c];
+                    from = p + 1;
+                } else {
+                    from = -p - 1;
+                }
+            }
+            count = kept;
+        }
+        for (int c = 0; c < count; c++) {
+            if (values[candidates[c]].contains(needle)) {
+                matches.set(candidates[c]);
+            }
+        }
+        return matches;
+    }
+
+    private static void addValue(Map<Long, IntList> byGram, int i, String value) {
+        for (long gram : distinctGrams(value)) {
+            byGram.computeIfAbsent(gram, g -> new IntList()).add(i);
+        }
+    }
+
+    private static TrigramIndex fromGramMap(String[] values, TreeMap<Long, int[]> byGram) {
+        long[] grams = new long[byGram.size()];
+        int[][] postings = new int[grams.length][];
+        int g = 0;
+        for (Map.Entry<Long, int[]> entry : byGram.entrySet()) {
+            grams[g] = entry.getKey();
+            postings[g] = entry.getValue();
+            g++;
+        }
+        return new TrigramIndex(values, grams, postings);
+    }
+
+    /**
+     * The value's trigrams packed into longs, sorted, duplicates removed; none for null or short values.
+     */
+    private static long[] distinctGrams(String value) {
+        if (value == null || value.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[value.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static final class IntList {
+        int[] items = new int[4];
+        int size;
+
+        void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
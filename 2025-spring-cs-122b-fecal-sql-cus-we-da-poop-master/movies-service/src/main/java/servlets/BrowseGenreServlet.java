@@ -1,22 +1,21 @@
 package servlets;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import db.DataSourceFactory;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import javax.sql.DataSource;
-import javax.naming.Context;
+import json.JsonWriter;
 
 @WebServlet(name = "BrowseGenreServlet", urlPatterns = "/api/genres")
 public class BrowseGenreServlet extends HttpServlet {
@@ -25,54 +24,13 @@ public class BrowseGenreServlet extends HttpServlet {
 
     @Override
     public void init() {
-        try {
-            String dbHost = System.getenv("DB_SLAVE_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
-
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
-
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
-
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
-
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
-
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
-        }
+        this.dataSource = DataSourceFactory.getReadDataSource();
     }
 
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
 
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
+        JsonWriter json = JsonWriter.forResponse(response);
 
         String query = "SELECT name FROM genres ORDER BY name ASC";
 
@@ -81,30 +39,33 @@ public class BrowseGenreServlet extends HttpServlet {
         ResultSet resultSet = null;
 
         try {
-            connection = dataSource.getConnection();
-            statement = connection.prepareStatement(query);
-            resultSet = statement.executeQuery();
-
-            List<String> genres = new ArrayList<>();
-            while (resultSet.next()) {
-                genres.add(resultSet.getString("name"));
+            List<String> genres;
+            Catalog catalog = CatalogHolder.forRequest(request);
+            if (catalog != null) {
+                genres = catalog.genreNames();
+            } else {
+                connection = dataSource.getConnection();
+                statement = connection.prepareStatement(query);
+                resultSet = statement.executeQuery();
+
+                genres = new ArrayList<>();
+                while (resultSet.next()) {
+                    genres.add(resultSet.getString("name"));
+                }
             }
 
-            out.write("{\"genres\":[");
-            for (int i = 0; i < genres.size(); i++) {
-                if (i > 0) out.write(",");
-                out.write("\"" + escapeJson(genres.get(i)) + "\"");
+            json.beginObject().name("genres").beginArray();
+            for (String genre : genres) {
+                json.value(genre);
             }
-            out.write("]}");
+            json.endArray().endObject();
 
         } catch (SQLException e) {
             request.getServletContext().log("SQL Error fetching genres: ", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.write("{\"error\":\"Database error occurred fetching genres.\"}");
+            writeError(response, json, "Database error occurred fetching genres.");
         } catch (Exception e) {
             request.getServletContext().log("Error fetching genres: ", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.write("{\"error\":\"An internal server error occurred.\"}");
+            writeError(response, json, "An internal server error occurred.");
         } finally {
             try {
                 if (resultSet != null) resultSet.close();
@@ -121,14 +82,14 @@ public class BrowseGenreServlet extends HttpServlet {
             } catch (SQLException e) {
                 request.getServletContext().log("Error closing Connection", e);
             }
-            if (out != null) {
-                out.close();
-            }
+            json.close();
         }
     }
 
-    private String escapeJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    private static void writeError(HttpServletResponse response, JsonWriter json, String message) throws IOException {
+        if (json.reset()) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            json.beginObject().name("error").value(message).endObject();
+        }
     }
-}
\ No newline at end of file
+}
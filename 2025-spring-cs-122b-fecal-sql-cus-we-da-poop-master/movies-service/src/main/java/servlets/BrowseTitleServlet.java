@@ -5,7 +5,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import json.JsonWriter;
 
 @WebServlet(name = "BrowseTitleServlet", urlPatterns = "/api/title-initials")
 public class BrowseTitleServlet extends HttpServlet {
@@ -14,9 +14,6 @@ public class BrowseTitleServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
 
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-
         String[] initials = {
                 "0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
                 "A", "B", "C", "D", "E", "F", "G", "H", "I", "J",
@@ -24,13 +21,12 @@ public class BrowseTitleServlet extends HttpServlet {
                 "U", "V", "W", "X", "Y", "Z", "*"
         };
 
-        out.write("{\"initials\":[");
-        for (int i = 0; i < initials.length; i++) {
-            if (i > 0) out.write(",");
-            out.write("\"" + initials[i] + "\"");
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("initials").beginArray();
+            for (String initial : initials) {
+                json.value(initial);
+            }
+            json.endArray().endObject();
         }
-        out.write("]}");
-
-        out.close();
     }
 }
@@ -1,6 +1,8 @@
 package servlets;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
+import catalog.CatalogChange;
+import db.DataSourceFactory;
+import db.ReadYourWrites;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
@@ -9,15 +11,12 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import json.JsonWriter;
 
-import javax.naming.Context;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import javax.sql.DataSource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -27,6 +26,7 @@ import java.sql.CallableStatement;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,46 +38,7 @@ public class DashboardServlet extends HttpServlet {
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
-        try {
-            String dbHost = System.getenv("DB_MASTER_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
-
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
-
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
-
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
-
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
-
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
-        }
+        this.dataSource = DataSourceFactory.getWriteDataSource();
     }
 
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
@@ -90,9 +51,7 @@ public class DashboardServlet extends HttpServlet {
         if (path.startsWith("/api/dashboard/")) {
             if (session == null || session.getAttribute("employeeEmail") == null) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.setContentType("application/json");
-                response.setCharacterEncoding("UTF-8");
-                response.getWriter().write("{\"success\": false, \"message\": \"Authentication required. Please login.\"}");
+                JsonWriter.write(response, result(false, "Authentication required. Please login."));
                 return;
             }
         }
@@ -126,9 +85,7 @@ public class DashboardServlet extends HttpServlet {
         HttpSession session = request.getSession(false);
         if (session == null || session.getAttribute("employeeEmail") == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.setContentType("application/json");
-            response.setCharacterEncoding("UTF-8");
-            response.getWriter().write("{\"success\": false, \"message\": \"Authentication required. Please login.\"}");
+            JsonWriter.write(response, result(false, "Authentication required. Please login."));
             return;
         }
 
@@ -146,16 +103,15 @@ public class DashboardServlet extends HttpServlet {
             handleAddStar(request, response, requestBody);
         } else if (path.equals("/api/dashboard/add-movie")) {
             handleAddMovie(request, response, requestBody);
+        } else if (path.equals("/api/dashboard/rebuild-star-popularity")) {
+            handleRebuildStarPopularity(request, response);
         } else {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, "The requested API endpoint was not found.");
         }
     }
 
     private void handleAddStar(HttpServletRequest request, HttpServletResponse response, String requestBody) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
-        String jsonResponse;
+        Map<String, Object> result;
 
         String starName = null;
         Integer birthYear = null;
@@ -176,18 +132,14 @@ public class DashboardServlet extends HttpServlet {
                 }
             }
         } catch (Exception e) {
-            jsonResponse = "{\"success\": false, \"message\": \"Error parsing request: Invalid JSON format.\"}";
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(jsonResponse);
-            out.flush();
+            JsonWriter.write(response, result(false, "Error parsing request: Invalid JSON format."));
             return;
         }
 
         if (starName == null || starName.trim().isEmpty()) {
-            jsonResponse = "{\"success\": false, \"message\": \"Star name is required.\"}";
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(jsonResponse);
-            out.flush();
+            JsonWriter.write(response, result(false, "Star name is required."));
             return;
         }
 
@@ -202,10 +154,8 @@ public class DashboardServlet extends HttpServlet {
                 checkStmt.setString(1, starName);
                 try (ResultSet rs = checkStmt.executeQuery()) {
                     if (rs.next()) {
-                        jsonResponse = "{\"success\": false, \"message\": \"Star with this name already exists.\"}";
                         response.setStatus(HttpServletResponse.SC_CONFLICT);
-                        out.write(jsonResponse);
-                        out.flush();
+                        JsonWriter.write(response, result(false, "Star with this name already exists."));
                         return;
                     }
                 }
@@ -221,6 +171,7 @@ public class DashboardServlet extends HttpServlet {
             }
 
 
+            conn.setAutoCommit(false);
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, nextStarId);
                 pstmt.setString(2, starName);
@@ -233,29 +184,40 @@ public class DashboardServlet extends HttpServlet {
                 int affectedRows = pstmt.executeUpdate();
 
                 if (affectedRows > 0) {
-                    jsonResponse = "{\"success\": true, \"message\": \"Star '" + starName + "' added successfully with ID " + nextStarId + ".\", \"starId\": \"" + nextStarId + "\"}";
+                    try (PreparedStatement countStmt = conn.prepareStatement(
+                            "INSERT IGNORE INTO star_movie_counts (starId, movieCount) VALUES (?, 0)")) {
+                        countStmt.setString(1, nextStarId);
+                        countStmt.executeUpdate();
+                    }
+                    CatalogChange.record(conn, CatalogChange.STAR, nextStarId);
+                    conn.commit();
+                    ReadYourWrites.recordCatalogWrite(request, conn);
+                    result = result(true, "Star '" + starName + "' added successfully with ID " + nextStarId + ".");
+                    result.put("starId", nextStarId);
                 } else {
-                    jsonResponse = "{\"success\": false, \"message\": \"Failed to add star. No rows affected.\"}";
+                    conn.rollback();
+                    result = result(false, "Failed to add star. No rows affected.");
                     response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            jsonResponse = "{\"success\": false, \"message\": \"Database error while adding star: " + e.getMessage() + "\"}";
+            result = result(false, "Database error while adding star: " + e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
-            jsonResponse = "{\"success\": false, \"message\": \"An unexpected error occurred: " + e.getMessage() + "\"}";
+            result = result(false, "An unexpected error occurred: " + e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
 
-        out.write(jsonResponse);
-        out.flush();
+        JsonWriter.write(response, result);
     }
 
     private void handleAddMovie(HttpServletRequest request, HttpServletResponse response, String requestBody) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
-        String jsonResponse;
+        Map<String, Object> result;
 
         String title = null;
         Integer year = null;
@@ -282,10 +244,8 @@ public class DashboardServlet extends HttpServlet {
                 }
             }
         } catch (Exception e) {
-            jsonResponse = "{\"success\": false, \"message\": \"Error parsing request: Invalid JSON format.\"}";
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(jsonResponse);
-            out.flush();
+            JsonWriter.write(response, result(false, "Error parsing request: Invalid JSON format."));
             return;
         }
 
@@ -294,10 +254,8 @@ public class DashboardServlet extends HttpServlet {
                 director == null || director.trim().isEmpty() ||
                 starName == null || starName.trim().isEmpty() ||
                 genreName == null || genreName.trim().isEmpty()) {
-            jsonResponse = "{\"success\": false, \"message\": \"All movie fields (title, year, director, star name, genre name) are required.\"}";
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.write(jsonResponse);
-            out.flush();
+            JsonWriter.write(response, result(false, "All movie fields (title, year, director, star name, genre name) are required."));
             return;
         }
 
@@ -321,9 +279,11 @@ public class DashboardServlet extends HttpServlet {
             String procedureMessage = cstmt.getString(7);
 
             if (newMovieId != null && !newMovieId.trim().isEmpty()) {
-                jsonResponse = "{\"success\": true, \"message\": \"" + escapeJsonString(procedureMessage != null ? procedureMessage : "Movie added successfully!") + "\", \"movieId\": \"" + escapeJsonString(newMovieId) + "\"}";
+                ReadYourWrites.recordCatalogWrite(request, conn);
+                result = result(true, procedureMessage != null ? procedureMessage : "Movie added successfully!");
+                result.put("movieId", newMovieId);
             } else {
-                jsonResponse = "{\"success\": false, \"message\": \"" + escapeJsonString(procedureMessage != null ? procedureMessage : "Failed to add movie.") + "\"}";
+                result = result(false, procedureMessage != null ? procedureMessage : "Failed to add movie.");
                 if (procedureMessage != null && procedureMessage.toLowerCase().contains("duplicate")) {
                     response.setStatus(HttpServletResponse.SC_CONFLICT);
                 } else {
@@ -332,21 +292,51 @@ public class DashboardServlet extends HttpServlet {
             }
 
         } catch (SQLException e) {
-            jsonResponse = "{\"success\": false, \"message\": \"Database error while adding movie: " + e.getMessage() + "\"}";
+            result = result(false, "Database error while adding movie: " + e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
-            jsonResponse = "{\"success\": false, \"message\": \"An unexpected error occurred: " + e.getMessage() + "\"}";
+            result = result(false, "An unexpected error occurred: " + e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
 
-        out.write(jsonResponse);
-        out.flush();
+        JsonWriter.write(response, result);
+    }
+
+    /**
+     * Recomputes star_movie_counts and top_stars_per_movie from scratch in one transaction,
+     * e.g. after stars_in_movies was changed by hand. Cast order and every movie's top stars may
+     * change, so it is logged as a whole-catalog change: pods reload their snapshot and drop
+     * cached pages.
+     */
+    private void handleRebuildStarPopularity(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Map<String, Object> result;
+
+        try (Connection conn = dataSource.getConnection()) {
+            long start = System.currentTimeMillis();
+            conn.setAutoCommit(false);
+            try (CallableStatement cstmt = conn.prepareCall("{CALL rebuild_star_popularity()}")) {
+                cstmt.execute();
+                CatalogChange.record(conn, CatalogChange.ALL, null);
+                conn.commit();
+                ReadYourWrites.recordCatalogWrite(request, conn);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            getServletContext().log("Rebuilt star popularity tables in " + elapsed + " ms");
+            result = result(true, "Star popularity rebuilt in " + elapsed + " ms.");
+        } catch (SQLException e) {
+            result = result(false, "Database error while rebuilding star popularity: " + e.getMessage());
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+
+        JsonWriter.write(response, result);
     }
 
     private void handleGetMetadata(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
         Map<String, Object> jsonOutput = new HashMap<>();
         Map<String, List<Map<String, String>>> metadataMap = new HashMap<>();
 
@@ -382,45 +372,34 @@ public class DashboardServlet extends HttpServlet {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
 
-        StringBuilder jsonResponseBuilder = new StringBuilder("{");
-        jsonResponseBuilder.append("\"success\":").append(jsonOutput.get("success")).append(",");
-        if (jsonOutput.containsKey("message")) {
-            jsonResponseBuilder.append("\"message\":\"").append(escapeJsonString(jsonOutput.get("message").toString())).append("\",");
-        }
-        jsonResponseBuilder.append("\"data\":{");
-        if (jsonOutput.get("success").equals(true) && metadataMap != null) {
-            boolean firstTable = true;
-            for (Map.Entry<String, List<Map<String, String>>> tableEntry : metadataMap.entrySet()) {
-                if (!firstTable) jsonResponseBuilder.append(",");
-                jsonResponseBuilder.append("\"").append(escapeJsonString(tableEntry.getKey())).append("\":[");
-                boolean firstAttr = true;
-                for (Map<String, String> attr : tableEntry.getValue()) {
-                    if (!firstAttr) jsonResponseBuilder.append(",");
-                    jsonResponseBuilder.append("{");
-                    jsonResponseBuilder.append("\"attributeName\":\"").append(escapeJsonString(attr.get("attributeName"))).append("\",");
-                    jsonResponseBuilder.append("\"type\":\"").append(escapeJsonString(attr.get("type"))).append("\"");
-                    jsonResponseBuilder.append("}");
-                    firstAttr = false;
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("success").value((boolean) jsonOutput.get("success"));
+            if (jsonOutput.containsKey("message")) {
+                json.name("message").value(jsonOutput.get("message").toString());
+            }
+            json.name("data").beginObject();
+            if (jsonOutput.get("success").equals(true)) {
+                for (Map.Entry<String, List<Map<String, String>>> tableEntry : metadataMap.entrySet()) {
+                    json.name(tableEntry.getKey()).beginArray();
+                    for (Map<String, String> attr : tableEntry.getValue()) {
+                        json.beginObject()
+                                .name("attributeName").value(attr.get("attributeName"))
+                                .name("type").value(attr.get("type"))
+                                .endObject();
+                    }
+                    json.endArray();
                 }
-                jsonResponseBuilder.append("]");
-                firstTable = false;
             }
+            json.endObject().endObject();
         }
-        jsonResponseBuilder.append("}}");
-
-        out.write(jsonResponseBuilder.toString());
-        out.flush();
     }
 
-    private String escapeJsonString(String str) {
-        if (str == null) return null;
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\b", "\\b")
-                .replace("\f", "\\f")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    /** {"success": ..., "message": ...}; callers add "starId"/"movieId" when there is one. */
+    private static Map<String, Object> result(boolean success, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", success);
+        result.put("message", message);
+        return result;
     }
 
     @Override
@@ -0,0 +1,73 @@
+package servlets;
+
+import models.IdBatch;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Optional mode (LOOKUP_JSON_ASSEMBLY=mysql) in which MySQL builds the /api/star and /api/movie
+ * documents itself with JSON_OBJECT and JSON_ARRAYAGG, one row per id, and the servlets copy each
+ * value to the response as it arrives instead of reading columns and writing them out again.
+ * <p>
+ * The documents hold the same values as the Java-assembled ones. They are MySQL's serialization,
+ * though: keys come out in its order and with a space after ':' and ','. Ratings are rounded to one
+ * decimal so that a FLOAT is not widened into digits it never had, which for the one-decimal
+ * ratings the table holds is the value {@link catalog.MovieJson#storedRating} gives the
+ * Java-assembled documents. The star query needs JSON_ARRAYAGG as a window function
+ * (MySQL 8.0.14+) to keep the filmography newest first.
+ */
+final class JsonAssembly {
+
+    static final boolean IN_DATABASE = "mysql".equalsIgnoreCase(stringEnv("LOOKUP_JSON_ASSEMBLY", "java"));
+
+    private JsonAssembly() {
+    }
+
+    /** (starId, document) for {@code slots} ids, with the document /api/star returns under "starInfo". */
+    static String starQuery(int slots) {
+        String window = "PARTITION BY s.id ORDER BY m.year DESC, m.title ASC";
+        return "SELECT starId, document FROM (" +
+                "    SELECT s.id AS starId, " +
+                "        JSON_OBJECT('starId', s.id, 'starName', s.name, 'birthYear', s.birthYear, 'movies', " +
+                "            CASE WHEN m.id IS NULL THEN JSON_ARRAY() ELSE JSON_ARRAYAGG(JSON_OBJECT( " +
+                "                'movieId', m.id, 'title', m.title, 'year', m.year, " +
+                "                'director', COALESCE(m.director, ''))) " +
+                "                OVER (" + window + " ROWS BETWEEN UNBOUNDED PRECEDING AND UNBOUNDED FOLLOWING) " +
+                "            END) AS document, " +
+                "        ROW_NUMBER() OVER (" + window + ") AS position " +
+                "    FROM stars s " +
+                "    LEFT JOIN stars_in_movies sm ON sm.starId = s.id " +
+                "    LEFT JOIN movies m ON sm.movieId = m.id " +
+                "    WHERE s.id IN (" + IdBatch.placeholders(slots) + ")" +
+                ") documents WHERE position = 1";
+    }
+
+    /** (id, document) for {@code slots} ids, with the movie object /api/movie returns. */
+    static String movieQuery(int slots) {
+        return "SELECT d.id, JSON_OBJECT('id', d.id, 'title', d.title, 'year', d.year, " +
+                "    'director', d.director, 'rating', ROUND(d.rating, 1), " +
+                "    'genres', COALESCE(d.genres, ''), 'stars', COALESCE(d.stars, '')) AS document " +
+                "FROM (" + SingleMovieServlet.detailQuery(slots) + ") d";
+    }
+
+    /**
+     * Adds every (id, document) row of {@code statement} to {@code documents}. The document bytes
+     * are taken as the server sent them: JSON values are utf8mb4, which is what the connection
+     * reads results in, so they are already the response's UTF-8.
+     */
+    static void read(PreparedStatement statement, Map<String, byte[]> documents) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                documents.put(resultSet.getString(1), resultSet.getBytes(2));
+            }
+        }
+    }
+
+    private static String stringEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+}
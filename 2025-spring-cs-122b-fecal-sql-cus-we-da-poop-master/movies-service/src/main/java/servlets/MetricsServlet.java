@@ -0,0 +1,19 @@
+package servlets;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import json.JsonWriter;
+import metrics.MetricsRegistry;
+
+import java.io.IOException;
+
+@WebServlet(name = "MetricsServlet", urlPatterns = "/api/metrics")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        JsonWriter.write(response, MetricsRegistry.snapshot());
+    }
+}
@@ -0,0 +1,134 @@
+package servlets;
+
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import db.DataSourceFactory;
+import db.ReadYourWrites;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import json.JsonWriter;
+import models.IdBatch;
+import utils.QueryShapeRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several /api/movie lookups in one request: {"movies": {id: movie, ...}, "missing": [id, ...]},
+ * with each movie the same object /api/movie returns, in the order the ids were given. Ids the
+ * catalog snapshot has are copied from its fragments; the rest are read together, with IN-list
+ * queries.
+ */
+@WebServlet(name = "MovieBatchServlet", urlPatterns = "/api/movies/batch")
+public class MovieBatchServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final QueryShapeRegistry QUERY_SHAPES = new QueryShapeRegistry("movie-batch");
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        IdBatch batch = IdBatch.fromRequest(request);
+        if (batch.isEmpty() || batch.isTooLarge()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            writeError(response, "Expected 1 to " + IdBatch.MAX_IDS + " movie ids in ids or id");
+            return;
+        }
+
+        Map<String, byte[]> movies = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Catalog catalog = CatalogHolder.forRequest(request);
+        for (String id : batch.getIds()) {
+            int m = catalog == null ? -1 : catalog.movie(id);
+            if (m >= 0) {
+                movies.put(id, catalog.detailJson(m));
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            try {
+                load(DataSourceFactory.getRoutingDataSource().readOnly(ReadYourWrites.getToken(request)), misses, movies);
+            } catch (SQLException e) {
+                request.getServletContext().log("SQL Error in MovieBatchServlet for ids: " + misses, e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                writeError(response, "Database error occurred. " + e.getMessage());
+                return;
+            } catch (Exception e) {
+                request.getServletContext().log("Error in MovieBatchServlet for ids: " + misses, e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                writeError(response, "An unexpected error occurred. " + e.getMessage());
+                return;
+            }
+        }
+
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("movies").beginObject();
+            List<String> missing = new ArrayList<>();
+            for (String id : batch.getIds()) {
+                byte[] movie = movies.get(id);
+                if (movie != null) {
+                    json.name(id).rawValue(movie);
+                } else {
+                    missing.add(id);
+                }
+            }
+            json.endObject().name("missing").value(missing).endObject();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doGet(request, response);
+    }
+
+    /**
+     * Adds the JSON of every id in {@code ids} (at most {@link IdBatch#MAX_IDS}) that exists to
+     * {@code movies}, with connections from {@code source}.
+     */
+    static void load(DataSource source, List<String> ids, Map<String, byte[]> movies) throws Exception {
+        if (JsonAssembly.IN_DATABASE) {
+            try (Connection connection = source.getConnection()) {
+                loadAssembled(connection, ids, movies);
+            }
+        } else {
+            loadRows(source, ids, movies);
+        }
+    }
+
+    /**
+     * {@link #load} with MySQL building each movie's document. Public, like {@link #loadRows}, so
+     * the two assembly modes can be benchmarked against each other.
+     */
+    public static void loadAssembled(Connection connection, List<String> ids, Map<String, byte[]> movies) throws SQLException {
+        int slots = IdBatch.slots(ids.size());
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape("movies-json|" + slots, () -> JsonAssembly.movieQuery(slots));
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            IdBatch.bind(statement, 1, ids, slots);
+            JsonAssembly.read(statement, movies);
+        }
+    }
+
+    /**
+     * {@link #load} reading the movie rows, genres, casts and cast counts as separate lookups that
+     * run at the same time (see {@link MovieDetailLookups}), and writing each document here.
+     */
+    public static void loadRows(DataSource source, List<String> ids, Map<String, byte[]> movies) throws Exception {
+        MovieDetailLookups.load(source, ids, movies);
+    }
+
+    private static void writeError(HttpServletResponse response, String message) throws IOException {
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("error").value(message).endObject();
+        }
+    }
+}
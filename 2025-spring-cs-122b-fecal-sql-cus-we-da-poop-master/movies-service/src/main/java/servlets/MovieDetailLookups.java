@@ -0,0 +1,238 @@
+package servlets;
+
+import catalog.MovieJson;
+import json.JsonWriter;
+import metrics.MetricsRegistry;
+import models.IdBatch;
+import utils.QueryShapeRegistry;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-movie objects for a batch of ids, read as independent lookups instead of one query that
+ * joins genres and the whole cast and then groups: the movies and their ratings (on the calling
+ * thread), their genres, their casts, and the movie counts of those casts only. The last three run
+ * on a bounded pool, each on its own connection from the same DataSource, so a batch costs the
+ * slowest lookup rather than the sum. Cast popularity only orders the stars: when it fails or runs
+ * out of time the stars are listed by name rather than failing the batch.
+ */
+final class MovieDetailLookups {
+
+    private static final String MOVIE_QUERY =
+            "SELECT m.id, m.title, m.year, m.director, r.rating " +
+            "FROM movies m LEFT JOIN ratings r ON m.id = r.movieId WHERE m.id ";
+    private static final String GENRES_QUERY =
+            "SELECT gm.movieId, g.id, g.name FROM genres_in_movies gm JOIN genres g ON gm.genreId = g.id " +
+            "WHERE gm.movieId %s ORDER BY g.name";
+    private static final String CAST_QUERY =
+            "SELECT sm.movieId, s.id, s.name FROM stars_in_movies sm JOIN stars s ON sm.starId = s.id " +
+            "WHERE sm.movieId %s ORDER BY s.name";
+    private static final String CAST_COUNTS_QUERY =
+            "SELECT DISTINCT smc.starId, smc.movieCount FROM stars_in_movies sm " +
+            "JOIN star_movie_counts smc ON sm.starId = smc.starId WHERE sm.movieId %s";
+
+    private static final QueryShapeRegistry QUERY_SHAPES = new QueryShapeRegistry("movie-detail");
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            (int) longEnv("SINGLE_MOVIE_LOOKUP_THREADS", 8), r -> {
+                Thread thread = new Thread(r, "movie-detail");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final long TIMEOUT_MILLIS = longEnv("SINGLE_MOVIE_LOOKUP_TIMEOUT_MILLIS", 2000);
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong movies = new AtomicLong();
+    private static final AtomicLong notFound = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+    private static final AtomicLong unorderedCasts = new AtomicLong();
+
+    static {
+        MetricsRegistry.register("single-movie-lookups", MovieDetailLookups::stats);
+    }
+
+    private MovieDetailLookups() {
+    }
+
+    /**
+     * Adds the JSON of every id in {@code ids} (at most {@link IdBatch#MAX_IDS}) that exists to
+     * {@code result}, with connections from {@code source}.
+     */
+    static void load(DataSource source, List<String> ids, Map<String, byte[]> result) throws Exception {
+        batches.incrementAndGet();
+        int slots = IdBatch.slots(ids.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        Future<Map<String, List<String[]>>> genres = EXECUTOR.submit(() -> idNameLists(source, "genres", GENRES_QUERY, ids, slots));
+        Future<Map<String, List<String[]>>> casts = EXECUTOR.submit(() -> idNameLists(source, "cast", CAST_QUERY, ids, slots));
+        Future<Map<String, Integer>> castCounts = EXECUTOR.submit(() -> castCounts(source, ids, slots));
+        try {
+            try (Connection connection = source.getConnection();
+                 PreparedStatement statement = prepare(connection, "movies|" + slots, MOVIE_QUERY + in(slots), ids, slots);
+                 ResultSet resultSet = statement.executeQuery()) {
+                List<Object[]> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    double rating = resultSet.getDouble("rating");
+                    Double ratingOrNull = resultSet.wasNull() ? null : rating;
+                    rows.add(new Object[] {resultSet.getString("id"), resultSet.getString("title"),
+                            resultSet.getInt("year"), resultSet.getString("director"), ratingOrNull});
+                }
+                notFound.addAndGet(ids.size() - rows.size());
+                if (rows.isEmpty()) {
+                    return;
+                }
+
+                Map<String, List<String[]>> genreLists = await(genres, deadline);
+                Map<String, List<String[]>> castLists = await(casts, deadline);
+                Map<String, Integer> counts = null;
+                try {
+                    counts = await(castCounts, deadline);
+                } catch (Exception e) {
+                    unorderedCasts.incrementAndGet();
+                    System.err.println("Cast popularity unavailable, listing stars by name: " + e.getMessage());
+                }
+                for (Object[] row : rows) {
+                    String id = (String) row[0];
+                    try (JsonWriter json = JsonWriter.inMemory()) {
+                        MovieJson.writeDetail(json, id, (String) row[1], (Integer) row[2], (String) row[3], (Double) row[4],
+                                list(genreLists.get(id)), list(orderedCast(castLists.get(id), counts)));
+                        result.put(id, json.toByteArray());
+                    }
+                }
+                movies.addAndGet(rows.size());
+            }
+        } finally {
+            genres.cancel(true);
+            casts.cancel(true);
+            castCounts.cancel(true);
+        }
+    }
+
+    /** {id, name} pairs per movie, in query order. */
+    private static Map<String, List<String[]>> idNameLists(DataSource source, String name, String query,
+                                                           List<String> ids, int slots) throws SQLException {
+        Map<String, List<String[]>> lists = new HashMap<>();
+        try (Connection connection = source.getConnection();
+             PreparedStatement statement = prepare(connection, name + "|" + slots, String.format(query, in(slots)), ids, slots);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                lists.computeIfAbsent(resultSet.getString(1), id -> new ArrayList<>())
+                        .add(new String[] {resultSet.getString(2), resultSet.getString(3)});
+            }
+        }
+        return lists;
+    }
+
+    private static Map<String, Integer> castCounts(DataSource source, List<String> ids, int slots) throws SQLException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (Connection connection = source.getConnection();
+             PreparedStatement statement = prepare(connection, "cast-counts|" + slots,
+                     String.format(CAST_COUNTS_QUERY, in(slots)), ids, slots);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                counts.put(resultSet.getString(1), resultSet.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The cast by movie count descending, then name; by name alone when {@code counts} is null.
+     */
+    private static List<String[]> orderedCast(List<String[]> stars, Map<String, Integer> counts) {
+        if (stars == null) {
+            return null;
+        }
+        Map<String, String[]> distinct = new LinkedHashMap<>();
+        for (String[] star : stars) {
+            distinct.putIfAbsent(star[0], star);
+        }
+        List<String[]> ordered = new ArrayList<>(distinct.values());
+        if (counts != null) {
+            // Stable: stars with the same count keep the name order the cast query returned.
+            ordered.sort(Comparator.comparingInt((String[] star) -> counts.getOrDefault(star[0], 0)).reversed());
+        }
+        return ordered;
+    }
+
+    /** "id:name,id:name", or null when there are none (what GROUP_CONCAT gives). */
+    private static String list(List<String[]> pairs) {
+        if (pairs == null || pairs.isEmpty()) {
+            return null;
+        }
+        StringBuilder list = new StringBuilder();
+        for (String[] pair : pairs) {
+            if (list.length() > 0) list.append(',');
+            list.append(pair[0]).append(':').append(pair[1]);
+        }
+        return list.toString();
+    }
+
+    private static String in(int slots) {
+        return slots == 1 ? "= ?" : "IN (" + IdBatch.placeholders(slots) + ")";
+    }
+
+    private static PreparedStatement prepare(Connection connection, String shapeKey, String sql, List<String> ids, int slots)
+            throws SQLException {
+        PreparedStatement statement = QUERY_SHAPES.prepare(connection, QUERY_SHAPES.shape(shapeKey, () -> sql));
+        statement.setQueryTimeout((int) Math.max(1, (TIMEOUT_MILLIS + 999) / 1000));
+        IdBatch.bind(statement, 1, ids, slots);
+        return statement;
+    }
+
+    /** The lookup's result, rethrowing what it threw; a TimeoutException once the batch deadline passes. */
+    private static <T> T await(Future<T> lookup, long deadline) throws Exception {
+        try {
+            return lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw new TimeoutException("Movie lookup took longer than " + TIMEOUT_MILLIS + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.get());
+        stats.put("movies", movies.get());
+        stats.put("notFound", notFound.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("unorderedCasts", unorderedCasts.get());
+        stats.put("timeoutMillis", TIMEOUT_MILLIS);
+        return stats;
+    }
+
+    private static long longEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -1,364 +1,622 @@
 package servlets;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
+import cache.ResponseCache;
+import catalog.CatalogChangeFeed;
+import db.DataSourceFactory;
+import db.ReadYourWrites;
+import db.WriteToken;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
-import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import json.JsonWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import catalog.MovieJson;
+import models.MovieCounts;
+import models.MovieListQuery;
+import utils.QueryShapeRegistry;
 
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
-import javax.sql.DataSource;
-import javax.naming.Context;
 
 
 @WebServlet(name = "MoviesServlet", urlPatterns = "/api/movies")
 public class MoviesServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
-    private static final List<String> ALLOWED_SORT_FIELDS = Arrays.asList("title", "rating");
-    private static final List<String> ALLOWED_ORDERS = Arrays.asList("asc", "desc");
-    private static final List<Integer> ALLOWED_LIMITS = Arrays.asList(10, 25, 50, 100);
-    private static final int DEFAULT_LIMIT = 25;
-    private static final int DEFAULT_PAGE = 1;
+    private static final QueryShapeRegistry QUERY_SHAPES = new QueryShapeRegistry("movies");
+
+    private static final ResponseCache RESPONSE_CACHE = new ResponseCache("movies",
+            longEnv("MOVIES_CACHE_MAX_MB", 32) * 1024 * 1024,
+            longEnv("MOVIES_CACHE_TTL_SECONDS", 60) * 1000,
+            4096);
+
+    /**
+     * How pages are found when a catalog snapshot is loaded: "bitmap" (default) ANDs the compressed
+     * filter bitmaps, "scan" tests every filter per movie while walking the sort order, and "sql"
+     * always queries MySQL.
+     */
+    private static final String QUERY_ENGINE = stringEnv("MOVIES_QUERY_ENGINE", "bitmap");
+
+    /**
+     * Totals and facets computed with SQL (no catalog loaded, or a session that must read its own
+     * writes), by filter key. Paging and sorting do not change them, so every page of a search
+     * shares one entry.
+     */
+    private static final ResponseCache COUNTS_CACHE = new ResponseCache("movie-counts",
+            longEnv("MOVIES_COUNTS_CACHE_MAX_MB", 4) * 1024 * 1024,
+            longEnv("MOVIES_CACHE_TTL_SECONDS", 60) * 1000,
+            1024);
+
+    /** Runs total and facet counts next to the page query. */
+    private static final ExecutorService COUNT_EXECUTOR = Executors.newFixedThreadPool(
+            (int) longEnv("MOVIES_COUNT_THREADS", 4), r -> {
+                Thread thread = new Thread(r, "movie-counts");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final long COUNTS_TIMEOUT_MILLIS = 2000;
+
+    static {
+        // Any movie or star change can move movies between pages, so drop every cached page.
+        CatalogChangeFeed.addListener(changes -> {
+            RESPONSE_CACHE.invalidateAll();
+            COUNTS_CACHE.invalidateAll();
+        });
+    }
 
-    private DataSource dataSource;
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
 
-    @Override
-    public void init() {
-        try {
-            String dbHost = System.getenv("DB_SLAVE_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
+        MovieListQuery query = MovieListQuery.fromRequest(request);
+        int limit = query.getLimit();
+        int page = query.getPage();
 
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
 
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
+        String cacheKey = query.cacheKey();
+        WriteToken token = ReadYourWrites.getToken(request);
+        byte[] cached = RESPONSE_CACHE.get(cacheKey, catalogWrittenAtMillis(token));
+        if (cached != null) {
+            writeBody(response, cached);
+            return;
+        }
+        long cacheGeneration = RESPONSE_CACHE.generation();
 
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
+        Connection connection = null;
+
+        try (JsonWriter json = JsonWriter.inMemory()) {
+            json.beginObject().name("movies").beginArray();
+            boolean hasMoreResults;
+            long dataAsOfMillis;
+            String nextCursor = null;
+            Map<String, String> didYouMean = null;
+            Catalog catalog = "sql".equals(QUERY_ENGINE) ? null : CatalogHolder.forRequest(request);
+            Future<MovieCounts> counts = query.isTotalRequested() || query.isFacetsRequested()
+                    ? COUNT_EXECUTOR.submit(() -> countMovies(catalog, token, query)) : null;
+            if (catalog != null) {
+                int[] movies = "scan".equals(QUERY_ENGINE) ? catalog.findMovies(query) : catalog.findMoviesIndexed(query);
+                hasMoreResults = movies.length > limit;
+                if (hasMoreResults) {
+                    movies = Arrays.copyOf(movies, limit);
+                    nextCursor = catalogCursor(catalog, query, movies[limit - 1]);
+                }
+                writeMovies(json, catalog, movies);
+                didYouMean = didYouMean(catalog, query, movies.length == 0);
+                dataAsOfMillis = catalog.getLoadStartedMillis();
+            } else {
+                connection = ReadYourWrites.getReadConnection(request);
+                dataAsOfMillis = sqlDataAsOfMillis(token);
+                List<PageRow> rows = findPageRows(connection, query);
+                hasMoreResults = rows.size() > limit;
+                if (hasMoreResults) {
+                    rows = rows.subList(0, limit);
+                    nextCursor = rows.get(limit - 1).cursor(query);
+                }
+                List<String> movieIds = new ArrayList<>(rows.size());
+                for (PageRow row : rows) {
+                    movieIds.add(row.id);
+                }
+                hydrate(json, connection, movieIds, limit);
+            }
 
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
+            json.endArray();
+            json.name("currentPage").value(page);
+            json.name("limit").value(limit);
+            json.name("hasMoreResults").value(hasMoreResults);
+            if (nextCursor != null) {
+                json.name("nextCursor").value(nextCursor);
+            }
+            if (didYouMean != null) {
+                json.name("didYouMean").value(didYouMean);
+            }
+            boolean complete = true;
+            if (counts != null) {
+                MovieCounts movieCounts = awaitCounts(request, counts);
+                if (movieCounts != null) {
+                    writeCounts(json, movieCounts, limit);
+                } else {
+                    complete = false;
+                }
+            }
 
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
+            json.endObject();
+            byte[] body = json.toByteArray();
+            if (complete) {
+                RESPONSE_CACHE.put(cacheKey, body, cacheGeneration, dataAsOfMillis);
+            }
+            writeBody(response, body);
 
+        } catch (SQLException e) {
+            request.getServletContext().log("SQL Error fetching movies: ", e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            if (!response.isCommitted()) {
+                writeError(response, "Database error occurred while fetching movies.", e.getMessage());
+            }
         } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
+            request.getServletContext().log("Error fetching movies: ", e);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                writeError(response, "An internal error occurred while fetching movies.", e.getMessage());
+            }
+        } finally {
+            try { if (connection != null) connection.close(); } catch (SQLException e) { request.getServletContext().log("Error closing Connection", e); }
         }
     }
 
+    /**
+     * Totals and facets for {@code query}: from the catalog's filter bitmaps when a snapshot serves
+     * the request, otherwise from COUNT queries on a replica, cached by filter key.
+     */
+    private static MovieCounts countMovies(Catalog catalog, WriteToken token, MovieListQuery query) throws SQLException {
+        boolean facets = query.isFacetsRequested();
+        if (catalog != null) {
+            return catalog.countMovies(query, facets);
+        }
+        Gson gson = new Gson();
+        String key = query.filterKey() + (facets ? "|facets" : "|total");
+        byte[] cached = COUNTS_CACHE.get(key, catalogWrittenAtMillis(token));
+        if (cached != null) {
+            return gson.fromJson(new String(cached, StandardCharsets.UTF_8), MovieCounts.class);
+        }
+        long generation = COUNTS_CACHE.generation();
+        MovieCounts counts;
+        try (Connection connection = DataSourceFactory.getRoutingDataSource().readOnly(token).getConnection()) {
+            counts = countWithSql(connection, query, facets);
+        }
+        COUNTS_CACHE.put(key, gson.toJson(counts).getBytes(StandardCharsets.UTF_8), generation, sqlDataAsOfMillis(token));
+        return counts;
+    }
 
-    protected void doGet(HttpServletRequest request, HttpServletResponse response)
-            throws IOException {
+    /**
+     * When this session last changed movies or stars, or 0: cached pages must be built from data
+     * newer than that. Other writes (purchases) do not change any page.
+     */
+    private static long catalogWrittenAtMillis(WriteToken token) {
+        return token == null ? 0 : token.getCatalogCommittedAtMillis();
+    }
 
-        String genreFilter = request.getParameter("genre");
-        String title = request.getParameter("title");
-        String yearParam = request.getParameter("year");
-        String director = request.getParameter("director");
-        String starName = request.getParameter("star_name");
-        String titleInitial = request.getParameter("titleInitial");
-        String fulltextQueryParam = request.getParameter("ft_query");
+    /**
+     * How current a SQL read made for {@code token} is. A read pinned to the session's last write
+     * sees everything committed before it; an unpinned replica read may lag behind any write.
+     */
+    private static long sqlDataAsOfMillis(WriteToken token) {
+        return token == null ? 0 : token.getCommittedAtMillis();
+    }
 
+    /**
+     * The counts, or null when they failed or took longer than {@link #COUNTS_TIMEOUT_MILLIS}; the
+     * page is still answered, just without totals.
+     */
+    private static MovieCounts awaitCounts(HttpServletRequest request, Future<MovieCounts> counts) {
+        try {
+            return counts.get(COUNTS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            counts.cancel(true);
+            request.getServletContext().log("Movie counts timed out after " + COUNTS_TIMEOUT_MILLIS + " ms");
+        } catch (ExecutionException e) {
+            request.getServletContext().log("Error counting movies: ", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
 
-        String sort1 = request.getParameter("sort1");
-        String order1 = request.getParameter("order1");
-        String sort2 = request.getParameter("sort2");
-        String order2 = request.getParameter("order2");
+    private static void writeCounts(JsonWriter json, MovieCounts counts, int limit) throws IOException {
+        json.name("totalResults").value(counts.getTotal());
+        json.name("totalPages").value((counts.getTotal() + limit - 1) / limit);
+        if (counts.hasFacets()) {
+            json.name("facets").beginObject()
+                    .name("genres").value(counts.getGenres())
+                    .name("decades").value(counts.getDecades())
+                    .name("initials").value(counts.getInitials())
+                    .endObject();
+        }
+    }
 
-        int limit = DEFAULT_LIMIT;
-        int page = DEFAULT_PAGE;
+    private static void writeBody(HttpServletResponse response, byte[] body) throws IOException {
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
 
-        try {
-            String limitParam = request.getParameter("limit");
-            if (limitParam != null) {
-                int requestedLimit = Integer.parseInt(limitParam);
-                if (ALLOWED_LIMITS.contains(requestedLimit)) {
-                    limit = requestedLimit;
-                }
+    private static void writeError(HttpServletResponse response, String error, String detail) throws IOException {
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("error").value(error);
+            if (detail != null) {
+                json.name("detail").value(detail);
             }
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid limit parameter format: " + request.getParameter("limit"));
+            json.endObject();
         }
+    }
+
+    private static String stringEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim().toLowerCase();
+    }
 
+    private static long longEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
         try {
-            String pageParam = request.getParameter("page");
-            if (pageParam != null) {
-                page = Integer.parseInt(pageParam);
-                if (page < 1) {
-                    page = DEFAULT_PAGE;
-                }
-            }
+            return Long.parseLong(value.trim());
         } catch (NumberFormatException e) {
-            System.err.println("Invalid page parameter format: " + request.getParameter("page"));
+            System.err.println("Invalid " + name + " '" + value + "', using " + defaultValue);
+            return defaultValue;
         }
+    }
 
-        int offset = (page - 1) * limit;
-
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-
-        Gson gson = new Gson();
-        JsonObject jsonResponse = new JsonObject();
-        PrintWriter out = response.getWriter();
-
-        String queryString = request.getQueryString();
-        String currentUrl = "movies.html" + (queryString != null ? "?" + queryString : "");
+    /**
+     * Corrected ft_query and star_name values, or null when there is nothing to suggest. Title
+     * keywords are checked on every request (a keyword that starts no title word is the only thing
+     * corrected). Star names are matched as substrings, so they are only corrected when nothing
+     * was found or the search was already fuzzy.
+     */
+    private static Map<String, String> didYouMean(Catalog catalog, MovieListQuery query, boolean noResults) {
+        Map<String, String> suggestion = new LinkedHashMap<>();
+        if (query.getFtQuery() != null) {
+            String corrected = catalog.correctTitleQuery(query.getFtQuery());
+            if (corrected != null) {
+                suggestion.put("ft_query", corrected);
+            }
+        }
+        if (query.getStarName() != null && (noResults || query.isFuzzy())) {
+            String corrected = catalog.correctStarQuery(query.getStarName());
+            if (corrected != null) {
+                suggestion.put("star_name", corrected);
+            }
+        }
+        return suggestion.isEmpty() ? null : suggestion;
+    }
 
-        Connection connection = null;
-        PreparedStatement statement = null;
-        ResultSet resultSet = null;
+    /**
+     * The same JSON as {@link #hydrate}, copied from the snapshot's per-movie fragments.
+     */
+    private static void writeMovies(JsonWriter json, Catalog catalog, int[] movies) throws IOException {
+        for (int m : movies) {
+            json.rawValue(catalog.summaryJson(m));
+        }
+    }
 
-        List<Object> parameters = new ArrayList<>();
-        StringBuilder queryBuilder = new StringBuilder();
+    /**
+     * A page-query row: the movie id plus the sort values needed to build the next cursor.
+     */
+    private static final class PageRow {
+        final String id;
+        final String title;
+        final double rating;
+
+        PageRow(String id, String title, double rating) {
+            this.id = id;
+            this.title = title;
+            this.rating = rating;
+        }
 
-        try {
-            connection = dataSource.getConnection();
-
-            String starMovieCountsCTE = "WITH StarMovieCounts AS ( " +
-                    "    SELECT starId, COUNT(DISTINCT movieId) AS movieCount " +
-                    "    FROM stars_in_movies " +
-                    "    GROUP BY starId " +
-                    "), ";
-            String rankedStarsCTE = "RankedStars AS ( " +
-                    "    SELECT " +
-                    "        sm.movieId, " +
-                    "        s.id AS starId, " +
-                    "        s.name AS starName, " +
-                    "        ROW_NUMBER() OVER(PARTITION BY sm.movieId ORDER BY COALESCE(smc.movieCount, 0) DESC, s.name ASC) as rn " +
-                    "    FROM stars_in_movies sm " +
-                    "    JOIN stars s ON sm.starId = s.id " +
-                    "    LEFT JOIN StarMovieCounts smc ON s.id = smc.starId " +
-                    "), ";
-            String topStarsPerMovieCTE = "TopStarsPerMovie AS ( " +
-                    "    SELECT " +
-                    "        movieId, " +
-                    "        GROUP_CONCAT(CONCAT(starId, ':', starName) ORDER BY rn SEPARATOR ', ') AS topStars " +
-                    "    FROM RankedStars " +
-                    "    WHERE rn <= 3 " +
-                    "    GROUP BY movieId " +
-                    ") ";
-
-            queryBuilder.append(starMovieCountsCTE);
-            queryBuilder.append(rankedStarsCTE);
-            queryBuilder.append(topStarsPerMovieCTE);
-
-            queryBuilder.append("SELECT m.id, m.title, m.year, m.director, COALESCE(r.rating, 0.0) AS rating, ");
-            queryBuilder.append("       GROUP_CONCAT(DISTINCT g_main.name ORDER BY g_main.name SEPARATOR ', ') AS genres, ");
-            queryBuilder.append("       tspm.topStars AS stars ");
-            queryBuilder.append("FROM movies m ");
-            queryBuilder.append("LEFT JOIN ratings r ON m.id = r.movieId ");
-            queryBuilder.append("LEFT JOIN genres_in_movies gm_main ON m.id = gm_main.movieId ");
-            queryBuilder.append("LEFT JOIN genres g_main ON gm_main.genreId = g_main.id ");
-            queryBuilder.append("LEFT JOIN TopStarsPerMovie tspm ON m.id = tspm.movieId ");
-
-            StringBuilder whereClause = new StringBuilder();
-
-            if (fulltextQueryParam != null && !fulltextQueryParam.trim().isEmpty()) {
-                String[] keywords = fulltextQueryParam.trim().split("\\s+");
-                StringBuilder ftsBooleanQuery = new StringBuilder();
-                for (String keyword : keywords) {
-                    if (!keyword.isEmpty()) {
-                        ftsBooleanQuery.append("+").append(keyword).append("* ");
-                    }
-                }
-                if (ftsBooleanQuery.length() > 0) {
-                    if (whereClause.length() > 0) whereClause.append(" AND ");
-                    whereClause.append("MATCH(m.title) AGAINST(? IN BOOLEAN MODE)");
-                    parameters.add(ftsBooleanQuery.toString().trim());
-                }
+        String cursor(MovieListQuery query) {
+            List<MovieListQuery.SortKey> sortKeys = query.getSortKeys();
+            Object[] values = new Object[sortKeys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = "title".equals(sortKeys.get(i).field) ? title : (Object) rating;
             }
+            return MovieListQuery.Cursor.encode(sortKeys, values, id);
+        }
+    }
 
+    private static String catalogCursor(Catalog catalog, MovieListQuery query, int m) {
+        List<MovieListQuery.SortKey> sortKeys = query.getSortKeys();
+        Object[] values = new Object[sortKeys.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "title".equals(sortKeys.get(i).field) ? catalog.title(m) : (Object) catalog.sortRating(m);
+        }
+        return MovieListQuery.Cursor.encode(sortKeys, values, catalog.movieId(m));
+    }
 
-            if (genreFilter != null && !genreFilter.trim().isEmpty()) {
-                if (whereClause.length() > 0) whereClause.append(" AND ");
-                whereClause.append("EXISTS (SELECT 1 FROM genres_in_movies gim_check JOIN genres g_check ON gim_check.genreId = g_check.id WHERE gim_check.movieId = m.id AND g_check.name = ?)");
-                parameters.add(genreFilter.trim());
-            }
-
-            if (yearParam != null && !yearParam.trim().isEmpty()) {
-                try {
-                    int year = Integer.parseInt(yearParam.trim());
-                    if (whereClause.length() > 0) whereClause.append(" AND ");
-                    whereClause.append("m.year = ?");
-                    parameters.add(year);
-                } catch (NumberFormatException e) {
-                    System.err.println("Invalid year format: " + yearParam);
-                }
-            }
-            if (director != null && !director.trim().isEmpty()) {
-                if (whereClause.length() > 0) whereClause.append(" AND ");
-                whereClause.append("m.director LIKE ?");
-                parameters.add("%" + director.trim() + "%");
-            }
-            if (starName != null && !starName.trim().isEmpty()) {
-                if (whereClause.length() > 0) whereClause.append(" AND ");
-                whereClause.append("EXISTS (SELECT 1 FROM stars_in_movies sim_check JOIN stars s_check ON sim_check.starId = s_check.id WHERE sim_check.movieId = m.id AND s_check.name LIKE ?)");
-                parameters.add("%" + starName.trim() + "%");
+    /**
+     * Phase one: the rows of the requested page in display order, plus one more when another page
+     * exists. Touches only movies, ratings and the filter tables, so the cost does not depend on how
+     * many stars or genres the catalog has.
+     */
+    private static List<PageRow> findPageRows(Connection connection, MovieListQuery query) throws SQLException {
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape(query.shapeKey(), () -> buildPageQuery(query));
+        List<PageRow> rows = new ArrayList<>(query.getLimit() + 1);
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            List<Object> parameters = bindParameters(query);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
             }
-            if (titleInitial != null && !titleInitial.trim().isEmpty()) {
-                if (whereClause.length() > 0) whereClause.append(" AND ");
-                if (titleInitial.equals("*")) {
-                    whereClause.append("m.title REGEXP '^[^a-zA-Z0-9]'");
-                } else {
-                    whereClause.append("m.title LIKE ?");
-                    parameters.add(titleInitial.trim() + "%");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(new PageRow(resultSet.getString("id"), resultSet.getString("title"),
+                            resultSet.getDouble("sortRating")));
                 }
             }
+        }
+        return rows;
+    }
 
-            if (whereClause.length() > 0) {
-                queryBuilder.append("WHERE ").append(whereClause);
-            }
-
-            queryBuilder.append(" GROUP BY m.id, m.title, m.year, m.director, COALESCE(r.rating, 0.0), tspm.topStars ");
+    /**
+     * Phase two: title, rating, genres and top-3 stars for just the page's ids. The IN list is padded
+     * to the page limit by repeating the last id, so there is one statement per allowed limit.
+     */
+    private static void hydrate(JsonWriter json, Connection connection, List<String> movieIds, int limit)
+            throws SQLException, IOException {
+        if (movieIds.isEmpty()) {
+            return;
+        }
+        int slots = Math.max(limit, movieIds.size());
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape("hydrate|" + slots, () -> buildHydrateQuery(slots));
 
-            StringBuilder orderByBuilder = new StringBuilder("ORDER BY ");
-            boolean firstSortParam = true;
-            if (isValidSortParam(sort1, order1)) {
-                orderByBuilder.append(getColumnForSortField(sort1)).append(" ").append(order1.toLowerCase());
-                firstSortParam = false;
+        Map<String, Object[]> moviesById = new HashMap<>();
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            for (int i = 0; i < slots; i++) {
+                statement.setString(i + 1, movieIds.get(Math.min(i, movieIds.size() - 1)));
             }
-            if (isValidSortParam(sort2, order2)) {
-                String sortCol1 = getColumnForSortField(sort1);
-                String sortCol2 = getColumnForSortField(sort2);
-                if (!firstSortParam) orderByBuilder.append(", ");
-
-                if (!sortCol1.equalsIgnoreCase(sortCol2) || firstSortParam) {
-                    orderByBuilder.append(sortCol2).append(" ").append(order2.toLowerCase());
-                    firstSortParam = false;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    double rating = resultSet.getDouble("rating");
+                    Double ratingOrNull = resultSet.wasNull() ? null : rating;
+                    moviesById.put(resultSet.getString("id"), new Object[] {
+                            resultSet.getString("title"),
+                            resultSet.getInt("year"),
+                            resultSet.getString("director"),
+                            ratingOrNull,
+                            resultSet.getString("genres"),
+                            resultSet.getString("stars")
+                    });
                 }
             }
-            if (firstSortParam) {
-                orderByBuilder.append(getColumnForSortField("rating")).append(" DESC, ").append(getColumnForSortField("title")).append(" ASC");
-            }
-            queryBuilder.append(orderByBuilder.toString()).append(" ");
-
-
-            queryBuilder.append("LIMIT ? OFFSET ?");
-            parameters.add(limit);
-            parameters.add(offset);
+        }
 
-            String finalQuery = queryBuilder.toString();
-            System.out.println("Preparing Query: " + finalQuery);
-            System.out.println("Parameters: " + parameters);
+        for (String movieId : movieIds) {
+            Object[] row = moviesById.get(movieId);
+            if (row != null) {
+                MovieJson.writeSummary(json, movieId, (String) row[0], (Integer) row[1], (String) row[2],
+                        (Double) row[3], (String) row[4], (String) row[5]);
+            }
+        }
+    }
 
-            statement = connection.prepareStatement(finalQuery);
+    /**
+     * SQL text for a page query shape. Only which filters are present and the sort order affect the text;
+     * the values are bound by {@link #bindParameters} in the same order as the placeholders here.
+     * m.id breaks ties so that consecutive pages never overlap or skip movies.
+     * <p>
+     * With a cursor the query seeks instead of using OFFSET: it keeps only rows that sort after the
+     * cursor's (sort values, id) tuple. The keys can have mixed directions, so the tuple comparison
+     * is spelled out as "first key beyond, or first equal and second beyond, ..." rather than a row
+     * constructor comparison.
+     */
+    private static String buildPageQuery(MovieListQuery query) {
+        StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append("SELECT m.id, m.title, COALESCE(r.rating, 0.0) AS sortRating FROM movies m ");
+        queryBuilder.append("LEFT JOIN ratings r ON m.id = r.movieId ");
 
-            for (int i = 0; i < parameters.size(); i++) {
-                statement.setObject(i + 1, parameters.get(i));
-            }
+        List<String> conditions = buildFilterConditions(query);
+        if (query.getCursor() != null) {
+            conditions.add(buildSeekCondition(query.getSortKeys()));
+        }
+        if (!conditions.isEmpty()) {
+            queryBuilder.append("WHERE ").append(String.join(" AND ", conditions)).append(" ");
+        }
 
-            resultSet = statement.executeQuery();
-            JsonArray moviesArray = new JsonArray();
-            int resultsCount = 0;
-            while (resultSet.next()) {
-                resultsCount++;
-                JsonObject movieJson = new JsonObject();
-                movieJson.addProperty("id", resultSet.getString("id"));
-                movieJson.addProperty("title", resultSet.getString("title"));
-                movieJson.addProperty("year", resultSet.getInt("year"));
-                movieJson.addProperty("director", resultSet.getString("director"));
-
-                double rating = resultSet.getDouble("rating");
-                if (resultSet.wasNull()) {
-                    movieJson.add("rating", null);
-                } else {
-                    double roundedRating = Math.round(rating * 10.0) / 10.0;
-                    movieJson.addProperty("rating", roundedRating);
-                }
+        List<String> orderBy = new ArrayList<>();
+        for (MovieListQuery.SortKey key : query.getSortKeys()) {
+            orderBy.add(getColumnForSortField(key.field) + (key.ascending ? " ASC" : " DESC"));
+        }
+        orderBy.add("m.id ASC");
+        queryBuilder.append("ORDER BY ").append(String.join(", ", orderBy)).append(" ");
 
+        queryBuilder.append(query.getCursor() != null ? "LIMIT ?" : "LIMIT ? OFFSET ?");
+        return queryBuilder.toString();
+    }
 
-                movieJson.addProperty("genres", resultSet.getString("genres"));
-                movieJson.addProperty("stars", resultSet.getString("stars"));
+    /**
+     * The WHERE conditions for the query's filters, with placeholders bound by
+     * {@link #bindFilterParameters}.
+     */
+    private static List<String> buildFilterConditions(MovieListQuery query) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getFtQuery() != null) {
+            conditions.add("MATCH(m.title) AGAINST(? IN BOOLEAN MODE)");
+        }
+        if (query.getGenre() != null) {
+            conditions.add("EXISTS (SELECT 1 FROM genres_in_movies gim_check JOIN genres g_check ON gim_check.genreId = g_check.id WHERE gim_check.movieId = m.id AND g_check.name = ?)");
+        }
+        if (query.getYear() != null) {
+            conditions.add("m.year = ?");
+        }
+        if (query.getDirector() != null) {
+            conditions.add("m.director LIKE ?");
+        }
+        if (query.getStarName() != null) {
+            conditions.add("EXISTS (SELECT 1 FROM stars_in_movies sim_check JOIN stars s_check ON sim_check.starId = s_check.id WHERE sim_check.movieId = m.id AND s_check.name LIKE ?)");
+        }
+        if (query.getTitleInitial() != null) {
+            conditions.add(query.isNonAlphanumericInitial() ? "m.title REGEXP '^[^a-zA-Z0-9]'" : "m.title LIKE ?");
+        }
+        return conditions;
+    }
 
-                moviesArray.add(movieJson);
+    private static String buildSeekCondition(List<MovieListQuery.SortKey> sortKeys) {
+        List<String> alternatives = new ArrayList<>();
+        for (int i = 0; i <= sortKeys.size(); i++) {
+            List<String> parts = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                parts.add(getColumnForSortField(sortKeys.get(j).field) + " = ?");
+            }
+            if (i < sortKeys.size()) {
+                MovieListQuery.SortKey key = sortKeys.get(i);
+                parts.add(getColumnForSortField(key.field) + (key.ascending ? " > ?" : " < ?"));
+            } else {
+                parts.add("m.id > ?");
             }
+            alternatives.add("(" + String.join(" AND ", parts) + ")");
+        }
+        return "(" + String.join(" OR ", alternatives) + ")";
+    }
 
+    /**
+     * Hydration for {@code slots} ids. The top-3 stars come precomputed from top_stars_per_movie.
+     */
+    private static String buildHydrateQuery(int slots) {
+        String inList = String.join(", ", Collections.nCopies(slots, "?"));
+        return "SELECT m.id, m.title, m.year, m.director, COALESCE(r.rating, 0.0) AS rating, " +
+                "       (SELECT GROUP_CONCAT(g.name ORDER BY g.name SEPARATOR ', ') " +
+                "          FROM genres_in_movies gm JOIN genres g ON gm.genreId = g.id " +
+                "         WHERE gm.movieId = m.id) AS genres, " +
+                "       tspm.topStars AS stars " +
+                "FROM movies m " +
+                "LEFT JOIN ratings r ON m.id = r.movieId " +
+                "LEFT JOIN top_stars_per_movie tspm ON m.id = tspm.movieId " +
+                "WHERE m.id IN (" + inList + ")";
+    }
 
-            jsonResponse.add("movies", moviesArray);
-            jsonResponse.addProperty("currentPage", page);
-            jsonResponse.addProperty("limit", limit);
-            jsonResponse.addProperty("hasMoreResults", resultsCount == limit);
+    private static List<Object> bindParameters(MovieListQuery query) {
+        List<Object> parameters = bindFilterParameters(query);
+        MovieListQuery.Cursor cursor = query.getCursor();
+        if (cursor != null) {
+            for (int i = 0; i <= query.getSortKeys().size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    parameters.add(cursor.value(j));
+                }
+                parameters.add(i < query.getSortKeys().size() ? cursor.value(i) : cursor.getMovieId());
+            }
+        }
+        // One row past the page tells whether there is a next page.
+        parameters.add(query.getLimit() + 1);
+        if (cursor == null) {
+            parameters.add(query.getOffset());
+        }
+        return parameters;
+    }
 
-            out.write(gson.toJson(jsonResponse));
+    private static List<Object> bindFilterParameters(MovieListQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        if (query.getFtQuery() != null) {
+            parameters.add(query.ftBooleanQuery());
+        }
+        if (query.getGenre() != null) {
+            parameters.add(query.getGenre());
+        }
+        if (query.getYear() != null) {
+            parameters.add(query.getYear());
+        }
+        if (query.getDirector() != null) {
+            parameters.add("%" + query.getDirector() + "%");
+        }
+        if (query.getStarName() != null) {
+            parameters.add("%" + query.getStarName() + "%");
+        }
+        if (query.getTitleInitial() != null && !query.isNonAlphanumericInitial()) {
+            parameters.add(query.getTitleInitial() + "%");
+        }
+        return parameters;
+    }
 
-        } catch (SQLException e) {
-            request.getServletContext().log("SQL Error fetching movies: ", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            JsonObject errorResponse = new JsonObject();
-            errorResponse.addProperty("error", "Database error occurred while fetching movies.");
-            errorResponse.addProperty("detail", e.getMessage());
-            if (!response.isCommitted()) {
-                out.write(gson.toJson(errorResponse));
-            }
-        } catch (Exception e) {
-            request.getServletContext().log("Error fetching movies: ", e);
-            if (!response.isCommitted()) {
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                JsonObject errorResponse = new JsonObject();
-                errorResponse.addProperty("error", "An internal error occurred while fetching movies.");
-                errorResponse.addProperty("detail", e.getMessage());
-                out.write(gson.toJson(errorResponse));
-            }
-        } finally {
-            try { if (resultSet != null) resultSet.close(); } catch (SQLException e) { request.getServletContext().log("Error closing ResultSet", e); }
-            try { if (statement != null) statement.close(); } catch (SQLException e) { request.getServletContext().log("Error closing Statement", e); }
-            try { if (connection != null) connection.close(); } catch (SQLException e) { request.getServletContext().log("Error closing Connection", e); }
-            if (out != null && !response.isCommitted()) {
+    /**
+     * Total and, with {@code facets}, per-genre, per-decade and per-initial counts for the query's
+     * filters. One GROUP BY statement per facet, each a filter shape of its own.
+     */
+    private static MovieCounts countWithSql(Connection connection, MovieListQuery query, boolean facets) throws SQLException {
+        List<String> conditions = buildFilterConditions(query);
+        String where = conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
+        List<Object> parameters = bindFilterParameters(query);
+        String shape = query.filterShapeKey();
+
+        Map<String, Integer> total = countBy(connection, "count|" + shape,
+                "SELECT 'total', COUNT(*) FROM movies m " + where, parameters);
+        int totalCount = total.getOrDefault("total", 0);
+        if (!facets) {
+            return new MovieCounts(totalCount, null, null, null);
+        }
+        Map<String, Integer> genres = countBy(connection, "count-genres|" + shape,
+                "SELECT g.name, COUNT(*) FROM movies m " +
+                "JOIN genres_in_movies gim ON gim.movieId = m.id JOIN genres g ON g.id = gim.genreId " +
+                where + "GROUP BY g.name ORDER BY g.name", parameters);
+        Map<String, Integer> decades = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : countBy(connection, "count-years|" + shape,
+                "SELECT m.year, COUNT(*) FROM movies m " + where + "GROUP BY m.year", parameters).entrySet()) {
+            decades.merge(MovieCounts.decade(Integer.parseInt(entry.getKey())), entry.getValue(), Integer::sum);
+        }
+        Map<String, Integer> initials = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : countBy(connection, "count-initials|" + shape,
+                "SELECT LEFT(m.title, 1), COUNT(*) FROM movies m " + where + "GROUP BY LEFT(m.title, 1)", parameters).entrySet()) {
+            if (!entry.getKey().isEmpty()) {
+                initials.merge(MovieCounts.initial(entry.getKey().charAt(0)), entry.getValue(), Integer::sum);
             }
         }
+        return new MovieCounts(totalCount, genres, decades, initials);
     }
 
-    private boolean isValidSortParam(String field, String order) {
-        return field != null && !field.trim().isEmpty() && !field.equalsIgnoreCase("none") &&
-                order != null && !order.trim().isEmpty() &&
-                ALLOWED_SORT_FIELDS.contains(field.toLowerCase()) &&
-                ALLOWED_ORDERS.contains(order.toLowerCase());
+    /** Runs a "SELECT key, COUNT(*) ..." statement; rows with a null key are skipped. */
+    private static Map<String, Integer> countBy(Connection connection, String shapeKey, String sql,
+                                                List<Object> parameters) throws SQLException {
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape(shapeKey, () -> sql);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String key = resultSet.getString(1);
+                    if (key != null) {
+                        counts.merge(key, resultSet.getInt(2), Integer::sum);
+                    }
+                }
+            }
+        }
+        return counts;
     }
 
-    private String getColumnForSortField(String field) {
-        if (field == null) return "COALESCE(r.rating, 0.0)";
-        String lowerField = field.toLowerCase();
-        if ("title".equals(lowerField)) {
+    private static String getColumnForSortField(String field) {
+        if ("title".equals(field)) {
             return "m.title";
-        } else if ("rating".equals(lowerField)) {
-            return "COALESCE(r.rating, 0.0)";
         }
         return "COALESCE(r.rating, 0.0)";
     }
 
-}
\ No newline at end of file
+}
@@ -1,25 +1,24 @@
 package servlets;
 
-import com.google.gson.JsonObject;
-import com.mysql.cj.jdbc.MysqlDataSource;
+import db.DataSourceFactory;
+import db.ReadYourWrites;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import json.JsonWriter;
 import models.CartMovie;
 
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import javax.sql.DataSource;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.math.BigDecimal;
@@ -30,60 +29,18 @@ public class PaymentServlet extends HttpServlet {
     private DataSource dataSource;
 
     public void init(ServletConfig config) {
-        try {
-            String dbHost = System.getenv("DB_MASTER_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
-            }
-
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
-            }
-
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
-
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
-
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
-
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
-        }
+        this.dataSource = DataSourceFactory.getWriteDataSource();
     }
 
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-        JsonObject responseJsonObject = new JsonObject();
+        Map<String, Object> responseJson = new LinkedHashMap<>();
         HttpSession session = request.getSession(false);
 
         if (session == null || session.getAttribute("email") == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "User not logged in.");
-            out.write(responseJsonObject.toString());
-            out.close();
+            responseJson.put("status", "fail");
+            responseJson.put("message", "User not logged in.");
+            JsonWriter.write(response, responseJson);
             return;
         }
         String userEmail = (String) session.getAttribute("email");
@@ -92,10 +49,9 @@ public class PaymentServlet extends HttpServlet {
         Map<String, CartMovie> cart = (Map<String, CartMovie>) session.getAttribute("cart");
         if (cart == null || cart.isEmpty()) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Shopping cart is empty.");
-            out.write(responseJsonObject.toString());
-            out.close();
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Shopping cart is empty.");
+            JsonWriter.write(response, responseJson);
             return;
         }
 
@@ -107,10 +63,9 @@ public class PaymentServlet extends HttpServlet {
         if (firstName == null || lastName == null || ccNumber == null || ccExpiry == null ||
                 firstName.trim().isEmpty() || lastName.trim().isEmpty() || ccNumber.trim().isEmpty() || ccExpiry.trim().isEmpty()) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Missing payment information.");
-            out.write(responseJsonObject.toString());
-            out.close();
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Missing payment information.");
+            JsonWriter.write(response, responseJson);
             return;
         }
 
@@ -119,10 +74,9 @@ public class PaymentServlet extends HttpServlet {
             expiryDate = LocalDate.parse(ccExpiry.trim());
         } catch (DateTimeParseException e) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Invalid expiration date format. Use YYYY-MM-DD.");
-            out.write(responseJsonObject.toString());
-            out.close();
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Invalid expiration date format. Use YYYY-MM-DD.");
+            JsonWriter.write(response, responseJson);
             return;
         }
 
@@ -148,10 +102,9 @@ public class PaymentServlet extends HttpServlet {
             if (!paymentValid) {
                 conn.rollback();
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                responseJsonObject.addProperty("status", "fail");
-                responseJsonObject.addProperty("message", "Invalid credit card information or card expired.");
-                out.write(responseJsonObject.toString());
-                out.close();
+                responseJson.put("status", "fail");
+                responseJson.put("message", "Invalid credit card information or card expired.");
+                JsonWriter.write(response, responseJson);
                 return;
             }
 
@@ -169,10 +122,9 @@ public class PaymentServlet extends HttpServlet {
             if (customerId == null) {
                 conn.rollback();
                 response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                responseJsonObject.addProperty("status", "fail");
-                responseJsonObject.addProperty("message", "Could not find customer record for logged-in user.");
-                out.write(responseJsonObject.toString());
-                out.close();
+                responseJson.put("status", "fail");
+                responseJson.put("message", "Could not find customer record for logged-in user.");
+                JsonWriter.write(response, responseJson);
                 return;
             }
 
@@ -218,6 +170,7 @@ public class PaymentServlet extends HttpServlet {
             }
 
             conn.commit();
+            ReadYourWrites.recordWrite(request, conn);
 
             Map<String, Object> orderConfirmationDetails = new HashMap<>();
             orderConfirmationDetails.put("saleIds", saleIds);
@@ -228,8 +181,8 @@ public class PaymentServlet extends HttpServlet {
             session.removeAttribute("cart");
 
             response.setStatus(HttpServletResponse.SC_OK);
-            responseJsonObject.addProperty("status", "success");
-            responseJsonObject.addProperty("message", "Order placed successfully!");
+            responseJson.put("status", "success");
+            responseJson.put("message", "Order placed successfully!");
 
         } catch (SQLException e) {
             request.getServletContext().log("SQL Error in PaymentServlet: ", e);
@@ -241,8 +194,8 @@ public class PaymentServlet extends HttpServlet {
                 }
             }
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Database error occurred during order placement.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Database error occurred during order placement.");
         } catch (Exception e) {
             request.getServletContext().log("Unexpected error in PaymentServlet: ", e);
             if (conn != null) {
@@ -253,8 +206,8 @@ public class PaymentServlet extends HttpServlet {
                 }
             }
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "An unexpected error occurred.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "An unexpected error occurred.");
         } finally {
             if (conn != null) {
                 try {
@@ -265,9 +218,8 @@ public class PaymentServlet extends HttpServlet {
                 }
             }
             if (!response.isCommitted()) {
-                out.write(responseJsonObject.toString());
+                JsonWriter.write(response, responseJson);
             }
-            out.close();
         }
     }
 }
\ No newline at end of file
@@ -1,173 +1,362 @@
 package servlets;
 
-import com.mysql.cj.jdbc.MysqlDataSource;
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import db.DataSourceFactory;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import json.JsonWriter;
 
+/**
+ * Movie search by title, year, director, star name and full-text keywords.
+ * <p>
+ * Matches are streamed: each row goes from a forward-only MySQL result set (or from the in-memory
+ * catalog) straight into the response, so a broad query holds no more heap than a narrow one. A
+ * request with neither {@code limit} nor {@code cursor} gets the bare array of every match, as it
+ * always did. A request that passes either gets pages of at most {@value #MAX_LIMIT} movies as
+ * {@code {"movies": [...], "next": "..."}}, where {@code next} is present when more movies match
+ * and goes back as {@code cursor} to fetch them.
+ */
 @WebServlet(name = "SearchServlet", urlPatterns = "/search")
 public class SearchServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    static final int MAX_LIMIT = 1000;
+    static final int DEFAULT_LIMIT = 100;
+
     private DataSource dataSource;
 
     @Override
     public void init() throws ServletException {
-        try {
-            String dbHost = System.getenv("DB_SLAVE_HOST");
-            String dbPort = System.getenv("DB_PORT");
-            String dbName = System.getenv("DB_NAME");
-            String dbUser = System.getenv("DB_USER");
-            String dbPassword = System.getenv("DB_PASSWORD");
-
-            if (dbHost == null || dbName == null || dbUser == null || dbPassword == null) {
-                System.out.println("WARNING: Database environment variables not fully set. Falling back to JNDI lookup for local development if configured.");
-                try {
-                    this.dataSource = (DataSource) new InitialContext().lookup("java:comp/env/jdbc/moviedb");
-                    System.out.println("Successfully looked up DataSource via JNDI.");
-                    return;
-                } catch (NamingException e) {
-                    System.err.println("JNDI lookup failed after environment variable check: " + e.getMessage());
-                    throw new RuntimeException("Database configuration not found (checked Env Vars and JNDI).", e);
-                }
+        this.dataSource = DataSourceFactory.getReadDataSource();
+    }
+
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String title = trimToNull(request.getParameter("title"));
+        String director = trimToNull(request.getParameter("director"));
+        String starName = trimToNull(request.getParameter("star_name"));
+        String ftQuery = trimToNull(request.getParameter("ft_query"));
+        Integer year = null;
+        String yearParam = trimToNull(request.getParameter("year"));
+        if (yearParam != null) {
+            try {
+                year = Integer.parseInt(yearParam);
+            } catch (NumberFormatException e) {
+                request.getServletContext().log("Invalid year format: " + yearParam, e);
             }
+        }
 
-            if (dbPort == null || dbPort.isEmpty()){
-                dbPort = "3306";
+        String limitParam = trimToNull(request.getParameter("limit"));
+        String cursorParam = trimToNull(request.getParameter("cursor"));
+        boolean paged = limitParam != null || cursorParam != null;
+        int limit = paged ? DEFAULT_LIMIT : Integer.MAX_VALUE;
+        if (limitParam != null) {
+            try {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+            } catch (NumberFormatException e) {
+                request.getServletContext().log("Invalid limit format: " + limitParam, e);
             }
+        }
+        Continuation after = cursorParam == null ? null : Continuation.decode(cursorParam);
+        if (cursorParam != null && after == null) {
+            request.getServletContext().log("Invalid search cursor: " + cursorParam);
+        }
 
-            String jdbcUrl = String.format("jdbc:mysql://%s:%s/%s?allowPublicKeyRetrieval=true&autoReconnect=true&useSSL=false&cachePrepStmts=true&serverTimezone=UTC",
-                    dbHost, dbPort, dbName);
+        JsonWriter json = JsonWriter.forResponse(response);
+        Catalog catalog = CatalogHolder.forRequest(request);
+        if (after != null && after.afterId == null && (catalog == null || ftQuery == null)) {
+            // A relevance-order cursor only means something to the catalog's ranked search; as an
+            // offset into id order (SQL, or a search without ft_query) it would name unrelated movies.
+            writeError(response, json, HttpServletResponse.SC_BAD_REQUEST,
+                    "This cursor cannot be continued; repeat the search without it.");
+            json.close();
+            return;
+        }
+        if (catalog != null) {
+            boolean fuzzy = "true".equalsIgnoreCase(request.getParameter("fuzzy"));
+            try {
+                ResultStream results = new ResultStream(json, paged, limit);
+                results.finish(searchCatalog(catalog, results, after, title, year, director, starName, ftQuery, fuzzy));
+            } finally {
+                json.close();
+            }
+            return;
+        }
 
-            System.out.println("Initializing DataSource with JDBC URL: " + jdbcUrl.replace(dbPassword, "****"));
+        StringBuilder queryBuilder = new StringBuilder(
+                "SELECT m.id, m.title, m.year, m.director FROM movies m WHERE 1=1 ");
+        if (ftQuery != null) {
+            queryBuilder.append("AND MATCH(m.title) AGAINST(? IN BOOLEAN MODE) ");
+        } else if (title != null) {
+            queryBuilder.append("AND m.title LIKE ? ");
+        }
+        if (year != null) {
+            queryBuilder.append("AND m.year = ? ");
+        }
+        if (director != null) {
+            queryBuilder.append("AND m.director LIKE ? ");
+        }
+        if (starName != null) {
+            // EXISTS rather than a join plus DISTINCT, which would collect every match in a temporary
+            // table before the first row could be sent.
+            queryBuilder.append("AND EXISTS (SELECT 1 FROM stars_in_movies sim JOIN stars s ON s.id = sim.starId " +
+                    "WHERE sim.movieId = m.id AND s.name LIKE ?) ");
+        }
+        if (after != null && after.afterId != null) {
+            queryBuilder.append("AND m.id > ? ");
+        }
+        if (paged) {
+            // Id order, so the next page starts after the last id. One row past the limit tells
+            // whether there is a next page; the LIMIT also matters because closing a streaming result
+            // set early still reads the rest of it off the wire. Without MATCH, MySQL walks the
+            // primary key in this order and sends rows as it finds them. The full-text index returns
+            // matches by relevance instead, so with ft_query MySQL sorts them (keeping limit + 1)
+            // before the first row of the page goes out.
+            queryBuilder.append("ORDER BY m.id LIMIT ?");
+        }
+        // Unpaged: no ORDER BY, so rows leave in the order the plan produces them, one at a time.
 
-            MysqlDataSource mysqlDataSource = new MysqlDataSource();
-            mysqlDataSource.setURL(jdbcUrl);
-            mysqlDataSource.setUser(dbUser);
-            mysqlDataSource.setPassword(dbPassword);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(queryBuilder.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams a forward-only, read-only result set row by row at this fetch size
+            // instead of buffering all of it.
+            statement.setFetchSize(Integer.MIN_VALUE);
 
-            this.dataSource = mysqlDataSource;
-            System.out.println("DataSource initialized programmatically using environment variables.");
+            int paramIndex = 1;
+            if (ftQuery != null) {
+                StringBuilder booleanModeQuery = new StringBuilder();
+                for (String term : ftQuery.split("\\s+")) {
+                    booleanModeQuery.append('+').append(term).append("* ");
+                }
+                statement.setString(paramIndex++, booleanModeQuery.toString().trim());
+            } else if (title != null) {
+                statement.setString(paramIndex++, "%" + title + "%");
+            }
+            if (year != null) {
+                statement.setInt(paramIndex++, year);
+            }
+            if (director != null) {
+                statement.setString(paramIndex++, "%" + director + "%");
+            }
+            if (starName != null) {
+                statement.setString(paramIndex++, "%" + starName + "%");
+            }
+            if (after != null && after.afterId != null) {
+                statement.setString(paramIndex++, after.afterId);
+            }
+            if (paged) {
+                statement.setInt(paramIndex++, limit + 1);
+            }
 
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultStream results = new ResultStream(json, paged, limit);
+                boolean more = false;
+                while (resultSet.next()) {
+                    if (results.isFull()) {
+                        more = true;
+                        break;
+                    }
+                    results.movie(resultSet.getString("id"), resultSet.getString("title"),
+                            resultSet.getInt("year"), resultSet.getString("director"));
+                }
+                results.finish(more ? Continuation.afterId(results.lastId) : null);
+            }
+        } catch (SQLException e) {
+            request.getServletContext().log("Database error during search: ", e);
+            writeError(response, json, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error: " + e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to initialize LoginServlet DataSource: " + e.getMessage(), e);
+            request.getServletContext().log("Search error: ", e);
+            writeError(response, json, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error: " + e.getMessage());
+        } finally {
+            json.close();
         }
     }
 
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
-
-        String title = request.getParameter("title");
-        String yearParam = request.getParameter("year");
-        String director = request.getParameter("director");
-        String starName = request.getParameter("star_name");
-        String ftQuery = request.getParameter("ft_query");
-
-        try (Connection connection = dataSource.getConnection()) {
+    /**
+     * Replaces whatever was written with an error object, unless part of the response has already
+     * been sent; then the client is left with truncated JSON, which it cannot mistake for a result.
+     */
+    private static void writeError(HttpServletResponse response, JsonWriter json, int status, String message) throws IOException {
+        if (!json.reset()) {
+            return;
+        }
+        response.setStatus(status);
+        json.beginObject()
+                .name("status").value("fail")
+                .name("message").value(message)
+                .endObject();
+    }
 
-            StringBuilder queryBuilder = new StringBuilder(
-                    "SELECT DISTINCT m.id, m.title, m.year, m.director " +
-                            "FROM movies m "
-            );
+    /**
+     * The same filters against the in-memory catalog. With ft_query the results come back in
+     * BM25 order, best title match first, unless the cursor came from a page served in id order.
+     * A relevance-order cursor reaches here only with ft_query (see doGet).
+     * With fuzzy=true, ft_query and star_name keywords may be misspelled by an edit or two.
+     *
+     * @return the cursor for the next batch, or null when every match was written
+     */
+    private static String searchCatalog(Catalog catalog, ResultStream results, Continuation after, String title,
+                                        Integer year, String director, String starName, String ftQuery,
+                                        boolean fuzzy) throws IOException {
+        int[] ranked = null;
+        String titleNeedle = null;
+        if (ftQuery != null) {
+            ranked = fuzzy ? catalog.searchTitlesFuzzy(ftQuery, Integer.MAX_VALUE) : catalog.searchTitles(ftQuery, Integer.MAX_VALUE);
+        } else if (title != null) {
+            titleNeedle = title.toLowerCase();
+        }
+        BitSet directed = director == null ? null : catalog.moviesWithDirectorContaining(director.toLowerCase());
+        BitSet starred = starName == null ? null
+                : fuzzy ? catalog.moviesOfStars(catalog.searchStarsFuzzy(starName.toLowerCase()))
+                : catalog.moviesWithStarNameContaining(starName.toLowerCase());
 
-            if (starName != null && !starName.trim().isEmpty()) {
-                queryBuilder.append("JOIN stars_in_movies sim ON m.id = sim.movieId JOIN stars s ON sim.starId = s.id ");
+        BitSet textMatches = null;
+        if (ranked != null && after != null && after.afterId != null) {
+            textMatches = new BitSet(catalog.movieCount());
+            for (int m : ranked) {
+                textMatches.set(m);
             }
+        }
+        BitSet fullText = textMatches;
+        String needle = titleNeedle;
+        IntPredicate accepted = m -> (fullText == null || fullText.get(m))
+                && (needle == null || catalog.titleContains(m, needle))
+                && (year == null || catalog.year(m) == year)
+                && (directed == null || directed.get(m))
+                && (starred == null || starred.get(m));
 
-            queryBuilder.append("WHERE 1=1 ");
-
-            if (ftQuery != null && !ftQuery.trim().isEmpty()) {
-                String booleanModeQuery = "";
-                String[] terms = ftQuery.trim().split("\\s+");
-                for (String term : terms) {
-                    booleanModeQuery += "+" + term + "* ";
+        if (ranked != null && (after == null || after.afterId == null)) {
+            int skip = after == null ? 0 : after.offset;
+            int matched = 0;
+            for (int m : ranked) {
+                if (!accepted.test(m) || matched++ < skip) continue;
+                if (results.isFull()) {
+                    return Continuation.afterOffset(skip + results.written);
                 }
-                queryBuilder.append("AND MATCH(m.title) AGAINST(? IN BOOLEAN MODE) ");
-            } else if (title != null && !title.trim().isEmpty()) {
-                queryBuilder.append("AND m.title LIKE ? ");
+                results.movie(catalog.movieId(m), catalog.title(m), catalog.year(m), catalog.director(m));
             }
+            return null;
+        }
 
-            if (yearParam != null && !yearParam.trim().isEmpty()) {
-                queryBuilder.append("AND m.year = ? ");
-            }
-            if (director != null && !director.trim().isEmpty()) {
-                queryBuilder.append("AND m.director LIKE ? ");
-            }
-            if (starName != null && !starName.trim().isEmpty()) {
-                queryBuilder.append("AND s.name LIKE ? ");
+        int start = after != null ? catalog.idRankAfter(after.afterId) : 0;
+        for (int rank = start; rank < catalog.movieCount(); rank++) {
+            int m = catalog.movieByIdRank(rank);
+            if (!accepted.test(m)) continue;
+            if (results.isFull()) {
+                return Continuation.afterId(results.lastId);
             }
+            results.movie(catalog.movieId(m), catalog.title(m), catalog.year(m), catalog.director(m));
+        }
+        return null;
+    }
 
-            try (PreparedStatement statement = connection.prepareStatement(queryBuilder.toString())) {
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
 
-                int paramIndex = 1;
-                if (ftQuery != null && !ftQuery.trim().isEmpty()) {
-                    String booleanModeQuery = "";
-                    String[] terms = ftQuery.trim().split("\\s+");
-                    for (String term : terms) {
-                        booleanModeQuery += "+" + term + "* ";
-                    }
-                    statement.setString(paramIndex++, booleanModeQuery.trim());
-                } else if (title != null && !title.trim().isEmpty()) {
-                    statement.setString(paramIndex++, "%" + title.trim() + "%");
-                }
+    /**
+     * Where the next batch starts: after a movie id when results are in id order, or after a number
+     * of matches when they are in relevance order. Sent as URL-safe base64 so clients treat it as
+     * opaque.
+     */
+    static final class Continuation {
+        final String afterId;
+        final int offset;
 
-                if (yearParam != null && !yearParam.trim().isEmpty()) {
-                    try {
-                        statement.setInt(paramIndex++, Integer.parseInt(yearParam.trim()));
-                    } catch (NumberFormatException e) {
-                        request.getServletContext().log("Invalid year format: " + yearParam, e);
-                    }
-                }
-                if (director != null && !director.trim().isEmpty()) {
-                    statement.setString(paramIndex++, "%" + director.trim() + "%");
+        private Continuation(String afterId, int offset) {
+            this.afterId = afterId;
+            this.offset = offset;
+        }
+
+        static String afterId(String movieId) {
+            return encode("id:" + movieId);
+        }
+
+        static String afterOffset(int offset) {
+            return encode("rank:" + offset);
+        }
+
+        static Continuation decode(String token) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                if (value.startsWith("id:") && value.length() > 3) {
+                    return new Continuation(value.substring(3), 0);
                 }
-                if (starName != null && !starName.trim().isEmpty()) {
-                    statement.setString(paramIndex++, "%" + starName.trim() + "%");
+                if (value.startsWith("rank:")) {
+                    int offset = Integer.parseInt(value.substring(5));
+                    return offset >= 0 ? new Continuation(null, offset) : null;
                 }
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
 
-                try (ResultSet resultSet = statement.executeQuery()) {
-                    JSONArray jsonArray = new JSONArray();
-                    while (resultSet.next()) {
-                        JSONObject movie = new JSONObject();
-                        movie.put("id", resultSet.getString("id"));
-                        movie.put("title", resultSet.getString("title"));
-                        movie.put("year", resultSet.getInt("year"));
-                        movie.put("director", resultSet.getString("director"));
-                        jsonArray.put(movie);
-                    }
-                    out.write(jsonArray.toString());
-                }
+        private static String encode(String value) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Writes movies to the response as they are produced; the writer sends its buffer as a chunk
+     * whenever it fills, so only the current row is ever held.
+     */
+    private static final class ResultStream {
+        private final JsonWriter json;
+        private final boolean paged;
+        private final int limit;
+        int written;
+        String lastId;
+
+        ResultStream(JsonWriter json, boolean paged, int limit) throws IOException {
+            this.json = json;
+            this.paged = paged;
+            this.limit = limit;
+            if (paged) {
+                json.beginObject().name("movies");
             }
-        } catch (SQLException e) {
-            request.getServletContext().log("Database error during search: ", e);
-            JSONObject error = new JSONObject();
-            error.put("status", "fail");
-            error.put("message", "Database error: " + e.getMessage());
-            out.write(error.toString());
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        } catch (Exception e) {
-            request.getServletContext().log("Search error: ", e);
-            JSONObject error = new JSONObject();
-            error.put("status", "fail");
-            error.put("message", "Internal error: " + e.getMessage());
-            out.write(error.toString());
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-        } finally {
-            if (out != null) {
-                out.close();
+            json.beginArray();
+        }
+
+        boolean isFull() {
+            return written >= limit;
+        }
+
+        void movie(String id, String title, int year, String director) throws IOException {
+            json.beginObject()
+                    .name("id").value(id)
+                    .name("title").value(title)
+                    .name("year").value(year);
+            if (director != null) {
+                // left out rather than null, as the org.json response did
+                json.name("director").value(director);
+            }
+            json.endObject();
+            written++;
+            lastId = id;
+        }
+
+        void finish(String next) throws IOException {
+            json.endArray();
+            if (paged) {
+                if (next != null) {
+                    json.name("next").value(next);
+                }
+                json.endObject();
             }
         }
     }
-}
\ No newline at end of file
+}
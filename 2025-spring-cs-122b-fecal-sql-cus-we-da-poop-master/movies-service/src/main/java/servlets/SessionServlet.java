@@ -6,17 +6,11 @@ import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
-import com.google.gson.JsonObject;
+import json.JsonWriter;
 
 @WebServlet(name = "SessionServlet", urlPatterns = "/api/session-data")
 public class SessionServlet extends HttpServlet {
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        PrintWriter out = response.getWriter();
-        JsonObject jsonResponse = new JsonObject();
-
         HttpSession session = request.getSession(false);
         String movieListUrl = "movies.html";
 
@@ -27,8 +21,8 @@ public class SessionServlet extends HttpServlet {
             }
         }
 
-        jsonResponse.addProperty("movieListUrl", movieListUrl);
-        out.write(jsonResponse.toString());
-        out.close();
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("movieListUrl").value(movieListUrl).endObject();
+        }
     }
-}
\ No newline at end of file
+}
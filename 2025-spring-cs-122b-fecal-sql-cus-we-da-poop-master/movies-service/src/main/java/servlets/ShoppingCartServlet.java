@@ -1,30 +1,24 @@
 package servlets;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import json.JsonWriter;
 import models.CartMovie;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @WebServlet(name = "ShoppingCartServlet", urlPatterns = "/api/shopping-cart")
 public class ShoppingCartServlet extends HttpServlet {
 
-    private static final Gson gson = new Gson();
-
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
         HttpSession session = request.getSession();
 
         @SuppressWarnings("unchecked")
@@ -34,39 +28,33 @@ public class ShoppingCartServlet extends HttpServlet {
             session.setAttribute("cart", cart);
         }
 
-        JsonArray cartJsonArray = new JsonArray();
         BigDecimal totalPrice = BigDecimal.ZERO;
 
-        for (Map.Entry<String, CartMovie> entry : cart.entrySet()) {
-            CartMovie item = entry.getValue();
-            JsonObject itemJson = new JsonObject();
-            itemJson.addProperty("movie_id", item.getMovieId());
-            itemJson.addProperty("movie_title", item.getMovieTitle());
-            itemJson.addProperty("quantity", item.getQuantity());
-
-            BigDecimal itemPrice = item.getPrice();
-            itemJson.addProperty("price", itemPrice != null ? itemPrice.doubleValue() : 0.0);
-
-            if (itemPrice != null) {
-                BigDecimal quantity = BigDecimal.valueOf(item.getQuantity());
-                totalPrice = totalPrice.add(itemPrice.multiply(quantity));
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("cart_items").beginArray();
+            for (Map.Entry<String, CartMovie> entry : cart.entrySet()) {
+                CartMovie item = entry.getValue();
+                BigDecimal itemPrice = item.getPrice();
+                json.beginObject()
+                        .name("movie_id").value(item.getMovieId())
+                        .name("movie_title").value(item.getMovieTitle())
+                        .name("quantity").value(item.getQuantity())
+                        .name("price").value(itemPrice != null ? itemPrice.doubleValue() : 0.0)
+                        .endObject();
+
+                if (itemPrice != null) {
+                    BigDecimal quantity = BigDecimal.valueOf(item.getQuantity());
+                    totalPrice = totalPrice.add(itemPrice.multiply(quantity));
+                }
             }
-            cartJsonArray.add(itemJson);
+            json.endArray()
+                    .name("total_price").value(totalPrice.doubleValue())
+                    .endObject();
         }
-
-        JsonObject responseJsonObject = new JsonObject();
-        responseJsonObject.add("cart_items", cartJsonArray);
-        responseJsonObject.addProperty("total_price", totalPrice.doubleValue());
-
-        out.write(gson.toJson(responseJsonObject));
-        response.setStatus(HttpServletResponse.SC_OK);
-        out.close();
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
         HttpSession session = request.getSession();
 
         @SuppressWarnings("unchecked")
@@ -77,11 +65,11 @@ public class ShoppingCartServlet extends HttpServlet {
 
         String movieId = request.getParameter("movie_id");
         String action = request.getParameter("action");
-        JsonObject responseJsonObject = new JsonObject();
+        Map<String, Object> responseJson = new LinkedHashMap<>();
 
         if (movieId == null || action == null || !cart.containsKey(movieId)) {
-            responseJsonObject.addProperty("status", "fail");
-            responseJsonObject.addProperty("message", "Missing parameters or item not found in cart.");
+            responseJson.put("status", "fail");
+            responseJson.put("message", "Missing parameters or item not found in cart.");
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
         } else {
             CartMovie item = cart.get(movieId);
@@ -105,27 +93,26 @@ public class ShoppingCartServlet extends HttpServlet {
                     updateSuccessful = true;
                     break;
                 default:
-                    responseJsonObject.addProperty("message", "Invalid action specified.");
+                    responseJson.put("message", "Invalid action specified.");
                     response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                     break;
             }
 
             if (updateSuccessful) {
                 session.setAttribute("cart", cart);
-                responseJsonObject.addProperty("status", "success");
-                responseJsonObject.addProperty("message", "Cart updated successfully.");
+                responseJson.put("status", "success");
+                responseJson.put("message", "Cart updated successfully.");
                 response.setStatus(HttpServletResponse.SC_OK);
             } else if (!response.isCommitted()){
-                responseJsonObject.addProperty("status", "fail");
-                if (!responseJsonObject.has("message")) {
-                    responseJsonObject.addProperty("message", "Failed to update cart.");
+                responseJson.put("status", "fail");
+                if (!responseJson.containsKey("message")) {
+                    responseJson.put("message", "Failed to update cart.");
                 }
                 if (response.getStatus() == HttpServletResponse.SC_OK) {
                     response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 }
             }
         }
-        out.write(gson.toJson(responseJsonObject));
-        out.close();
+        JsonWriter.write(response, responseJson);
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package servlets;
+
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import db.ReadYourWrites;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import json.JsonWriter;
+import models.IdBatch;
+import utils.QueryShapeRegistry;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several /api/star lookups in one request: {"stars": {id: star, ...}, "missing": [id, ...]}, with
+ * each star the object /api/star returns under "starInfo", in the order the ids were given. Ids the
+ * catalog snapshot has are answered from it; the rest with one IN-list query.
+ */
+@WebServlet(name = "StarBatchServlet", urlPatterns = "/api/stars/batch")
+public class StarBatchServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final QueryShapeRegistry QUERY_SHAPES = new QueryShapeRegistry("star-batch");
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        IdBatch batch = IdBatch.fromRequest(request);
+        if (batch.isEmpty() || batch.isTooLarge()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            writeError(response, "Expected 1 to " + IdBatch.MAX_IDS + " star ids in ids or id");
+            return;
+        }
+
+        Map<String, byte[]> stars = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        Catalog catalog = CatalogHolder.forRequest(request);
+        for (String id : batch.getIds()) {
+            int star = catalog == null ? -1 : catalog.star(id);
+            if (star >= 0) {
+                try (JsonWriter json = JsonWriter.inMemory()) {
+                    SingleStarServlet.writeStar(json, catalog, star);
+                    stars.put(id, json.toByteArray());
+                }
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            try (Connection connection = ReadYourWrites.getReadConnection(request)) {
+                load(connection, misses, stars);
+            } catch (SQLException e) {
+                request.getServletContext().log("SQL Error in StarBatchServlet for ids: " + misses, e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                writeError(response, "Database error occurred. " + e.getMessage());
+                return;
+            }
+        }
+
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("stars").beginObject();
+            List<String> missing = new ArrayList<>();
+            for (String id : batch.getIds()) {
+                byte[] star = stars.get(id);
+                if (star != null) {
+                    json.name(id).rawValue(star);
+                } else {
+                    missing.add(id);
+                }
+            }
+            json.endObject().name("missing").value(missing).endObject();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doGet(request, response);
+    }
+
+    /** Adds the JSON of every id in {@code ids} (at most {@link IdBatch#MAX_IDS}) that exists to {@code stars}. */
+    static void load(Connection connection, List<String> ids, Map<String, byte[]> stars) throws SQLException, IOException {
+        if (JsonAssembly.IN_DATABASE) {
+            loadAssembled(connection, ids, stars);
+        } else {
+            loadRows(connection, ids, stars);
+        }
+    }
+
+    /**
+     * {@link #load} with MySQL building each star's document. Public, like {@link #loadRows}, so
+     * the two assembly modes can be benchmarked against each other.
+     */
+    public static void loadAssembled(Connection connection, List<String> ids, Map<String, byte[]> stars) throws SQLException {
+        int slots = IdBatch.slots(ids.size());
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape("stars-json|" + slots, () -> JsonAssembly.starQuery(slots));
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            IdBatch.bind(statement, 1, ids, slots);
+            JsonAssembly.read(statement, stars);
+        }
+    }
+
+    /**
+     * {@link #load} reading one row per (star, movie), grouped by star and newest movie first, so
+     * each star is written as its rows go by.
+     */
+    public static void loadRows(Connection connection, List<String> ids, Map<String, byte[]> stars) throws SQLException, IOException {
+        int slots = IdBatch.slots(ids.size());
+        QueryShapeRegistry.Shape shape = QUERY_SHAPES.shape("stars|" + slots, () -> buildQuery(slots));
+        try (PreparedStatement statement = QUERY_SHAPES.prepare(connection, shape)) {
+            IdBatch.bind(statement, 1, ids, slots);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                JsonWriter json = null;
+                String starId = null;
+                try {
+                    while (resultSet.next()) {
+                        String rowStarId = resultSet.getString("starId");
+                        if (!rowStarId.equals(starId)) {
+                            if (json != null) {
+                                SingleStarServlet.endStar(json);
+                                stars.put(starId, json.toByteArray());
+                                json.close();
+                            }
+                            starId = rowStarId;
+                            json = JsonWriter.inMemory();
+                            Object birthYear = resultSet.getObject("birthYear");
+                            SingleStarServlet.beginStar(json, starId, resultSet.getString("starName"),
+                                    birthYear == null ? null : resultSet.getInt("birthYear"));
+                        }
+                        String movieId = resultSet.getString("movieId");
+                        if (movieId != null) {
+                            SingleStarServlet.writeMovie(json, movieId, resultSet.getString("movieTitle"),
+                                    resultSet.getInt("year"), resultSet.getString("director"));
+                        }
+                    }
+                    if (json != null) {
+                        SingleStarServlet.endStar(json);
+                        stars.put(starId, json.toByteArray());
+                    }
+                } finally {
+                    if (json != null) {
+                        json.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private static String buildQuery(int slots) {
+        return "SELECT s.id AS starId, s.name AS starName, s.birthYear, " +
+                "m.id AS movieId, m.title AS movieTitle, m.year, m.director " +
+                "FROM stars s " +
+                "LEFT JOIN stars_in_movies sm ON sm.starId = s.id " +
+                "LEFT JOIN movies m ON sm.movieId = m.id " +
+                "WHERE s.id IN (" + IdBatch.placeholders(slots) + ") " +
+                "ORDER BY s.id, m.year DESC, m.title ASC";
+    }
+
+    private static void writeError(HttpServletResponse response, String message) throws IOException {
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            json.beginObject().name("error").value(message).endObject();
+        }
+    }
+}
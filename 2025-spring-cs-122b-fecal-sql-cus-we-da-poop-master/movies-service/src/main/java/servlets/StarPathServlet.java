@@ -0,0 +1,90 @@
+package servlets;
+
+import catalog.Catalog;
+import catalog.CatalogHolder;
+import catalog.CoStarGraph;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import json.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Degrees of separation between two stars: /api/star-path?from=&to=[&max=] answers
+ * {"degrees": n, "path": [star, movie, star, ...]} with a shortest chain of shared movies, or
+ * {"degrees": null, "path": []} when none is at most max movies long (default 6). Answered only from
+ * the catalog snapshot's {@link CoStarGraph}; there is no SQL fallback, so it is 503 while no
+ * snapshot is loaded.
+ */
+@WebServlet(name = "StarPathServlet", urlPatterns = "/api/star-path")
+public class StarPathServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_MAX_MOVIES = 6;
+    private static final int MAX_MOVIES = 12;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String fromId = request.getParameter("from");
+        String toId = request.getParameter("to");
+        try (JsonWriter json = JsonWriter.forResponse(response)) {
+            if (fromId == null || fromId.trim().isEmpty() || toId == null || toId.trim().isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                json.beginObject().name("error").value("Missing from or to star id").endObject();
+                return;
+            }
+            int maxMovies = maxMovies(request.getParameter("max"));
+
+            Catalog catalog = CatalogHolder.current();
+            if (catalog == null) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                json.beginObject().name("error").value("Star graph is not loaded").endObject();
+                return;
+            }
+            int from = catalog.star(fromId.trim());
+            int to = catalog.star(toId.trim());
+            if (from < 0 || to < 0) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                json.beginObject().name("error").value("Star not found: " + (from < 0 ? fromId : toId)).endObject();
+                return;
+            }
+
+            int[] path = catalog.coStarGraph().path(from, to, maxMovies);
+            json.beginObject();
+            if (path == null) {
+                json.name("degrees").nullValue().name("path").beginArray().endArray();
+            } else {
+                json.name("degrees").value(path.length / 2).name("path").beginArray();
+                for (int i = 0; i < path.length; i++) {
+                    if (i % 2 == 0) {
+                        json.beginObject()
+                                .name("starId").value(catalog.starId(path[i]))
+                                .name("starName").value(catalog.starName(path[i]))
+                                .endObject();
+                    } else {
+                        json.beginObject()
+                                .name("movieId").value(catalog.movieId(path[i]))
+                                .name("title").value(catalog.title(path[i]))
+                                .name("year").value(catalog.year(path[i]))
+                                .endObject();
+                    }
+                }
+                json.endArray();
+            }
+            json.name("maxMovies").value(maxMovies).endObject();
+        }
+    }
+
+    private static int maxMovies(String max) {
+        if (max == null || max.trim().isEmpty()) {
+            return DEFAULT_MAX_MOVIES;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_MOVIES, Integer.parseInt(max.trim())));
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_MOVIES;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package utils;
 
+import catalog.CatalogChange;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -18,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -481,6 +483,8 @@ class CastsSaxHandler extends DefaultHandler {
 // --- Main Parser Orchestration Class ---
 public class FabflixXmlParser {
 
+    private static final int STAR_POPULARITY_REBUILD_THRESHOLD = 500;
+
     private BufferedWriter logWriter;
 
     private void initLogWriter() throws IOException {
@@ -621,6 +625,7 @@ public class FabflixXmlParser {
             insertGenresInMovies(conn, genreNameToId); // ← use this updated map
 
             insertStarsInMovies(conn, starNameToId);
+            CatalogChange.record(conn, CatalogChange.ALL, null);
 
             conn.commit();
             logInfo("\nDatabase insertion completed successfully!");
@@ -744,6 +749,7 @@ public class FabflixXmlParser {
 
     private void insertStarsInMovies(Connection conn, Map<String, String> starNameToId) throws SQLException {
         String sql = "INSERT IGNORE INTO stars_in_movies (starId, movieId) VALUES (?, ?)";
+        Set<String> touchedStarIds = new HashSet<>();
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             int batchCount = 0;
             for (CastingPojo casting : parsedCastings) {
@@ -752,6 +758,7 @@ public class FabflixXmlParser {
                     ps.setString(1, starId);
                     ps.setString(2, casting.movieXmlFid);
                     ps.addBatch();
+                    touchedStarIds.add(starId);
 
                     if (++batchCount % 500 == 0) {
                         ps.executeBatch();
@@ -762,6 +769,31 @@ public class FabflixXmlParser {
             ps.executeBatch();
             logInfo("Finished inserting all star-movie links.");
         }
+        refreshStarPopularity(conn, touchedStarIds);
+    }
+
+    /**
+     * Brings star_movie_counts/top_stars_per_movie up to date for the linked stars, in the loader's transaction.
+     * Past a few hundred stars a full rebuild is cheaper than refreshing each star's movies one by one.
+     */
+    private void refreshStarPopularity(Connection conn, Set<String> starIds) throws SQLException {
+        if (starIds.isEmpty()) {
+            return;
+        }
+        if (starIds.size() > STAR_POPULARITY_REBUILD_THRESHOLD) {
+            try (CallableStatement cs = conn.prepareCall("{CALL rebuild_star_popularity()}")) {
+                cs.execute();
+            }
+            logInfo("Rebuilt star popularity tables for " + starIds.size() + " linked stars.");
+            return;
+        }
+        try (CallableStatement cs = conn.prepareCall("{CALL refresh_star_popularity(?)}")) {
+            for (String starId : starIds) {
+                cs.setString(1, starId);
+                cs.execute();
+            }
+        }
+        logInfo("Refreshed star popularity for " + starIds.size() + " stars.");
     }
 
     public static void main(String[] args) {
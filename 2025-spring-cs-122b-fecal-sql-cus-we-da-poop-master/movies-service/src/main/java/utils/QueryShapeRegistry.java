@@ -0,0 +1,97 @@
+package utils;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import metrics.MetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Maps each canonical query shape to SQL text that is built exactly once.
+ * Because a shape always produces the identical string, Connector/J's server-side prepared
+ * statement cache (useServerPrepStmts + cachePrepStmts) prepares it once per physical connection
+ * and reuses the server handle afterwards. The registry tracks, per shape, how often a statement
+ * was requested on a connection that had already prepared it.
+ */
+public class QueryShapeRegistry {
+
+    public static final class Shape {
+        final String key;
+        final String sql;
+        final AtomicLong executions = new AtomicLong();
+        final AtomicLong connectionHits = new AtomicLong();
+        final Set<Object> preparedOn = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+        Shape(String key, String sql) {
+            this.key = key;
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    public QueryShapeRegistry(String name) {
+        MetricsRegistry.register("queryShapes." + name, this::stats);
+    }
+
+    /**
+     * Returns the shape for {@code key}, building its SQL with {@code sqlBuilder} the first time it is seen.
+     */
+    public Shape shape(String key, Supplier<String> sqlBuilder) {
+        Shape shape = shapes.get(key);
+        if (shape == null) {
+            // Counted in stats() ("shapes", and per shape "preparedOnConnections") rather than logged.
+            shape = shapes.computeIfAbsent(key, k -> new Shape(k, sqlBuilder.get()));
+        }
+        return shape;
+    }
+
+    public PreparedStatement prepare(Connection connection, Shape shape) throws SQLException {
+        shape.executions.incrementAndGet();
+        if (!shape.preparedOn.add(physicalConnection(connection))) {
+            shape.connectionHits.incrementAndGet();
+        }
+        return connection.prepareStatement(shape.sql);
+    }
+
+    private static Object physicalConnection(Connection connection) {
+        try {
+            return connection.unwrap(JdbcConnection.class);
+        } catch (SQLException e) {
+            return connection;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long totalExecutions = 0;
+        long totalHits = 0;
+        for (Shape shape : shapes.values()) {
+            long executions = shape.executions.get();
+            long hits = shape.connectionHits.get();
+            totalExecutions += executions;
+            totalHits += hits;
+            Map<String, Object> shapeStats = new LinkedHashMap<>();
+            shapeStats.put("executions", executions);
+            shapeStats.put("preparedOnConnections", executions - hits);
+            shapeStats.put("hitRate", executions == 0 ? 0.0 : (double) hits / executions);
+            stats.put(shape.key, shapeStats);
+        }
+        stats.put("shapes", shapes.size());
+        stats.put("hitRate", totalExecutions == 0 ? 0.0 : (double) totalHits / totalExecutions);
+        return stats;
+    }
+}
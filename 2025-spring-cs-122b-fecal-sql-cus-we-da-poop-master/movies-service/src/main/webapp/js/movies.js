@@ -181,6 +181,7 @@ function fetch_movies() {
     }
     if (!urlParams.has('limit')) { urlParams.set('limit', '25'); }
     if (!urlParams.has('page')) { urlParams.set('page', '1'); }
+    urlParams.set('total', 'true');
 
     let apiUrl = "api/movies?" + urlParams.toString();
     console.log("Fetching:", apiUrl);
@@ -221,6 +222,13 @@ function fetch_movies() {
                 else if (titleInitialFilter) cell.textContent = `No movies found starting with "${escapeHTML(titleInitialFilter)}"`;
                 else if (searchTitle) cell.textContent = `No movies found matching "${escapeHTML(searchTitle)}"`;
                 else cell.textContent = "No movies found matching the criteria";
+                if (data.didYouMean) {
+                    const suggestion = Object.values(data.didYouMean).join(", ");
+                    const link = document.createElement("a");
+                    link.href = `movies.html?${buildUpdatedUrl({ ...data.didYouMean, page: 1 })}`;
+                    link.textContent = suggestion;
+                    cell.append(". Did you mean ", link, "?");
+                }
                 row.appendChild(cell);
                 tableBody.appendChild(row);
                 updateButtonStates(data.currentPage || 1, false);
@@ -263,7 +271,11 @@ function fetch_movies() {
                 attachCartButtonListeners();
 
                 updateButtonStates(data.currentPage, data.hasMoreResults);
-                if(pageInfoSpan) pageInfoSpan.textContent = `Page ${data.currentPage}`;
+                if(pageInfoSpan) {
+                    pageInfoSpan.textContent = data.totalPages !== undefined
+                        ? `Page ${data.currentPage} of ${data.totalPages} (${data.totalResults} movies)`
+                        : `Page ${data.currentPage}`;
+                }
             }
 
             if (moviesDetailsDiv) { moviesDetailsDiv.style.display = 'none'; }
@@ -99,6 +99,17 @@ function fetch_single_star() {
                 html += "</ul>";
             }
 
+            if (Array.isArray(data.coStars) && data.coStars.length > 0) {
+                html += `<p><span class="label">Frequent Co-Stars:</span></p><ul>`;
+                data.coStars.forEach(coStar => {
+                    const movies = coStar.sharedMovies === 1 ? "1 movie" : `${coStar.sharedMovies} movies`;
+                    html += `<li>
+                        <a href="singlestar.html?id=${encodeURIComponent(coStar.starId)}">${coStar.starName}</a> (${movies})
+                    </li>`;
+                });
+                html += "</ul>";
+            }
+
             container.innerHTML = html;
 
         })
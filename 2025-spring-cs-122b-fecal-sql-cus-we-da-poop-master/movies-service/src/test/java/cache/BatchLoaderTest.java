@@ -0,0 +1,136 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchLoaderTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    /** Records every batch and answers "value-" + key, except for keys starting with "missing". */
+    private static final class Recorder implements BatchLoader.BatchFunction<String, String> {
+        final List<List<String>> batches = new ArrayList<>();
+        final CountDownLatch release;
+
+        Recorder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Map<String, String> load(List<String> keys) throws Exception {
+            synchronized (this) {
+                batches.add(new ArrayList<>(keys));
+            }
+            release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            Map<String, String> values = new HashMap<>();
+            for (String key : keys) {
+                if (!key.startsWith("missing")) {
+                    values.put(key, "value-" + key);
+                }
+            }
+            return values;
+        }
+    }
+
+    @Test
+    void loadsAKeyInFlightOnlyOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(release);
+        BatchLoader<String, String> loader = new BatchLoader<>("test-single-flight", recorder, 0, 10);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> loader.load("tt1", TIMEOUT_MILLIS)));
+            }
+            // Everyone else joins the first load, which is held open until they have.
+            while ((long) loader.stats().get("joinedInFlight") < 7) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("value-tt1", result.get());
+            }
+            assertEquals(1, recorder.batches.size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void batchesKeysThatArriveInOneWindow() throws Exception {
+        CountDownLatch release = new CountDownLatch(0);
+        Recorder recorder = new Recorder(release);
+        // A window long enough that the batch only closes by filling up.
+        BatchLoader<String, String> loader = new BatchLoader<>("test-window", recorder, 10_000_000, 4);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (String key : new String[] {"a", "b", "missing-c", "d"}) {
+                results.add(callers.submit(() -> loader.load(key, TIMEOUT_MILLIS)));
+            }
+            assertEquals("value-a", results.get(0).get());
+            assertEquals("value-b", results.get(1).get());
+            assertNull(results.get(2).get());
+            assertEquals("value-d", results.get(3).get());
+            assertEquals(1, recorder.batches.size());
+            assertEquals(4, recorder.batches.get(0).size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadsEachKeyAgainOnceTheLoadIsDone() throws Exception {
+        Recorder recorder = new Recorder(new CountDownLatch(0));
+        BatchLoader<String, String> loader = new BatchLoader<>("test-no-cache", recorder, 0, 10);
+        assertEquals("value-x", loader.load("x", TIMEOUT_MILLIS));
+        assertEquals("value-x", loader.load("x", TIMEOUT_MILLIS));
+        assertEquals(2, recorder.batches.size());
+    }
+
+    @Test
+    void rethrowsTheLoadFailureToEveryWaiter() throws Exception {
+        SQLException failure = new SQLException("replica down");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchLoader<String, String> loader = new BatchLoader<>("test-failure", keys -> {
+            started.countDown();
+            release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            throw failure;
+        }, 0, 10);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = callers.submit(() -> loader.load("k", TIMEOUT_MILLIS));
+            assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            Future<String> second = callers.submit(() -> loader.load("k", TIMEOUT_MILLIS));
+            while ((long) loader.stats().get("joinedInFlight") < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : List.of(first, second)) {
+                Exception e = assertThrows(Exception.class, result::get);
+                assertSame(failure, e.getCause());
+            }
+            assertEquals(1L, loader.stats().get("failures"));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsSaturateAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency("a"));
+        for (int i = 0; i < 3; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(3, sketch.frequency("a"));
+        for (int i = 0; i < 30; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    void neverUnderestimates() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        Random random = new Random(11);
+        int[] counts = new int[500];
+        for (int k = 0; k < counts.length; k++) {
+            counts[k] = random.nextInt(16);
+            for (int i = 0; i < counts[k]; i++) {
+                sketch.increment("key-" + k);
+            }
+        }
+        int exact = 0;
+        for (int k = 0; k < counts.length; k++) {
+            int estimate = sketch.frequency("key-" + k);
+            assertTrue(estimate >= counts[k], "key-" + k);
+            if (estimate == counts[k]) exact++;
+        }
+        // Four rows keep collisions rare at this load.
+        assertTrue(exact > counts.length * 9 / 10, exact + " exact estimates");
+    }
+
+    @Test
+    void halvesEveryCounterAfterTenAdditionsPerSlot() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+        int others = 0;
+        while (sketch.frequency("hot") == 15 && others < 1000) {
+            sketch.increment("other-" + others++);
+        }
+        assertTrue(sketch.frequency("hot") <= 7, "hot after reset: " + sketch.frequency("hot"));
+        // 32 slots: the reset comes after 320 additions, 15 of them for "hot".
+        assertTrue(others >= 305 && others < 1000, others + " other additions");
+    }
+}
@@ -0,0 +1,119 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+    private static final long MINUTE = 60_000;
+
+    private static byte[] body(int size) {
+        return new byte[size];
+    }
+
+    /** Keys other than {@code key} that land in its segment. */
+    private static List<String> sameSegment(String key, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String candidate = "page-" + i;
+            if (ResponseCache.segmentIndex(candidate) == ResponseCache.segmentIndex(key)) {
+                keys.add(candidate);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void returnsWhatWasStored() {
+        ResponseCache cache = new ResponseCache("test-hit", 1 << 20, MINUTE, 64);
+        byte[] body = {1, 2, 3};
+        assertNull(cache.get("a", 0));
+        cache.put("a", body, cache.generation(), 0);
+        assertArrayEquals(body, cache.get("a", 0));
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void dropsResponsesComputedBeforeAnInvalidation() {
+        ResponseCache cache = new ResponseCache("test-generation", 1 << 20, MINUTE, 64);
+        cache.put("a", body(1), cache.generation(), 0);
+        long generation = cache.generation();
+        cache.invalidateAll();
+        assertNull(cache.get("a", 0));
+        cache.put("a", body(1), generation, 0);
+        assertNull(cache.get("a", 0));
+        cache.put("a", body(1), cache.generation(), 0);
+        assertNotNull(cache.get("a", 0));
+    }
+
+    @Test
+    void writerSkipsEntriesBuiltFromDataOlderThanItsWrite() {
+        ResponseCache cache = new ResponseCache("test-writer", 1 << 20, MINUTE, 64);
+        cache.put("a", body(1), cache.generation(), 5_000);
+        assertNotNull(cache.get("a", 0));
+        assertNotNull(cache.get("a", 4_999));
+        assertNull(cache.get("a", 5_000));
+        assertNull(cache.get("a", 9_000));
+        // Data of unknown age is good for everybody except a session that wrote.
+        cache.put("b", body(1), cache.generation(), 0);
+        assertNotNull(cache.get("b", 0));
+        assertNull(cache.get("b", 1));
+    }
+
+    @Test
+    void expiredEntriesAreMisses() {
+        ResponseCache cache = new ResponseCache("test-expiry", 1 << 20, 0, 64);
+        cache.put("a", body(1), cache.generation(), 0);
+        assertNull(cache.get("a", 0));
+        assertEquals(1L, cache.stats().get("expirations"));
+    }
+
+    @Test
+    void burstOfOneOffQueriesDoesNotFlushAPopularPage() {
+        // Room for one 100-byte page per segment.
+        ResponseCache cache = new ResponseCache("test-burst", ResponseCache.SEGMENTS * 150, MINUTE, 64);
+        for (int i = 0; i < 5; i++) {
+            cache.get("popular", 0);
+        }
+        cache.put("popular", body(100), cache.generation(), 0);
+        for (String key : sameSegment("popular", 50)) {
+            cache.get(key, 0);
+            cache.put(key, body(100), cache.generation(), 0);
+            assertNull(cache.get(key, 0));
+        }
+        assertNotNull(cache.get("popular", 0));
+        assertEquals(50L, cache.stats().get("admissionRejections"));
+    }
+
+    @Test
+    void morePopularPageReplacesTheLeastRecentlyUsedOne() {
+        ResponseCache cache = new ResponseCache("test-replace", ResponseCache.SEGMENTS * 150, MINUTE, 64);
+        List<String> keys = sameSegment("old", 1);
+        cache.get("old", 0);
+        cache.put("old", body(100), cache.generation(), 0);
+        String rising = keys.get(0);
+        for (int i = 0; i < 3; i++) {
+            cache.get(rising, 0);
+        }
+        cache.put(rising, body(100), cache.generation(), 0);
+        assertNotNull(cache.get(rising, 0));
+        assertNull(cache.get("old", 0));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void bodiesLargerThanASegmentAreNotStored() {
+        ResponseCache cache = new ResponseCache("test-large", ResponseCache.SEGMENTS * 100, MINUTE, 64);
+        cache.put("a", body(101), cache.generation(), 0);
+        assertNull(cache.get("a", 0));
+        assertEquals(0L, cache.stats().get("bytes"));
+    }
+}
@@ -0,0 +1,94 @@
+package catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogChangeFeedTest {
+
+    private static final long WAIT = CatalogChangeFeed.GAP_WAIT_MILLIS;
+
+    private static List<CatalogChange> batch(long... seqs) {
+        List<CatalogChange> batch = new ArrayList<>();
+        for (long seq : seqs) {
+            batch.add(new CatalogChange(seq, CatalogChange.MOVIE, "tt" + seq, 0));
+        }
+        return batch;
+    }
+
+    private static CatalogChangeFeed.Progress startingAt(long seq) {
+        CatalogChangeFeed.Progress progress = new CatalogChangeFeed.Progress();
+        progress.contiguousSeq = seq;
+        return progress;
+    }
+
+    @Test
+    void advancesThroughAnUnbrokenRun() {
+        CatalogChangeFeed.Progress progress = startingAt(10);
+        assertEquals(13, progress.contiguousAfter(batch(11, 12, 13), 0));
+        progress.advance(batch(11, 12, 13), 0);
+        assertEquals(13, progress.contiguousSeq);
+        assertTrue(progress.seenAbove.isEmpty());
+        assertTrue(progress.gapNoticedAt.isEmpty());
+    }
+
+    @Test
+    void waitsForAHoleThenSkipsIt() {
+        CatalogChangeFeed.Progress progress = startingAt(0);
+        progress.advance(batch(1, 2, 4, 5), 1_000);
+        assertEquals(2, progress.contiguousSeq);
+        assertEquals(Collections.singleton(3L), progress.gapNoticedAt.keySet());
+
+        // Still inside the wait: nothing moves.
+        assertEquals(2, progress.contiguousAfter(batch(), 1_000 + WAIT));
+        progress.advance(batch(), 1_000 + WAIT);
+        assertEquals(2, progress.contiguousSeq);
+
+        // The hole timed out, e.g. a rolled-back insert.
+        assertEquals(5, progress.contiguousAfter(batch(), 1_001 + WAIT));
+        progress.advance(batch(), 1_001 + WAIT);
+        assertEquals(5, progress.contiguousSeq);
+        assertTrue(progress.seenAbove.isEmpty());
+        assertTrue(progress.gapNoticedAt.isEmpty());
+    }
+
+    @Test
+    void fillsAHoleThatCommitsLate() {
+        CatalogChangeFeed.Progress progress = startingAt(0);
+        progress.advance(batch(1, 3), 0);
+        assertEquals(1, progress.contiguousSeq);
+        // Seq 3 is never read again; the late seq 2 closes the hole.
+        assertEquals(3, progress.contiguousAfter(batch(2), 1));
+        progress.advance(batch(2), 1);
+        assertEquals(3, progress.contiguousSeq);
+        assertTrue(progress.gapNoticedAt.isEmpty());
+    }
+
+    @Test
+    void contiguousAfterLeavesTheProgressAlone() {
+        CatalogChangeFeed.Progress progress = startingAt(0);
+        progress.advance(batch(2), 0);
+        assertEquals(0, progress.contiguousAfter(batch(3, 4), WAIT));
+        assertEquals(4, progress.contiguousAfter(batch(1, 3, 4), WAIT));
+        assertEquals(0, progress.contiguousSeq);
+        assertEquals(Collections.singleton(2L), progress.seenAbove);
+        assertEquals(Collections.singleton(1L), progress.gapNoticedAt.keySet());
+    }
+
+    @Test
+    void eachHoleWaitsFromWhenItWasFound() {
+        CatalogChangeFeed.Progress progress = startingAt(0);
+        progress.advance(batch(2, 4), 0);
+        // Hole 1 times out; hole 3 is only noticed now and starts its own wait.
+        progress.advance(batch(), WAIT + 1);
+        assertEquals(2, progress.contiguousSeq);
+        assertEquals(Collections.singleton(3L), progress.gapNoticedAt.keySet());
+        progress.advance(batch(), 2 * WAIT + 2);
+        assertEquals(4, progress.contiguousSeq);
+    }
+}
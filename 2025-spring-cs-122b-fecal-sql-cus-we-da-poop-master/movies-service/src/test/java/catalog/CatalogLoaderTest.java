@@ -0,0 +1,145 @@
+package catalog;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The change-feed patch path, against the catalog tables in an in-memory H2 database.
+ */
+class CatalogLoaderTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void createTables() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:catalog;MODE=MySQL;NON_KEYWORDS=YEAR");
+        execute("CREATE TABLE movies (id VARCHAR(10) PRIMARY KEY, title VARCHAR(100) NOT NULL, year INT NOT NULL, director VARCHAR(100) NOT NULL)",
+                "CREATE TABLE ratings (movieId VARCHAR(10) PRIMARY KEY, rating FLOAT NOT NULL, numVotes INT NOT NULL)",
+                "CREATE TABLE stars (id VARCHAR(10) PRIMARY KEY, name VARCHAR(100) NOT NULL, birthYear INT)",
+                "CREATE TABLE stars_in_movies (starId VARCHAR(10) NOT NULL, movieId VARCHAR(10) NOT NULL, PRIMARY KEY (starId, movieId))",
+                "CREATE TABLE genres (id INT PRIMARY KEY AUTO_INCREMENT, name VARCHAR(32) NOT NULL)",
+                "CREATE TABLE genres_in_movies (genreId INT, movieId VARCHAR(10), PRIMARY KEY (genreId, movieId))",
+                "CREATE TABLE catalog_changes (seq BIGINT AUTO_INCREMENT PRIMARY KEY, entity VARCHAR(16) NOT NULL, entityId VARCHAR(10))",
+                "INSERT INTO movies VALUES ('tt1', 'Alpha', 2001, 'Ann Lee'), ('tt2', 'Beta', 2002, 'Bo Kim')",
+                "INSERT INTO ratings VALUES ('tt1', 7.5, 100)",
+                "INSERT INTO stars VALUES ('nm1', 'Cara Diaz', 1970), ('nm2', 'Dev Rao', NULL)",
+                "INSERT INTO stars_in_movies VALUES ('nm1', 'tt1'), ('nm2', 'tt1'), ('nm2', 'tt2')",
+                "INSERT INTO genres (id, name) VALUES (1, 'Drama'), (2, 'Comedy')",
+                "INSERT INTO genres_in_movies VALUES (1, 'tt1'), (2, 'tt2')",
+                "INSERT INTO catalog_changes (entity, entityId) VALUES ('movie', 'tt1'), ('movie', 'tt2')");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        // The last connection to a private in-memory database drops it.
+        connection.close();
+    }
+
+    private void execute(String... sqls) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : sqls) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private Catalog load(long startedMillis) throws SQLException {
+        CatalogLoader.Builder b = new CatalogLoader.Builder();
+        b.loadStartedMillis = startedMillis;
+        try (Statement statement = connection.createStatement()) {
+            CatalogLoader.read(statement, b);
+        }
+        return new Catalog(b);
+    }
+
+    private static Set<String> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static String[] starNames(Catalog catalog, int m) {
+        return Arrays.stream(catalog.movieStars[m]).mapToObj(s -> catalog.starNames[s]).toArray(String[]::new);
+    }
+
+    @Test
+    void patchesChangedRowsAndLinks() throws SQLException {
+        Catalog base = load(1_000);
+        assertEquals(2, base.changeSeq);
+        execute("UPDATE movies SET title = 'Alpha Redux' WHERE id = 'tt1'",
+                "INSERT INTO movies VALUES ('tt3', 'Gamma', 2003, 'Cy Ng')",
+                "INSERT INTO genres_in_movies VALUES (1, 'tt3'), (2, 'tt3')",
+                "INSERT INTO stars_in_movies VALUES ('nm1', 'tt3'), ('nm1', 'tt2')",
+                "INSERT INTO catalog_changes (entity, entityId) VALUES ('movie', 'tt1'), ('movie', 'tt3'), ('movie', 'tt2')");
+
+        Catalog next = CatalogLoader.applyChanges(base, connection, ids("tt1", "tt2", "tt3"), Collections.emptySet(), 5_000, 5);
+
+        assertEquals("Alpha Redux", next.titles[next.movie("tt1")]);
+        int gamma = next.movie("tt3");
+        assertTrue(gamma >= 0);
+        assertArrayEquals(new String[] {"Comedy", "Drama"},
+                Arrays.stream(next.movieGenres[gamma]).mapToObj(g -> next.genreNames[g]).toArray());
+        assertArrayEquals(new int[] {next.movie("tt1"), gamma}, next.genreMovies[next.genreIndex.get("drama")]);
+        // Cara Diaz is now in three movies, so she leads every cast she is in, newest movie first.
+        assertArrayEquals(new String[] {"Cara Diaz", "Dev Rao"}, starNames(next, next.movie("tt2")));
+        int cara = next.star("nm1");
+        assertArrayEquals(new int[] {gamma, next.movie("tt2"), next.movie("tt1")}, next.starMovies[cara]);
+        // The old snapshot is untouched.
+        assertEquals("Alpha", base.titles[base.movie("tt1")]);
+        assertEquals(-1, base.movie("tt3"));
+    }
+
+    @Test
+    void patchMovesTheWatermarksForwardOnly() throws SQLException {
+        Catalog base = load(1_000);
+        execute("UPDATE stars SET birthYear = 1980 WHERE id = 'nm2'");
+
+        Catalog next = CatalogLoader.applyChanges(base, connection, Collections.emptySet(), ids("nm2"), 5_000, 3);
+        assertEquals(5_000, next.getLoadStartedMillis());
+        assertEquals(3, next.changeSeq);
+        assertEquals(1980, next.birthYears[next.star("nm2")]);
+
+        // An incomplete batch (as of 0) or an older seq keeps what the base already had.
+        Catalog again = CatalogLoader.applyChanges(next, connection, Collections.emptySet(), ids("nm2"), 0, 1);
+        assertEquals(5_000, again.getLoadStartedMillis());
+        assertEquals(3, again.changeSeq);
+    }
+
+    @Test
+    void nameOnlyChangeKeepsTheCoStarGraph() throws SQLException {
+        Catalog base = load(1_000);
+        execute("UPDATE stars SET name = 'Cara Diaz-Reyes' WHERE id = 'nm1'");
+        Catalog next = CatalogLoader.applyChanges(base, connection, Collections.emptySet(), ids("nm1"), 2_000, 3);
+        assertEquals("Cara Diaz-Reyes", next.starNames[next.star("nm1")]);
+        assertSame(base.coStarGraph, next.coStarGraph);
+    }
+
+    @Test
+    void returnsNullWhenThePatchCannotExpressTheChange() throws SQLException {
+        Catalog base = load(1_000);
+        // A movie that is gone, and a movie in a genre the snapshot has never seen.
+        execute("DELETE FROM genres_in_movies WHERE movieId = 'tt2'",
+                "DELETE FROM stars_in_movies WHERE movieId = 'tt2'",
+                "DELETE FROM movies WHERE id = 'tt2'");
+        assertNull(CatalogLoader.applyChanges(base, connection, ids("tt2"), Collections.emptySet(), 2_000, 3));
+
+        execute("INSERT INTO genres (id, name) VALUES (3, 'Horror')",
+                "INSERT INTO movies VALUES ('tt4', 'Delta', 2004, 'Di Wu')",
+                "INSERT INTO genres_in_movies VALUES (3, 'tt4')");
+        assertNull(CatalogLoader.applyChanges(base, connection, ids("tt4"), Collections.emptySet(), 2_000, 3));
+    }
+}
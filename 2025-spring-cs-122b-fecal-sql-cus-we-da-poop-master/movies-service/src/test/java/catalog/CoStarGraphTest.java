@@ -0,0 +1,141 @@
+package catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoStarGraphTest {
+
+    /** Star lists per movie, inverted into movie lists per star. */
+    private static CoStarGraph graph(int starCount, int[][] movieStars) {
+        return new CoStarGraph(movieStars, invert(movieStars, starCount));
+    }
+
+    private static int[][] invert(int[][] movieStars, int starCount) {
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int s = 0; s < starCount; s++) lists.add(new ArrayList<>());
+        for (int m = 0; m < movieStars.length; m++) {
+            for (int s : movieStars[m]) lists.get(s).add(m);
+        }
+        int[][] starMovies = new int[starCount][];
+        for (int s = 0; s < starCount; s++) {
+            starMovies[s] = lists.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return starMovies;
+    }
+
+    @Test
+    void findsTheShortestChain() {
+        // 0 -m0- 1 -m1- 2 -m2- 3, with a shortcut 0 -m3- 3 through a second movie of star 0.
+        int[][] movieStars = {{0, 1}, {1, 2}, {2, 3}, {0, 4, 3}};
+        CoStarGraph graph = graph(5, movieStars);
+        assertArrayEquals(new int[] {0, 3, 3}, graph.path(0, 3, 6));
+        // Two movies either way round: through star 1, or back through the shortcut and star 3.
+        assertEquals(5, graph.path(0, 2, 6).length);
+        assertArrayEquals(new int[] {2}, graph.path(2, 2, 6));
+    }
+
+    @Test
+    void respectsTheMovieLimit() {
+        int[][] movieStars = {{0, 1}, {1, 2}, {2, 3}};
+        CoStarGraph graph = graph(5, movieStars);
+        assertNull(graph.path(0, 3, 2));
+        assertEquals(7, graph.path(0, 3, 3).length);
+        assertNull(graph.path(0, 4, 6));
+    }
+
+    @Test
+    void matchesBreadthFirstSearchOnRandomGraphs() {
+        Random random = new Random(3);
+        int starCount = 400;
+        int[][] movieStars = new int[600][];
+        for (int m = 0; m < movieStars.length; m++) {
+            movieStars[m] = random.ints(0, starCount).distinct().limit(1 + random.nextInt(4)).toArray();
+        }
+        int[][] starMovies = invert(movieStars, starCount);
+        CoStarGraph graph = new CoStarGraph(movieStars, starMovies);
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(starCount);
+            int to = random.nextInt(starCount);
+            int expected = distance(movieStars, starMovies, from, to);
+            int[] path = graph.path(from, to, 12);
+            if (expected < 0 || expected > 12) {
+                assertNull(path, from + " -> " + to);
+                continue;
+            }
+            assertNotNull(path, from + " -> " + to);
+            assertEquals(2 * expected + 1, path.length, from + " -> " + to);
+            assertEquals(from, path[0]);
+            assertEquals(to, path[path.length - 1]);
+            for (int p = 1; p < path.length; p += 2) {
+                int[] cast = movieStars[path[p]];
+                assertTrue(contains(cast, path[p - 1]) && contains(cast, path[p + 1]), Arrays.toString(path));
+            }
+        }
+    }
+
+    @Test
+    void ranksCoStarsBySharedMovies() {
+        // Star 0 shares three movies with star 2, two with star 1 and one with star 3.
+        int[][] movieStars = {{0, 1, 2}, {0, 1, 2}, {0, 2, 3}, {1, 3}};
+        CoStarGraph graph = graph(4, movieStars);
+        assertEquals(3, graph.coStarCount(0));
+        assertEquals(2, graph.coStar(0, 0));
+        assertEquals(3, graph.sharedMovies(0, 0));
+        assertEquals(1, graph.coStar(0, 1));
+        assertEquals(2, graph.sharedMovies(0, 1));
+        assertEquals(3, graph.coStar(0, 2));
+        assertEquals(1, graph.sharedMovies(0, 2));
+    }
+
+    @Test
+    void grownGraphHasNoLinksForNewStarsAndMovies() {
+        CoStarGraph graph = graph(3, new int[][] {{0, 1}, {1, 2}});
+        CoStarGraph grown = graph.withSize(4, 5);
+        assertArrayEquals(graph.path(0, 2, 6), grown.path(0, 2, 6));
+        assertNull(grown.path(0, 4, 6));
+        assertEquals(0, grown.coStarCount(4));
+        assertEquals(graph.coStarCount(1), grown.coStarCount(1));
+    }
+
+    /** Movies between two stars by plain breadth-first search over stars, or -1. */
+    private static int distance(int[][] movieStars, int[][] starMovies, int from, int to) {
+        int[] depth = new int[starMovies.length];
+        Arrays.fill(depth, -1);
+        depth[from] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            if (s == to) {
+                return depth[s];
+            }
+            for (int m : starMovies[s]) {
+                for (int t : movieStars[m]) {
+                    if (depth[t] < 0) {
+                        depth[t] = depth[s] + 1;
+                        queue.add(t);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+}
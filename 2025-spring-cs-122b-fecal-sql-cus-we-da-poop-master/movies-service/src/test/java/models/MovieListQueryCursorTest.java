@@ -0,0 +1,53 @@
+package models;
+
+import models.MovieListQuery.Cursor;
+import models.MovieListQuery.SortKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MovieListQueryCursorTest {
+
+    private static final List<SortKey> RATING_THEN_TITLE =
+            Arrays.asList(new SortKey("rating", false), new SortKey("title", true));
+
+    @Test
+    void roundTripsValuesAndMovieId() {
+        String token = Cursor.encode(RATING_THEN_TITLE, new Object[] {7.3, "Amélie, \"le\" film"}, "tt0211915");
+        Cursor cursor = Cursor.decode(token, RATING_THEN_TITLE);
+        assertEquals(7.3, cursor.value(0));
+        assertEquals("Amélie, \"le\" film", cursor.value(1));
+        assertEquals("tt0211915", cursor.getMovieId());
+
+        Cursor unrated = Cursor.decode(Cursor.encode(RATING_THEN_TITLE, new Object[] {0.0, ""}, "tt1"), RATING_THEN_TITLE);
+        assertEquals(0.0, unrated.value(0));
+        assertEquals("", unrated.value(1));
+    }
+
+    @Test
+    void tokensAreUrlSafe() {
+        String token = Cursor.encode(RATING_THEN_TITLE, new Object[] {9.9, "??>>~~"}, "tt9");
+        assertEquals(-1, token.indexOf('+'));
+        assertEquals(-1, token.indexOf('/'));
+        assertEquals(-1, token.indexOf('='));
+    }
+
+    @Test
+    void rejectsCursorsForAnotherSortOrder() {
+        String token = Cursor.encode(RATING_THEN_TITLE, new Object[] {7.3, "A"}, "tt1");
+        assertNull(Cursor.decode(token, Arrays.asList(new SortKey("title", true), new SortKey("rating", false))));
+        assertNull(Cursor.decode(token, Arrays.asList(new SortKey("rating", true), new SortKey("title", true))));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertNull(Cursor.decode("not base64!", RATING_THEN_TITLE));
+        assertNull(Cursor.decode("", RATING_THEN_TITLE));
+        String valid = Cursor.encode(RATING_THEN_TITLE, new Object[] {1.0, "A"}, "tt1");
+        assertNull(Cursor.decode(valid.substring(0, valid.length() - 6), RATING_THEN_TITLE));
+    }
+}
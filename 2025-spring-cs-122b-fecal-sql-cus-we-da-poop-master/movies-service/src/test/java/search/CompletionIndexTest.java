@@ -0,0 +1,80 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompletionIndexTest {
+
+    @Test
+    void completesAnyWordRunByPopularity() {
+        String[] titles = {"Star Wars: Episode II", "Wars of the Roses", "A Star Is Born", "Starship Troopers"};
+        int[] rank = {1, 3, 0, 2};
+        CompletionIndex index = CompletionIndex.build(titles, rank, 10);
+
+        assertArrayEquals(new int[] {2, 0, 3}, index.complete("star"));
+        assertArrayEquals(new int[] {0, 1}, index.complete("WARS"));
+        assertArrayEquals(new int[] {0}, index.complete("star wars ep"));
+        // Punctuation and spacing in the prefix normalize the same way as in titles.
+        assertArrayEquals(new int[] {0}, index.complete("  wars -- episode"));
+        assertArrayEquals(new int[0], index.complete("starz"));
+        assertArrayEquals(new int[] {2, 0, 3, 1}, index.complete(""));
+    }
+
+    @Test
+    void keepsOnlyTheBestK() {
+        String[] titles = {"Alien", "Aliens", "Alien 3", "Alien Resurrection"};
+        int[] rank = {0, 1, 3, 2};
+        CompletionIndex index = CompletionIndex.build(titles, rank, 2);
+        assertArrayEquals(new int[] {0, 1}, index.complete("alien"));
+        assertArrayEquals(new int[] {3}, index.complete("alien r"));
+        assertArrayEquals(new int[] {2}, index.complete("3"));
+    }
+
+    @Test
+    void normalizesLikeTheTrieWalk() {
+        assertEquals("se7en the 2nd cut", CompletionIndex.normalize("  Se7en: The 2nd Cut!"));
+        assertEquals("", CompletionIndex.normalize("?!"));
+    }
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(5);
+        String[] vocabulary = {"the", "star", "stars", "war", "wars", "night", "knight", "2", "ii", "a"};
+        String[] titles = new String[500];
+        for (int m = 0; m < titles.length; m++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 1 + random.nextInt(4); w > 0; w--) {
+                title.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextBoolean() ? " " : ": ");
+            }
+            titles[m] = title.toString();
+        }
+        int[] rank = new int[titles.length];
+        List<Integer> order = new ArrayList<>();
+        for (int m = 0; m < titles.length; m++) order.add(m);
+        Collections.shuffle(order, random);
+        for (int r = 0; r < order.size(); r++) rank[order.get(r)] = r;
+        CompletionIndex index = CompletionIndex.build(titles, rank, 8);
+
+        for (String prefix : new String[] {"st", "star w", "wars the", "kn", "ii 2", "the the", "a st", "x"}) {
+            String normalized = CompletionIndex.normalize(prefix);
+            List<Integer> expected = new ArrayList<>();
+            for (int m = 0; m < titles.length; m++) {
+                String title = " " + CompletionIndex.normalize(titles[m]);
+                if (title.contains(" " + normalized)) {
+                    expected.add(m);
+                }
+            }
+            expected.sort(Comparator.comparingInt(m -> rank[m]));
+            int[] best = expected.stream().limit(8).mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(best, index.complete(prefix), prefix);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedBitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * Values in four chunks: chunk 0 sparse (array), chunk 1 dense (bitmap), chunk 2 empty,
+     * chunk 3 with {@code density} of its values.
+     */
+    private static BitSet sample(Random random, double density) {
+        BitSet bits = new BitSet();
+        for (int v = 0; v < CHUNK; v++) {
+            if (random.nextInt(100) == 0) bits.set(v);
+        }
+        for (int v = CHUNK; v < 2 * CHUNK; v++) {
+            if (random.nextInt(2) == 0) bits.set(v);
+        }
+        for (int v = 3 * CHUNK; v < 4 * CHUNK; v++) {
+            if (random.nextDouble() < density) bits.set(v);
+        }
+        return bits;
+    }
+
+    private static void assertSame(BitSet expected, CompressedBitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+    }
+
+    @Test
+    void roundTripsArrayAndBitmapChunks() {
+        BitSet bits = sample(new Random(1), 0.2);
+        CompressedBitmap bitmap = CompressedBitmap.of(bits);
+        assertSame(bits, bitmap);
+        for (int v = 0; v < 4 * CHUNK + 10; v += 97) {
+            assertEquals(bits.get(v), bitmap.contains(v), "contains " + v);
+        }
+    }
+
+    @Test
+    void andOrAndCardinalityMatchBitSet() {
+        Random random = new Random(7);
+        // Chunk 3 crosses the array/bitmap limit (4096 values) in both directions.
+        double[] densities = {0.001, 0.05, 0.0625, 0.07, 0.5};
+        for (double left : densities) {
+            for (double right : densities) {
+                BitSet a = sample(random, left);
+                BitSet b = sample(random, right);
+                CompressedBitmap x = CompressedBitmap.of(a);
+                CompressedBitmap y = CompressedBitmap.of(b);
+
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                BitSet or = (BitSet) a.clone();
+                or.or(b);
+                assertSame(and, x.and(y));
+                assertSame(or, x.or(y));
+                assertEquals(and.cardinality(), x.andCardinality(y));
+                assertEquals(and.cardinality(), y.andCardinality(x));
+            }
+        }
+    }
+
+    @Test
+    void disjointChunksAndEmptySets() {
+        CompressedBitmap low = CompressedBitmap.of(new int[] {1, 2, 3});
+        CompressedBitmap high = CompressedBitmap.of(new int[] {5 * CHUNK, 5 * CHUNK + 1});
+        assertTrue(low.and(high).isEmpty());
+        assertEquals(0, low.andCardinality(high));
+        assertArrayEquals(new int[] {1, 2, 3, 5 * CHUNK, 5 * CHUNK + 1}, low.or(high).toArray());
+        assertArrayEquals(low.toArray(), low.or(CompressedBitmap.EMPTY).toArray());
+        assertTrue(low.and(CompressedBitmap.EMPTY).isEmpty());
+        assertFalse(CompressedBitmap.EMPTY.contains(0));
+    }
+
+    @Test
+    void intersectionThatEmptiesABitmapChunkDropsIt() {
+        int[] evens = new int[CHUNK / 2];
+        int[] odds = new int[CHUNK / 2];
+        for (int i = 0; i < evens.length; i++) {
+            evens[i] = 2 * i;
+            odds[i] = 2 * i + 1;
+        }
+        CompressedBitmap x = CompressedBitmap.of(evens);
+        CompressedBitmap y = CompressedBitmap.of(odds);
+        assertTrue(x.and(y).isEmpty());
+        assertEquals(CHUNK, x.or(y).cardinality());
+    }
+}
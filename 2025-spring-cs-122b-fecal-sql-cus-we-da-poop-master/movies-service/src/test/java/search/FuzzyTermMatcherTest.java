@@ -0,0 +1,96 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzyTermMatcherTest {
+
+    private static Map<String, Integer> match(String[] terms, String keyword) {
+        Map<String, Integer> matches = new HashMap<>();
+        for (FuzzyTermMatcher.Match match : new FuzzyTermMatcher(terms).match(keyword)) {
+            matches.put(terms[match.term], match.distance);
+        }
+        return matches;
+    }
+
+    @Test
+    void findsMisspelledPrefixes() {
+        String[] terms = {"godfather", "godzilla", "gold", "hangover", "hanks", "harry"};
+        Map<String, Integer> godfathr = match(terms, "godfathr");
+        assertEquals(Integer.valueOf(1), godfathr.get("godfather"));
+        assertEquals(1, godfathr.size());
+
+        Map<String, Integer> hanx = match(terms, "hanx");
+        assertEquals(Integer.valueOf(1), hanx.get("hanks"));
+        assertTrue(hanx.containsKey("hangover"));
+        assertTrue(!hanx.containsKey("harry"));
+
+        // Exact prefixes are matches at distance 0; three letters allow no edit.
+        assertEquals(Integer.valueOf(0), match(terms, "god").get("godzilla"));
+        assertTrue(match(terms, "gox").isEmpty());
+    }
+
+    @Test
+    void firstLetterMustBeRight() {
+        assertTrue(match(new String[] {"godfather"}, "modfather").isEmpty());
+    }
+
+    @Test
+    void emptyKeywordMatchesNothing() {
+        assertTrue(match(new String[] {"a", "b"}, "").isEmpty());
+    }
+
+    @Test
+    void prefixDistanceIsTheClosestPrefix() {
+        int[] rows = new int[64];
+        assertEquals(0, FuzzyTermMatcher.prefixDistance("star", "starship", 2, rows));
+        assertEquals(1, FuzzyTermMatcher.prefixDistance("strr", "starship", 2, rows));
+        assertEquals(2, FuzzyTermMatcher.prefixDistance("stxxs", "starship", 2, rows));
+        assertEquals(2, FuzzyTermMatcher.prefixDistance("sxxxxx", "starship", 1, rows));
+    }
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(11);
+        TreeSet<String> dictionary = new TreeSet<>();
+        while (dictionary.size() < 3_000) {
+            dictionary.add(word(random, 2 + random.nextInt(9)));
+        }
+        String[] terms = dictionary.toArray(new String[0]);
+        FuzzyTermMatcher matcher = new FuzzyTermMatcher(terms);
+        int[] rows = new int[64];
+        for (int i = 0; i < 300; i++) {
+            String keyword = word(random, 1 + random.nextInt(10));
+            int maxEdits = FuzzyTermMatcher.maxEdits(keyword.length());
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int t = 0; t < terms.length; t++) {
+                int distance = FuzzyTermMatcher.prefixDistance(keyword, terms[t], maxEdits, rows);
+                if (terms[t].charAt(0) == keyword.charAt(0) && distance <= maxEdits) {
+                    expected.put(t, distance);
+                }
+            }
+            Map<Integer, Integer> actual = new HashMap<>();
+            for (FuzzyTermMatcher.Match match : matcher.match(keyword)) {
+                actual.put(match.term, match.distance);
+            }
+            assertEquals(expected, actual, keyword + " in " + Arrays.toString(Arrays.copyOf(terms, 5)) + "...");
+        }
+    }
+
+    /** Letters from a small alphabet, so near misses are common. */
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append("abcdeno".charAt(random.nextInt(7)));
+        }
+        return word.toString();
+    }
+}
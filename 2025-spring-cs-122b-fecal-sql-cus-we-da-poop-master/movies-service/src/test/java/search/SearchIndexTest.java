@@ -0,0 +1,108 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    private static final String[][] TITLES = {
+            words("the dark knight"),
+            words("the dark knight rises"),
+            words("dark city"),
+            words("knight and day"),
+            words("a knight's tale"),
+            words("the darkest hour"),
+    };
+
+    private static String[] words(String title) {
+        return title.split(" ");
+    }
+
+    private static BitSet docs(int... docs) {
+        BitSet set = new BitSet();
+        for (int d : docs) set.set(d);
+        return set;
+    }
+
+    @Test
+    void everyKeywordMustPrefixAWord() {
+        SearchIndex index = SearchIndex.build(TITLES);
+        assertEquals(docs(0, 1, 2, 5), index.matchAll(words("dark")));
+        assertEquals(docs(0, 1), index.matchAll(words("dark kni")));
+        assertEquals(docs(), index.matchAll(words("dark day")));
+        assertNull(index.matchAll(new String[0]));
+    }
+
+    @Test
+    void ranksShorterTitlesFirst() {
+        SearchIndex index = SearchIndex.build(TITLES);
+        assertArrayEquals(new int[] {1}, index.search(words("knight rises"), 10));
+        // The shorter title weighs the shared words more.
+        assertArrayEquals(new int[] {0, 1}, index.search(words("dark knight"), 10));
+        assertArrayEquals(new int[] {2}, index.search(words("city"), 10));
+        assertEquals(0, index.search(words("dark"), 0).length);
+    }
+
+    @Test
+    void keepsTheBestLimitOfManyMatches() {
+        Random random = new Random(7);
+        String[] vocabulary = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta"};
+        String[][] titles = new String[2_000][];
+        for (int d = 0; d < titles.length; d++) {
+            titles[d] = random.ints(1 + random.nextInt(6), 0, vocabulary.length)
+                    .mapToObj(i -> vocabulary[i]).toArray(String[]::new);
+        }
+        SearchIndex index = SearchIndex.build(titles);
+        int[] all = index.search(words("alpha be"), titles.length);
+        assertEquals(index.matchAll(words("alpha be")).cardinality(), all.length);
+        for (int limit : new int[] {1, 10, 100}) {
+            assertArrayEquals(Arrays.copyOf(all, limit), index.search(words("alpha be"), limit));
+        }
+    }
+
+    @Test
+    void updateMatchesAFreshBuild() {
+        SearchIndex index = SearchIndex.build(TITLES);
+        String[][] changed = Arrays.copyOf(TITLES, TITLES.length + 1);
+        changed[2] = words("dark water");
+        changed[TITLES.length] = words("the knight before christmas");
+
+        SearchIndex updated = index.update(changed);
+        SearchIndex rebuilt = SearchIndex.build(changed);
+        assertEquals(rebuilt.termCount(), updated.termCount());
+        assertEquals(rebuilt.documentCount(), updated.documentCount());
+        for (String query : new String[] {"dark", "knight", "city", "wat", "the kn", "christmas"}) {
+            assertEquals(rebuilt.matchAll(words(query)), updated.matchAll(words(query)), query);
+            assertArrayEquals(rebuilt.search(words(query), 10), updated.search(words(query), 10), query);
+        }
+        assertTrue(updated.matchAll(words("city")).isEmpty());
+    }
+
+    @Test
+    void fuzzyMatchesToleratesTyposButRanksExactMatchesFirst() {
+        SearchIndex index = SearchIndex.build(TITLES);
+        assertEquals(docs(), index.matchAll(words("knigt")));
+        assertEquals(docs(0, 1, 3, 4), index.matchAllFuzzy(words("knigt")));
+        assertNull(index.matchAllFuzzy(new String[0]));
+
+        String[][] titles = {words("kight club"), words("knight club")};
+        assertArrayEquals(new int[] {1, 0}, SearchIndex.build(titles).searchFuzzy(words("knight"), 10));
+    }
+
+    @Test
+    void correctsOnlyKeywordsThatMatchNothing() {
+        SearchIndex index = SearchIndex.build(TITLES);
+        assertEquals("dark knight", index.correct(words("dark knigt")));
+        assertNull(index.correct(words("dark kni")));
+        // No close term at all: nothing to suggest.
+        assertNull(index.correct(words("dark zzzzzz")));
+    }
+}
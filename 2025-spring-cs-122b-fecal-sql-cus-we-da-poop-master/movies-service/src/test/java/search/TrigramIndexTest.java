@@ -0,0 +1,80 @@
+package search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrigramIndexTest {
+
+    private static BitSet scan(String[] values, String needle) {
+        BitSet matches = new BitSet();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && values[i].contains(needle)) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    @Test
+    void findsSubstringsLikeALikeScan() {
+        String[] values = {"steven spielberg", "christopher nolan", null, "nolan bushnell", "lana wachowski", "ol"};
+        TrigramIndex index = TrigramIndex.build(values);
+        for (String needle : new String[] {"nolan", "olan", "ol", "n", "spiel", "lan", "nal", "", "zzz", "chri"}) {
+            assertEquals(scan(values, needle), index.containing(needle), needle);
+        }
+    }
+
+    @Test
+    void verifiesTrigramsAppearInOrder() {
+        // Both values hold "abc" and "bcd"; only one holds "abcd".
+        String[] values = {"abcxbcd", "abcd"};
+        BitSet expected = new BitSet();
+        expected.set(1);
+        assertEquals(expected, TrigramIndex.build(values).containing("abcd"));
+    }
+
+    @Test
+    void matchesAScanOnRandomValues() {
+        Random random = new Random(13);
+        String[] values = new String[2_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(50) == 0 ? null : word(random, 3 + random.nextInt(12));
+        }
+        TrigramIndex index = TrigramIndex.build(values);
+        for (int i = 0; i < 500; i++) {
+            String needle = word(random, 1 + random.nextInt(5));
+            assertEquals(scan(values, needle), index.containing(needle), needle);
+        }
+    }
+
+    @Test
+    void updateMatchesAFreshBuild() {
+        String[] values = {"ann lee", "bo kim", "cy ng", "di wu"};
+        TrigramIndex index = TrigramIndex.build(values);
+        String[] changed = Arrays.copyOf(values, values.length + 1);
+        changed[1] = "bo kimberly";
+        changed[2] = null;
+        changed[4] = "ed ann";
+
+        TrigramIndex updated = index.update(changed);
+        TrigramIndex rebuilt = TrigramIndex.build(changed);
+        assertEquals(rebuilt.gramCount(), updated.gramCount());
+        for (String needle : new String[] {"ann", "kim", "berly", "cy n", "wu", "d a"}) {
+            assertEquals(rebuilt.containing(needle), updated.containing(needle), needle);
+        }
+    }
+
+    /** Letters from a small alphabet, with spaces, so substrings repeat across values. */
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append("abcn ".charAt(random.nextInt(5)));
+        }
+        return word.toString();
+    }
+}
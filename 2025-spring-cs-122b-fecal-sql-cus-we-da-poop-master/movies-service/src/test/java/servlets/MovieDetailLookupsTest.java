@@ -0,0 +1,107 @@
+package servlets;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The batched movie lookups against the movie tables in an in-memory H2 database, each lookup on
+ * its own connection as it would be from the pool.
+ */
+class MovieDetailLookupsTest {
+
+    private JdbcDataSource source;
+    private Connection keepAlive;
+
+    @BeforeEach
+    void createTables() throws SQLException {
+        source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:movie-detail;MODE=MySQL;NON_KEYWORDS=YEAR");
+        // Holds the named in-memory database open while the lookups open and close their own.
+        keepAlive = source.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            for (String sql : new String[] {
+                    "CREATE TABLE movies (id VARCHAR(10) PRIMARY KEY, title VARCHAR(100) NOT NULL, year INT NOT NULL, director VARCHAR(100) NOT NULL)",
+                    "CREATE TABLE ratings (movieId VARCHAR(10) PRIMARY KEY, rating FLOAT NOT NULL, numVotes INT NOT NULL)",
+                    "CREATE TABLE stars (id VARCHAR(10) PRIMARY KEY, name VARCHAR(100) NOT NULL, birthYear INT)",
+                    "CREATE TABLE stars_in_movies (starId VARCHAR(10) NOT NULL, movieId VARCHAR(10) NOT NULL, PRIMARY KEY (starId, movieId))",
+                    "CREATE TABLE genres (id INT PRIMARY KEY, name VARCHAR(32) NOT NULL)",
+                    "CREATE TABLE genres_in_movies (genreId INT, movieId VARCHAR(10), PRIMARY KEY (genreId, movieId))",
+                    "CREATE TABLE star_movie_counts (starId VARCHAR(10) PRIMARY KEY, movieCount INT NOT NULL)",
+                    "INSERT INTO movies VALUES ('tt1', 'Alpha', 2001, 'Ann Lee'), ('tt2', 'Beta', 2002, 'Bo Kim'), ('tt3', 'Gamma', 2003, 'Cy Ng')",
+                    "INSERT INTO ratings VALUES ('tt1', 7.3, 100)",
+                    "INSERT INTO stars VALUES ('nm1', 'Cara Diaz', 1970), ('nm2', 'Dev Rao', NULL), ('nm3', 'Abe Fox', NULL)",
+                    "INSERT INTO stars_in_movies VALUES ('nm1', 'tt1'), ('nm2', 'tt1'), ('nm3', 'tt1'), ('nm2', 'tt2')",
+                    "INSERT INTO star_movie_counts VALUES ('nm1', 1), ('nm2', 2), ('nm3', 1)",
+                    "INSERT INTO genres VALUES (1, 'Drama'), (2, 'Comedy')",
+                    "INSERT INTO genres_in_movies VALUES (1, 'tt1'), (2, 'tt1'), (1, 'tt2')"}) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        keepAlive.close();
+    }
+
+    private Map<String, String> load(String... ids) throws Exception {
+        Map<String, byte[]> movies = new HashMap<>();
+        MovieDetailLookups.load(source, Arrays.asList(ids), movies);
+        Map<String, String> json = new HashMap<>();
+        movies.forEach((id, bytes) -> json.put(id, new String(bytes, StandardCharsets.UTF_8)));
+        return json;
+    }
+
+    @Test
+    void assemblesEveryMovieOfTheBatch() throws Exception {
+        Map<String, String> movies = load("tt1", "tt2", "tt3", "tt9");
+        assertEquals(new HashSet<>(Arrays.asList("tt1", "tt2", "tt3")), movies.keySet());
+
+        String alpha = movies.get("tt1");
+        assertTrue(alpha.contains("\"rating\":7.3"), alpha);
+        assertTrue(alpha.contains("\"genres\":\"2:Comedy,1:Drama\""), alpha);
+        // Most movies first, then by name.
+        assertTrue(alpha.contains("\"stars\":\"nm2:Dev Rao,nm3:Abe Fox,nm1:Cara Diaz\""), alpha);
+
+        String gamma = movies.get("tt3");
+        assertTrue(gamma.contains("\"rating\":null"), gamma);
+        assertTrue(gamma.contains("\"genres\":\"\""), gamma);
+        assertTrue(gamma.contains("\"stars\":\"\""), gamma);
+    }
+
+    @Test
+    void singleIdMatchesTheSameMovieInABatch() throws Exception {
+        assertEquals(load("tt1", "tt2").get("tt2"), load("tt2").get("tt2"));
+    }
+
+    @Test
+    void listsTheCastByNameWhenPopularityIsUnavailable() throws Exception {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP TABLE star_movie_counts");
+        }
+        String alpha = load("tt1").get("tt1");
+        assertTrue(alpha.contains("\"stars\":\"nm3:Abe Fox,nm1:Cara Diaz,nm2:Dev Rao\""), alpha);
+    }
+
+    @Test
+    void findsNothingForUnknownIds() throws Exception {
+        assertTrue(load("tt8", "tt9").isEmpty());
+    }
+}
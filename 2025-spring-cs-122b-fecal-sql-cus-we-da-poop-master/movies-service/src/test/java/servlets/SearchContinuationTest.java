@@ -0,0 +1,38 @@
+package servlets;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SearchContinuationTest {
+
+    @Test
+    void roundTripsMovieIds() {
+        SearchServlet.Continuation after = SearchServlet.Continuation.decode(SearchServlet.Continuation.afterId("tt0499549"));
+        assertEquals("tt0499549", after.afterId);
+    }
+
+    @Test
+    void roundTripsRankOffsets() {
+        SearchServlet.Continuation after = SearchServlet.Continuation.decode(SearchServlet.Continuation.afterOffset(50));
+        assertNull(after.afterId);
+        assertEquals(50, after.offset);
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertNull(SearchServlet.Continuation.decode("%%%"));
+        assertNull(SearchServlet.Continuation.decode(encode("id:")));
+        assertNull(SearchServlet.Continuation.decode(encode("rank:-10")));
+        assertNull(SearchServlet.Continuation.decode(encode("rank:ten")));
+        assertNull(SearchServlet.Continuation.decode(encode("page:2")));
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
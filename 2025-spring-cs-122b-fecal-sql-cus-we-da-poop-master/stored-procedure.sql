@@ -1,5 +1,64 @@
 DELIMITER //
 
+-- star_movie_counts / top_stars_per_movie maintenance. These run inside the caller's transaction,
+-- so call them with autocommit off and commit afterwards.
+
+DROP PROCEDURE IF EXISTS rebuild_star_popularity; //
+
+CREATE PROCEDURE rebuild_star_popularity()
+BEGIN
+    DELETE FROM top_stars_per_movie;
+    DELETE FROM star_movie_counts;
+
+    INSERT INTO star_movie_counts (starId, movieCount)
+    SELECT s.id, COUNT(sm.movieId)
+    FROM stars s
+    LEFT JOIN stars_in_movies sm ON s.id = sm.starId
+    GROUP BY s.id;
+
+    INSERT INTO top_stars_per_movie (movieId, topStars)
+    SELECT movieId, GROUP_CONCAT(CONCAT(starId, ':', starName) ORDER BY rn SEPARATOR ', ')
+    FROM (
+        SELECT sm.movieId, s.id AS starId, s.name AS starName,
+               ROW_NUMBER() OVER (PARTITION BY sm.movieId ORDER BY smc.movieCount DESC, s.name ASC) AS rn
+        FROM stars_in_movies sm
+        JOIN stars s ON sm.starId = s.id
+        JOIN star_movie_counts smc ON s.id = smc.starId
+    ) ranked
+    WHERE rn <= 3
+    GROUP BY movieId;
+END //
+
+-- Recounts one star and re-ranks every movie it appears in, since its new count can change their top 3.
+DROP PROCEDURE IF EXISTS refresh_star_popularity; //
+
+CREATE PROCEDURE refresh_star_popularity(IN p_star_id VARCHAR(10))
+BEGIN
+    DECLARE v_movie_count INT;
+
+    SELECT COUNT(*) INTO v_movie_count FROM stars_in_movies WHERE starId = p_star_id;
+
+    INSERT INTO star_movie_counts (starId, movieCount)
+    VALUES (p_star_id, v_movie_count)
+    ON DUPLICATE KEY UPDATE movieCount = v_movie_count;
+
+    DELETE FROM top_stars_per_movie
+    WHERE movieId IN (SELECT movieId FROM stars_in_movies WHERE starId = p_star_id);
+
+    INSERT INTO top_stars_per_movie (movieId, topStars)
+    SELECT movieId, GROUP_CONCAT(CONCAT(starId, ':', starName) ORDER BY rn SEPARATOR ', ')
+    FROM (
+        SELECT sm.movieId, s.id AS starId, s.name AS starName,
+               ROW_NUMBER() OVER (PARTITION BY sm.movieId ORDER BY COALESCE(smc.movieCount, 0) DESC, s.name ASC) AS rn
+        FROM stars_in_movies sm
+        JOIN stars s ON sm.starId = s.id
+        LEFT JOIN star_movie_counts smc ON s.id = smc.starId
+        WHERE sm.movieId IN (SELECT movieId FROM stars_in_movies WHERE starId = p_star_id)
+    ) ranked
+    WHERE rn <= 3
+    GROUP BY movieId;
+END //
+
 DROP PROCEDURE IF EXISTS add_movie; //
 
 CREATE PROCEDURE add_movie(
@@ -103,6 +162,14 @@ BEGIN
                         SET p_message = CONCAT('Error: Failed to link genre ''', p_genre_name, ''' (ID: ', v_genre_id, ') to movie ''', p_title, '''.');
                         ROLLBACK;
                     ELSE
+                        CALL refresh_star_popularity(v_star_id);
+
+                        -- Lets every movies-service pod patch its catalog snapshot and caches.
+                        INSERT INTO catalog_changes (entity, entityId) VALUES ('movie', p_new_movie_id), ('star', v_star_id);
+                        IF v_genre_status = 'new' THEN
+                            INSERT INTO catalog_changes (entity, entityId) VALUES ('genre', v_genre_id);
+                        END IF;
+
                         SET p_message = CONCAT(
                             'Success: Movie ''', p_title, ''' added. ',
                             'Movie ID: ', p_new_movie_id, '. ',